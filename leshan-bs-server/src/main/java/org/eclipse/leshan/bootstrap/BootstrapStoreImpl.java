@@ -17,26 +17,42 @@ package org.eclipse.leshan.bootstrap;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.commons.io.Charsets;
 import org.apache.commons.lang.Validate;
 import org.eclipse.leshan.bootstrap.ConfigurationChecker.ConfigurationException;
+import org.eclipse.leshan.server.Destroyable;
 import org.eclipse.leshan.server.bootstrap.BootstrapConfig;
 import org.eclipse.leshan.server.bootstrap.BootstrapStore;
+import org.eclipse.leshan.server.impl.KeyValueJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
 /**
- * Simple bootstrap store implementation storing bootstrap information in memory
+ * Simple bootstrap store implementation storing bootstrap information in memory.
+ * <p>
+ * The configurations are persisted into a {@link KeyValueJournal}: each added or deleted configuration is appended to
+ * the file as a JSON record, the journal is replayed at startup and compacted in the background once most of its
+ * records are obsolete. A file written by a previous version which cannot be read is left untouched, and the changes
+ * are then not persisted.
+ * </p>
  */
-public class BootstrapStoreImpl implements BootstrapStore {
+public class BootstrapStoreImpl implements BootstrapStore, Destroyable {
 
     private static final Logger LOG = LoggerFactory.getLogger(BootstrapStoreImpl.class);
 
@@ -45,6 +61,23 @@ public class BootstrapStoreImpl implements BootstrapStore {
 
     private final String filename;
 
+    private final KeyValueJournal<BootstrapConfig> journal;
+
+    // false if the file could not be loaded: changes are not persisted
+    private boolean journalOpened = false;
+
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "BootstrapStore compaction");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // at most one compaction is queued at a time
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
     public BootstrapStoreImpl() {
         this(DEFAULT_FILE);
     }
@@ -56,6 +89,7 @@ public class BootstrapStoreImpl implements BootstrapStore {
         Validate.notEmpty(filename);
 
         this.filename = filename;
+        this.journal = new KeyValueJournal<>(new File(filename), new JsonSerializer());
         this.loadFromFile();
     }
 
@@ -66,22 +100,35 @@ public class BootstrapStoreImpl implements BootstrapStore {
         return bootstrapByEndpoint.get(endpoint);
     }
 
-    public void addConfig(String endpoint, BootstrapConfig config) throws ConfigurationException {
+    public synchronized void addConfig(String endpoint, BootstrapConfig config) throws ConfigurationException {
         ConfigurationChecker.verify(config);
         // check the configuration
         bootstrapByEndpoint.put(endpoint, config);
-        //
-        // TODO save to JSON format
-        // saveToFile();
+
+        if (journalOpened) {
+            try {
+                journal.put(endpoint, config);
+            } catch (IOException e) {
+                LOG.warn("Could not save bootstrap config of " + endpoint + " to file", e);
+            }
+            compactIfNeeded();
+        }
     }
 
     public Map<String, BootstrapConfig> getBootstrapConfigs() {
         return Collections.unmodifiableMap(bootstrapByEndpoint);
     }
 
-    public boolean deleteConfig(String enpoint) {
+    public synchronized boolean deleteConfig(String enpoint) {
         BootstrapConfig res = bootstrapByEndpoint.remove(enpoint);
-        saveToFile();
+        if (res != null && journalOpened) {
+            try {
+                journal.remove(enpoint);
+            } catch (IOException e) {
+                LOG.warn("Could not remove bootstrap config of " + enpoint + " from file", e);
+            }
+            compactIfNeeded();
+        }
         return res != null;
     }
 
@@ -93,33 +140,85 @@ public class BootstrapStoreImpl implements BootstrapStore {
         try {
             File file = new File(filename);
 
-            if (!file.exists()) {
-                // create parents if needed
-                File parent = file.getParentFile();
-                if (parent != null) {
-                    parent.mkdirs();
-                }
-                file.createNewFile();
-
-            } else {
-
+            if (file.length() > 0 && !KeyValueJournal.isJournal(file)) {
+                // written by a previous version, as a serialized map
                 try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
                     bootstrapByEndpoint.putAll((Map<String, BootstrapConfig>) in.readObject());
+                } catch (Exception e) {
+                    // an empty journal must not replace the configs which could not be read
+                    LOG.warn("Could not load bootstrap infos from previous file format, changes will not be saved", e);
+                    return;
                 }
+                File backup = new File(filename + ".bak");
+                Files.copy(file.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                journal.compact(bootstrapByEndpoint);
+                LOG.info("{} bootstrap configs migrated to journal {}, the previous file is saved as {}",
+                        bootstrapByEndpoint.size(), file, backup);
+            } else {
+                journal.open(bootstrapByEndpoint);
+                LOG.info("{} bootstrap configs loaded", bootstrapByEndpoint.size());
             }
-        } catch (FileNotFoundException e) {
-            // fine
+            journalOpened = true;
         } catch (Exception e) {
-            LOG.debug("Could not load bootstrap infos from file", e);
+            LOG.warn("Could not load bootstrap infos from file", e);
         }
     }
 
-    private void saveToFile() {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filename))) {
-            Map<String, BootstrapConfig> copy = new HashMap<>(bootstrapByEndpoint);
-            out.writeObject(copy);
-        } catch (Exception e) {
-            LOG.debug("Could not save bootstrap infos to file", e);
+    private void compactIfNeeded() {
+        if (journal.needsCompaction(bootstrapByEndpoint.size()) && compactionScheduled.compareAndSet(false, true)) {
+            compactionExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    compactionScheduled.set(false);
+                    try {
+                        // the journal may have been compacted since this task was queued
+                        if (journal.needsCompaction(bootstrapByEndpoint.size())) {
+                            journal.compact(bootstrapByEndpoint);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        LOG.warn("Could not compact bootstrap infos file", e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops the background compaction and closes the bootstrap infos file.
+     */
+    @Override
+    public void destroy() {
+        compactionExecutor.shutdown();
+        try {
+            if (!compactionExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                LOG.warn("Bootstrap infos compaction did not complete");
+            }
+        } catch (InterruptedException e) {
+            LOG.warn("Bootstrap infos compaction thread was interrupted.", e);
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            LOG.warn("Could not close bootstrap infos file", e);
+        }
+    }
+
+    private static class JsonSerializer implements KeyValueJournal.Serializer<BootstrapConfig> {
+
+        private final Gson gson = new Gson();
+
+        @Override
+        public byte[] serialize(BootstrapConfig config) {
+            return gson.toJson(config).getBytes(Charsets.UTF_8);
+        }
+
+        @Override
+        public BootstrapConfig deserialize(byte[] bytes) throws IOException {
+            try {
+                return gson.fromJson(new String(bytes, Charsets.UTF_8), BootstrapConfig.class);
+            } catch (JsonParseException e) {
+                throw new IOException(e);
+            }
         }
     }
 }
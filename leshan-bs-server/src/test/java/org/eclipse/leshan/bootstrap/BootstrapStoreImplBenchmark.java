@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.bootstrap;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.eclipse.leshan.bootstrap.ConfigurationChecker.ConfigurationException;
+import org.eclipse.leshan.server.bootstrap.BootstrapConfig;
+import org.eclipse.leshan.server.bootstrap.SecurityMode;
+
+/**
+ * Measures the write latency and the startup time of {@link BootstrapStoreImpl} for a large number of configurations.
+ * 
+ * This is not a unit test: run the <code>main</code> method manually, optionally giving the number of configurations.
+ * The write latency should not depend on the number of stored configurations.
+ */
+public class BootstrapStoreImplBenchmark {
+
+    private static final int DEFAULT_CONFIGS = 100000;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CONFIGS;
+
+        File file = File.createTempFile("bootstrap", ".data");
+        file.delete();
+        try {
+            BootstrapStoreImpl store = new BootstrapStoreImpl(file.getPath());
+            long[] latencies = new long[count];
+            for (int i = 0; i < count; i++) {
+                BootstrapConfig config = config(i);
+                long start = System.nanoTime();
+                store.addConfig("urn:client:" + i, config);
+                latencies[i] = System.nanoTime() - start;
+            }
+            report("add", latencies);
+
+            // overwrite half of the configurations and delete a quarter: compactions are triggered in background
+            int updates = count / 2;
+            latencies = new long[updates];
+            for (int i = 0; i < updates; i++) {
+                BootstrapConfig config = config(i + count);
+                long start = System.nanoTime();
+                store.addConfig("urn:client:" + i, config);
+                latencies[i] = System.nanoTime() - start;
+            }
+            report("update", latencies);
+
+            int deletes = count / 4;
+            latencies = new long[deletes];
+            for (int i = 0; i < deletes; i++) {
+                long start = System.nanoTime();
+                store.deleteConfig("urn:client:" + (count - 1 - i));
+                latencies[i] = System.nanoTime() - start;
+            }
+            report("delete", latencies);
+
+            long start = System.nanoTime();
+            BootstrapStoreImpl reloaded = new BootstrapStoreImpl(file.getPath());
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("startup: %d configs loaded in %d ms (file size: %d KB)%n", reloaded
+                    .getBootstrapConfigs().size(), elapsed / 1000000, file.length() / 1024);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void report(String operation, long[] latencies) {
+        long total = 0;
+        for (long latency : latencies) {
+            total += latency;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-6s: %d ops, avg %.1f us, p50 %.1f us, p99 %.1f us, max %.1f us%n", operation,
+                latencies.length, total / 1000.0 / latencies.length, latencies[latencies.length / 2] / 1000.0,
+                latencies[(int) (latencies.length * 0.99)] / 1000.0, latencies[latencies.length - 1] / 1000.0);
+    }
+
+    private static BootstrapConfig config(int i) throws ConfigurationException {
+        BootstrapConfig config = new BootstrapConfig();
+
+        BootstrapConfig.ServerSecurity security = new BootstrapConfig.ServerSecurity();
+        security.uri = "coaps://server" + i % 10 + ".example.org:5684";
+        security.securityMode = SecurityMode.PSK;
+        security.publicKeyOrId = ("identity" + i).getBytes();
+        security.secretKey = new byte[] { (byte) i, (byte) (i >> 8), (byte) (i >> 16), 0x42 };
+        security.serverId = 1;
+        config.security.put(1, security);
+
+        BootstrapConfig.ServerConfig server = new BootstrapConfig.ServerConfig();
+        server.shortId = 1;
+        config.servers.put(0, server);
+        return config;
+    }
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.bootstrap;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+
+import org.apache.commons.io.Charsets;
+import org.eclipse.leshan.bootstrap.ConfigurationChecker.ConfigurationException;
+import org.eclipse.leshan.server.bootstrap.BootstrapConfig;
+import org.eclipse.leshan.server.bootstrap.SecurityMode;
+import org.eclipse.leshan.server.impl.KeyValueJournal;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BootstrapStoreImplTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void configs_are_reloaded() throws ConfigurationException {
+        String file = new File(folder.getRoot(), "bootstrap.data").getPath();
+        BootstrapStoreImpl store = new BootstrapStoreImpl(file);
+        store.addConfig("ep1", config("coap://server1:5683", 1));
+        store.addConfig("ep2", config("coap://server2:5683", 2));
+        store.addConfig("ep1", config("coap://server3:5683", 3));
+        Assert.assertTrue(store.deleteConfig("ep2"));
+        Assert.assertFalse(store.deleteConfig("ep2"));
+
+        BootstrapStoreImpl reloaded = new BootstrapStoreImpl(file);
+        Assert.assertEquals(1, reloaded.getBootstrapConfigs().size());
+        Assert.assertNull(reloaded.getBootstrap("ep2"));
+
+        BootstrapConfig config = reloaded.getBootstrap("ep1");
+        Assert.assertEquals("coap://server3:5683", config.security.get(0).uri);
+        Assert.assertEquals(SecurityMode.NO_SEC, config.security.get(0).securityMode);
+        Assert.assertEquals(3, config.servers.get(0).shortId);
+    }
+
+    @Test
+    public void serialized_file_is_migrated() throws IOException, ConfigurationException {
+        File file = new File(folder.getRoot(), "bootstrap.data");
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(new HashMap<String, BootstrapConfig>());
+        }
+
+        BootstrapStoreImpl store = new BootstrapStoreImpl(file.getPath());
+        Assert.assertTrue(store.getBootstrapConfigs().isEmpty());
+        Assert.assertTrue(KeyValueJournal.isJournal(file));
+        Assert.assertTrue(new File(file.getPath() + ".bak").exists());
+
+        store.addConfig("ep1", config("coap://server1:5683", 1));
+        Assert.assertNotNull(new BootstrapStoreImpl(file.getPath()).getBootstrap("ep1"));
+    }
+
+    @Test
+    public void unreadable_serialized_file_is_not_overwritten() throws IOException, ConfigurationException {
+        File file = new File(folder.getRoot(), "bootstrap.data");
+        byte[] content = "not a serialized map".getBytes(Charsets.UTF_8);
+        Files.write(file.toPath(), content);
+
+        BootstrapStoreImpl store = new BootstrapStoreImpl(file.getPath());
+        Assert.assertTrue(store.getBootstrapConfigs().isEmpty());
+        store.addConfig("ep1", config("coap://server1:5683", 1));
+        store.destroy();
+
+        Assert.assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    }
+
+    private static BootstrapConfig config(String uri, int shortId) {
+        BootstrapConfig config = new BootstrapConfig();
+
+        BootstrapConfig.ServerSecurity security = new BootstrapConfig.ServerSecurity();
+        security.uri = uri;
+        security.securityMode = SecurityMode.NO_SEC;
+        security.serverId = shortId;
+        config.security.put(0, security);
+
+        BootstrapConfig.ServerConfig server = new BootstrapConfig.ServerConfig();
+        server.shortId = shortId;
+        config.servers.put(0, server);
+        return config;
+    }
+}
@@ -15,15 +15,15 @@
  *******************************************************************************/
 package org.eclipse.leshan;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.eclipse.leshan.util.Charsets;
-import org.eclipse.leshan.util.StringUtils;
+import org.eclipse.leshan.util.Interner;
 
 /**
  * A Link Format object. see (http://tools.ietf.org/html/rfc6690)
@@ -32,6 +32,10 @@ import org.eclipse.leshan.util.StringUtils;
 // TODO we should have a look at org.eclipse.californium.core.coap.LinkFormat
 public class LinkObject {
 
+    // most links have no or the same attributes
+    private static final Map<String, Object> NO_ATTRIBUTES = Collections.emptyMap();
+    private static final Interner<Map<String, Object>> ATTRIBUTES = new Interner<>(10000);
+
     private final String url;
 
     private final Map<String, Object> attributes;
@@ -59,23 +63,33 @@ public class LinkObject {
      */
     public LinkObject(String url, Map<String, ?> attributes) {
         this.url = url;
-        if (attributes != null) {
-            this.attributes = Collections.unmodifiableMap(new HashMap<String, Object>(attributes));
+        if (attributes != null && !attributes.isEmpty()) {
+            this.attributes = ATTRIBUTES.intern(Collections.unmodifiableMap(new HashMap<String, Object>(attributes)));
         } else {
-            this.attributes = Collections.unmodifiableMap(new HashMap<String, Object>());
+            this.attributes = NO_ATTRIBUTES;
         }
 
-        Matcher mat = Pattern.compile("(/(\\d+))(/(\\d+))?(/(\\d+))?").matcher(url);
-
-        if (mat.find()) {
-            objectId = mat.group(2) == null ? null : new Integer(mat.group(2));
-            objectInstanceId = mat.group(4) == null ? null : new Integer(mat.group(4));
-            resourceId = mat.group(6) == null ? null : new Integer(mat.group(6));
-        } else {
-            objectId = null;
-            objectInstanceId = null;
-            resourceId = null;
+        // the first "/{object}[/{instance}[/{resource}]]" sequence of the URL
+        Integer[] ids = new Integer[3];
+        int start = url.indexOf('/');
+        while (start >= 0 && !isDigitAt(url, start + 1)) {
+            start = url.indexOf('/', start + 1);
         }
+        for (int i = 0; i < 3 && start >= 0 && isDigitAt(url, start + 1); i++) {
+            int end = start + 1;
+            while (isDigitAt(url, end)) {
+                end++;
+            }
+            ids[i] = Integer.valueOf(url.substring(start + 1, end));
+            start = end < url.length() && url.charAt(end) == '/' ? end : -1;
+        }
+        objectId = ids[0];
+        objectInstanceId = ids[1];
+        resourceId = ids[2];
+    }
+
+    private static boolean isDigitAt(String s, int index) {
+        return index < s.length() && s.charAt(index) >= '0' && s.charAt(index) <= '9';
     }
 
     public String getUrl() {
@@ -153,44 +167,183 @@ public class LinkObject {
         return resourceId;
     }
 
+    /**
+     * Parses a CoRE Link Format (RFC 6690) payload.
+     * <p>
+     * The payload is parsed in a single pass over the bytes. Quoted attribute values may contain commas, semicolons and
+     * escaped quotes. Unquoted values made of digits are returned as {@link Integer}, the other values as
+     * {@link String}, and attributes without value or with an empty unquoted value are mapped to
+     * <code>null</code>.
+     * </p>
+     * 
+     * @param content the UTF-8 payload
+     * @return the links, an empty array if the payload contains no link
+     */
     public static LinkObject[] parse(byte[] content) {
-        String s = new String(content, Charsets.UTF_8);
-        String[] links = s.split(",");
-        LinkObject[] linksResult = new LinkObject[links.length];
-        int index = 0;
-        for (String link : links) {
-            String[] linkParts = link.split(";");
-
-            // clean URL
-            String url = StringUtils.trim(linkParts[0]);
-            url = StringUtils.removeStart(StringUtils.removeEnd(url, ">"), "<");
-
-            // parse attributes
-            Map<String, Object> attributes = new HashMap<>();
-
-            if (linkParts.length > 1) {
-                for (int i = 1; i < linkParts.length; i++) {
-                    String[] attParts = linkParts[i].split("=");
-                    if (attParts.length > 0) {
-                        String key = attParts[0];
-                        Object value = null;
-                        if (attParts.length > 1) {
-                            String rawvalue = attParts[1];
-                            try {
-                                value = Integer.valueOf(rawvalue);
-                            } catch (NumberFormatException e) {
-
-                                value = rawvalue.replaceFirst("^\"(.*)\"$", "$1");
-                            }
-                        }
-                        attributes.put(key, value);
+        List<LinkObject> links = new ArrayList<>();
+        int length = content.length;
+        int i = 0;
+        while (i < length) {
+            i = skipWhitespaces(content, i, length);
+            if (i == length) {
+                break;
+            }
+            if (content[i] == ',') {
+                // empty link
+                i++;
+                continue;
+            }
+
+            // link target
+            String url;
+            int close = content[i] == '<' ? indexOf(content, (byte) '>', i + 1, length) : -1;
+            if (close >= 0) {
+                url = string(content, i + 1, close);
+                i = close + 1;
+            } else {
+                // not enclosed: up to the first parameter
+                int end = indexOfDelimiter(content, i, length);
+                int start = content[i] == '<' ? i + 1 : i;
+                url = string(content, start, trimEnd(content, start, end));
+                i = end;
+            }
+
+            // link parameters
+            Map<String, Object> attributes = null;
+            while (i < length && content[i] != ',') {
+                if (content[i] != ';') {
+                    // unexpected character, ignored
+                    i++;
+                    continue;
+                }
+                i = skipWhitespaces(content, i + 1, length);
+                int keyEnd = i;
+                while (keyEnd < length && content[keyEnd] != '=' && content[keyEnd] != ';' && content[keyEnd] != ',') {
+                    keyEnd++;
+                }
+                String key = string(content, i, trimEnd(content, i, keyEnd));
+                Object value = null;
+                i = keyEnd;
+                if (i < length && content[i] == '=') {
+                    i = skipWhitespaces(content, i + 1, length);
+                    int end = i < length && content[i] == '"' ? closingQuote(content, i, length) : -1;
+                    if (end >= 0) {
+                        value = unquote(content, i + 1, end);
+                        i = end + 1;
+                    } else {
+                        end = indexOfDelimiter(content, i, length);
+                        int valueEnd = trimEnd(content, i, end);
+                        // an empty unquoted value is the same as no value
+                        value = valueEnd > i ? parseValue(content, i, valueEnd) : null;
+                        i = end;
                     }
                 }
+                if (attributes == null) {
+                    attributes = new HashMap<>();
+                }
+                attributes.put(key, value);
+            }
+            links.add(new LinkObject(url, attributes));
+        }
+        return links.toArray(new LinkObject[links.size()]);
+    }
+
+    private static int skipWhitespaces(byte[] content, int from, int to) {
+        int i = from;
+        while (i < to && isWhitespace(content[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimEnd(byte[] content, int from, int to) {
+        int end = to;
+        while (end > from && isWhitespace(content[end - 1])) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static int indexOf(byte[] content, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (content[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // the end of an unquoted token
+    private static int indexOfDelimiter(byte[] content, int from, int to) {
+        int i = from;
+        while (i < to && content[i] != ';' && content[i] != ',') {
+            i++;
+        }
+        return i;
+    }
+
+    // the index of the quote closing the value opened at the given index, -1 if the value is not terminated. To be
+    // lenient with misplaced quotes, a quote only closes the value when it is followed by a delimiter.
+    private static int closingQuote(byte[] content, int open, int to) {
+        for (int i = open + 1; i < to; i++) {
+            if (content[i] == '\\') {
+                i++;
+            } else if (content[i] == '"') {
+                int next = skipWhitespaces(content, i + 1, to);
+                if (next == to || content[next] == ';' || content[next] == ',') {
+                    return i;
+                }
             }
-            linksResult[index] = new LinkObject(url, attributes);
-            index++;
         }
-        return linksResult;
+        return -1;
+    }
+
+    private static String unquote(byte[] content, int from, int to) {
+        if (indexOf(content, (byte) '\\', from, to) < 0) {
+            return string(content, from, to);
+        }
+        byte[] unescaped = new byte[to - from];
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            if (content[i] == '\\' && i + 1 < to) {
+                i++;
+            }
+            unescaped[length++] = content[i];
+        }
+        return string(unescaped, 0, length);
+    }
+
+    // an integer if the value is only made of digits, a string otherwise
+    private static Object parseValue(byte[] content, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (content[i] == '-' || content[i] == '+')) {
+            negative = content[i] == '-';
+            i++;
+        }
+        if (i == to || to - i > 10) {
+            return string(content, from, to);
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            if (content[i] < '0' || content[i] > '9') {
+                return string(content, from, to);
+            }
+            value = value * 10 + content[i] - '0';
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return string(content, from, to);
+        }
+        return Integer.valueOf((int) value);
+    }
+
+    private static String string(byte[] content, int from, int to) {
+        return new String(content, from, to - from, Charsets.UTF_8);
     }
 
     public static final String INVALID_LINK_PAYLOAD = "<>";
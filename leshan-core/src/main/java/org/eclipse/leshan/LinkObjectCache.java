@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.leshan.util.Validate;
+
+/**
+ * A bounded cache of parsed link format payloads.
+ * <p>
+ * The devices running the same firmware register byte-identical payloads: each distinct payload is parsed once and
+ * its links are shared by all the devices. The least recently used payloads are evicted when the cache is full.
+ * </p>
+ */
+public class LinkObjectCache {
+
+    // the payload bytes with a value semantic
+    private static final class Payload {
+        private final byte[] content;
+        private final int hashCode;
+
+        private Payload(byte[] content) {
+            this.content = content;
+            this.hashCode = Arrays.hashCode(content);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Payload && hashCode == ((Payload) obj).hashCode
+                    && Arrays.equals(content, ((Payload) obj).content);
+        }
+    }
+
+    private final Map<Payload, LinkObject[]> links;
+
+    /**
+     * @param maxSize the maximum number of distinct payloads kept
+     */
+    public LinkObjectCache(final int maxSize) {
+        Validate.isTrue(maxSize > 0, "the maximum size must be positive");
+        this.links = new LinkedHashMap<Payload, LinkObject[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Payload, LinkObject[]> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Parses a link format payload, or returns the links of an identical payload parsed previously.
+     * 
+     * @param content the payload, which must not be modified afterwards
+     * @return the links, this array is shared and must not be modified
+     * @see LinkObject#parse(byte[])
+     */
+    public LinkObject[] parse(byte[] content) {
+        Payload payload = new Payload(content);
+        LinkObject[] parsed;
+        synchronized (this) {
+            parsed = links.get(payload);
+        }
+        if (parsed == null) {
+            // parsed outside of the lock: a payload may be parsed twice concurrently, the last one is kept
+            parsed = LinkObject.parse(content);
+            synchronized (this) {
+                links.put(payload, parsed);
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * @return the number of cached payloads
+     */
+    public synchronized int size() {
+        return links.size();
+    }
+
+    public synchronized void clear() {
+        links.clear();
+    }
+}
@@ -53,7 +53,8 @@ public class LwM2mNodeDecoder {
         // If no format is given, guess the best one to use.
         if (format == null) {
             if (path.isResource()) {
-                ResourceModel rDesc = model.getResourceModel(path.getObjectId(), path.getResourceId());
+                ResourceModel rDesc = ObjectCodecPlan.of(model, path.getObjectId()).getResourceModel(
+                        path.getResourceId());
                 if (rDesc != null && rDesc.multiple) {
                     format = ContentFormat.TLV;
                 } else {
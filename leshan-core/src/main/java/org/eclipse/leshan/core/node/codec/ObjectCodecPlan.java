@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.node.codec;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.leshan.core.model.LwM2mModel;
+import org.eclipse.leshan.core.model.ObjectModel;
+import org.eclipse.leshan.core.model.ResourceModel;
+import org.eclipse.leshan.core.model.ResourceModel.Type;
+
+/**
+ * The resource descriptions of an object, compiled from its {@link ObjectModel} for the encoders and decoders.
+ * <p>
+ * The resource models and types are held in arrays indexed by resource id (offset by the smallest id), so a resource
+ * lookup is an array access instead of two <code>HashMap</code> lookups with boxed keys. When the resource ids are too
+ * scattered for a dense array, they are looked up by binary search.
+ * </p>
+ * <p>
+ * The plans are compiled once per {@link ObjectModel} and cached, see {@link #of(LwM2mModel, int)}. The object models
+ * are generally shared by the {@link LwM2mModel}s, which may be created per request.
+ * </p>
+ */
+public class ObjectCodecPlan {
+
+    // above this size, a dense array must be at least 1/8 full
+    private static final int MAX_SPARSE_SPAN = 1024;
+
+    private static final ObjectCodecPlan UNKNOWN_OBJECT = new ObjectCodecPlan(null);
+
+    // the object models are few and long-lived, the cache is cleared if they are not
+    private static final int MAX_CACHED_PLANS = 1024;
+
+    // by object model instance: ObjectModel does not override equals
+    private static final ConcurrentMap<ObjectModel, ObjectCodecPlan> PLANS = new ConcurrentHashMap<>();
+
+    private final ObjectModel objectModel;
+
+    // dense: resources[id - firstId], sparse: resources[binarySearch(ids, id)]
+    private final int firstId;
+    private final int[] ids;
+    private final ResourceModel[] resources;
+    private final Type[] types;
+
+    private ObjectCodecPlan(ObjectModel objectModel) {
+        this.objectModel = objectModel;
+        if (objectModel == null || objectModel.resources.isEmpty()) {
+            firstId = 0;
+            ids = null;
+            resources = new ResourceModel[0];
+            types = new Type[0];
+            return;
+        }
+
+        int[] sortedIds = new int[objectModel.resources.size()];
+        int i = 0;
+        for (Integer id : objectModel.resources.keySet()) {
+            sortedIds[i++] = id;
+        }
+        Arrays.sort(sortedIds);
+        int span = sortedIds[sortedIds.length - 1] - sortedIds[0] + 1;
+
+        if (span <= MAX_SPARSE_SPAN || span <= 8 * sortedIds.length) {
+            firstId = sortedIds[0];
+            ids = null;
+            resources = new ResourceModel[span];
+            types = new Type[span];
+            for (ResourceModel resource : objectModel.resources.values()) {
+                resources[resource.id - firstId] = resource;
+                types[resource.id - firstId] = resource.type;
+            }
+        } else {
+            firstId = 0;
+            ids = sortedIds;
+            resources = new ResourceModel[sortedIds.length];
+            types = new Type[sortedIds.length];
+            for (ResourceModel resource : objectModel.resources.values()) {
+                int index = Arrays.binarySearch(ids, resource.id);
+                resources[index] = resource;
+                types[index] = resource.type;
+            }
+        }
+    }
+
+    /**
+     * Returns the plan of an object of a model, compiling it on the first call for this object model.
+     *
+     * @param model the model
+     * @param objectId the object id
+     * @return the plan of the object, an empty plan if the object is not in the model
+     */
+    public static ObjectCodecPlan of(LwM2mModel model, int objectId) {
+        ObjectModel objectModel = model.getObjectModel(objectId);
+        if (objectModel == null) {
+            return UNKNOWN_OBJECT;
+        }
+
+        ObjectCodecPlan plan = PLANS.get(objectModel);
+        if (plan == null) {
+            if (PLANS.size() >= MAX_CACHED_PLANS) {
+                PLANS.clear();
+            }
+            plan = new ObjectCodecPlan(objectModel);
+            ObjectCodecPlan previous = PLANS.putIfAbsent(objectModel, plan);
+            if (previous != null) {
+                plan = previous;
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * @return the object model or <code>null</code> if the object is not in the model
+     */
+    public ObjectModel getObjectModel() {
+        return objectModel;
+    }
+
+    /**
+     * @return <code>true</code> if the object is known to have a single instance
+     */
+    public boolean isSingleInstance() {
+        return objectModel != null && !objectModel.multiple;
+    }
+
+    /**
+     * @return the resource model or <code>null</code> if the resource is not in the model
+     */
+    public ResourceModel getResourceModel(int resourceId) {
+        int index = indexOf(resourceId);
+        return index < 0 ? null : resources[index];
+    }
+
+    /**
+     * @param resourceId the resource id
+     * @param defaultType the type to use for an unknown resource
+     * @return the type of the resource, or the default type if the resource or its type is unknown
+     */
+    public Type getType(int resourceId, Type defaultType) {
+        int index = indexOf(resourceId);
+        if (index < 0 || types[index] == null) {
+            return defaultType;
+        }
+        return types[index];
+    }
+
+    private int indexOf(int resourceId) {
+        if (ids != null) {
+            int index = Arrays.binarySearch(ids, resourceId);
+            return index < 0 ? -1 : index;
+        }
+        int index = resourceId - firstId;
+        return index >= 0 && index < resources.length ? index : -1;
+    }
+}
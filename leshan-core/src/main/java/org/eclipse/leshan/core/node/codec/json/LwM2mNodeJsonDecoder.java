@@ -15,153 +15,193 @@
  *******************************************************************************/
 package org.eclipse.leshan.core.node.codec.json;
 
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import org.eclipse.leshan.core.model.LwM2mModel;
-import org.eclipse.leshan.core.model.ResourceModel;
 import org.eclipse.leshan.core.model.ResourceModel.Type;
 import org.eclipse.leshan.core.node.LwM2mMultipleResource;
 import org.eclipse.leshan.core.node.LwM2mNode;
+import org.eclipse.leshan.core.node.LwM2mObject;
 import org.eclipse.leshan.core.node.LwM2mObjectInstance;
 import org.eclipse.leshan.core.node.LwM2mPath;
 import org.eclipse.leshan.core.node.LwM2mResource;
 import org.eclipse.leshan.core.node.LwM2mSingleResource;
 import org.eclipse.leshan.core.node.codec.InvalidValueException;
-import org.eclipse.leshan.json.JsonArrayEntry;
-import org.eclipse.leshan.json.JsonRootObject;
-import org.eclipse.leshan.json.LwM2mJson;
+import org.eclipse.leshan.core.node.codec.ObjectCodecPlan;
 import org.eclipse.leshan.json.LwM2mJsonException;
+import org.eclipse.leshan.json.LwM2mJsonReader;
 import org.eclipse.leshan.util.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Decodes the LWM2M JSON format straight from the UTF-8 bytes.
+ * <p>
+ * Without base name, the entry names are relative to the object for an object level request and relative to the
+ * object instance otherwise. With a base name, the entry names are concatenated to it and must be in the requested
+ * path. The entry times are accepted but not kept: for a resource with several timed values, the last one is kept.
+ * </p>
+ */
 public class LwM2mNodeJsonDecoder {
 
     private static final Logger LOG = LoggerFactory.getLogger(LwM2mNodeJsonDecoder.class);
 
     public static LwM2mNode decode(byte[] content, LwM2mPath path, LwM2mModel model) throws InvalidValueException {
         try {
-            String jsonStrValue = new String(content);
-            JsonRootObject json = LwM2mJson.fromJsonLwM2m(jsonStrValue);
-            return parseJSON(json, path, model);
+            LwM2mJsonReader reader = new LwM2mJsonReader(content);
+            return parseJSON(reader, path, model);
         } catch (LwM2mJsonException e) {
             throw new InvalidValueException("Unable to deSerialize json", path, e);
         }
     }
 
-    private static LwM2mNode parseJSON(JsonRootObject jsonObject, LwM2mPath path, LwM2mModel model)
-            throws InvalidValueException {
-        LOG.trace("Parsing JSON content for path {}: {}", path, jsonObject);
-
-        if (path.isObject()) {
-            // TODO
-            // If bn is present will have multiple object instances in JSON payload
-            // If JSON contains ObjLnk -> this method should return List<LwM2mNode> ?
-            throw new UnsupportedOperationException("JSON object level decoding is not implemented");
-        } else if (path.isObjectInstance()) {
-            // object instance level request
-            Map<Integer, LwM2mResource> resourceMap = parseJsonPayLoadLwM2mResources(jsonObject, path, model);
-            return new LwM2mObjectInstance(path.getObjectInstanceId(), resourceMap.values());
-        } else {
-            // resource level request
-            Map<Integer, LwM2mResource> resourceMap = parseJsonPayLoadLwM2mResources(jsonObject, path, model);
-            return resourceMap.values().iterator().next();
-        }
+    // the resources of an object instance
+    private static class InstanceContent {
+        private final Map<Integer, Object> values = new LinkedHashMap<>();
+        private final Map<Integer, Map<Integer, Object>> multipleValues = new LinkedHashMap<>();
     }
 
-    private static Map<Integer, LwM2mResource> parseJsonPayLoadLwM2mResources(JsonRootObject jsonObject,
-            LwM2mPath path, LwM2mModel model) throws InvalidValueException {
-        Map<Integer, LwM2mResource> lwM2mResourceMap = new HashMap<>();
-        Map<Integer, Map<Integer, Object>> multiResourceMap = new HashMap<>();
-
-        if (jsonObject.getBaseName() != null && !jsonObject.getBaseName().isEmpty()) {
-            throw new UnsupportedOperationException("Basename support is not implemented.");
-        }
+    private static LwM2mNode parseJSON(LwM2mJsonReader reader, LwM2mPath path, LwM2mModel model)
+            throws InvalidValueException, LwM2mJsonException {
+        LOG.trace("Parsing JSON content for path {} (base name: {})", path, reader.getBaseName());
+
+        int objectId = path.getObjectId();
+        ObjectCodecPlan plan = ObjectCodecPlan.of(model, objectId);
+        boolean relativeToObject = reader.getBaseName() == null && path.isObject();
+        boolean relativeToInstance = reader.getBaseName() == null && !path.isObject();
+
+        Map<Integer, InstanceContent> instances = new LinkedHashMap<>();
+        int[] ids = new int[4];
+        while (reader.next()) {
+            // absolute path of the entry
+            int count = 0;
+            if (relativeToObject || relativeToInstance) {
+                ids[count++] = objectId;
+            }
+            if (relativeToInstance) {
+                ids[count++] = path.getObjectInstanceId();
+            }
+            if (count + reader.getIdCount() > ids.length) {
+                throw new InvalidValueException("Invalid entry name: too many identifiers", path);
+            }
+            for (int i = 0; i < reader.getIdCount(); i++) {
+                ids[count++] = reader.getId(i);
+            }
 
-        for (int i = 0; i < jsonObject.getResourceList().size(); i++) {
-            JsonArrayEntry resourceElt = jsonObject.getResourceList().get(i);
-            String[] resourcePath = resourceElt.getName().split("/");
-            Integer resourceId = Integer.valueOf(resourcePath[0]);
+            if (count < 3 || ids[0] != objectId
+                    || (path.getObjectInstanceId() != null && ids[1] != path.getObjectInstanceId())
+                    || (path.getResourceId() != null && ids[2] != path.getResourceId())) {
+                throw new InvalidValueException("Invalid entry name: a resource in " + path + " is expected", path);
+            }
+            int instanceId = ids[1];
+            int resourceId = ids[2];
 
-            if (!multiResourceMap.isEmpty() && multiResourceMap.get(resourceId) != null) {
-                multiResourceMap.get(resourceId).put(Integer.valueOf(resourcePath[1]), resourceElt.getResourceValue());
-                continue;
+            InstanceContent instance = instances.get(instanceId);
+            if (instance == null) {
+                instance = new InstanceContent();
+                instances.put(instanceId, instance);
             }
-            if (resourcePath.length > 1) {
-                // multi resource
-                // store multi resource values in a map
-                Map<Integer, Object> values = new HashMap<>();
-                values.put(Integer.valueOf(resourcePath[1]), resourceElt.getResourceValue());
-                multiResourceMap.put(resourceId, values);
+
+            Type expectedType = plan.getType(resourceId, Type.STRING);
+            Object value = parseJsonValue(reader, expectedType, objectId, instanceId, resourceId);
+            if (count == 3) {
+                if (instance.multipleValues.containsKey(resourceId)) {
+                    throw new InvalidValueException("Single and multiple values for the same resource",
+                            new LwM2mPath(objectId, instanceId, resourceId));
+                }
+                instance.values.put(resourceId, value);
             } else {
-                // single resource
-                LwM2mPath rscPath = new LwM2mPath(path.getObjectId(), path.getObjectInstanceId(), resourceId);
-                Type expectedType = getResourceType(rscPath, model);
-                LwM2mResource res = LwM2mSingleResource.newResource(resourceId,
-                        parseJsonValue(resourceElt.getResourceValue(), expectedType, rscPath), expectedType);
-                lwM2mResourceMap.put(resourceId, res);
+                if (instance.values.containsKey(resourceId)) {
+                    throw new InvalidValueException("Single and multiple values for the same resource",
+                            new LwM2mPath(objectId, instanceId, resourceId));
+                }
+                Map<Integer, Object> values = instance.multipleValues.get(resourceId);
+                if (values == null) {
+                    values = new LinkedHashMap<>();
+                    instance.multipleValues.put(resourceId, values);
+                }
+                values.put(ids[3], value);
             }
         }
 
-        for (Map.Entry<Integer, Map<Integer, Object>> entry : multiResourceMap.entrySet()) {
-            Integer key = entry.getKey();
-            Map<Integer, Object> values = entry.getValue();
+        if (path.isObject()) {
+            List<LwM2mObjectInstance> objectInstances = new ArrayList<>(instances.size());
+            for (Entry<Integer, InstanceContent> instance : instances.entrySet()) {
+                objectInstances.add(new LwM2mObjectInstance(instance.getKey(), toResources(instance.getValue(),
+                        plan)));
+            }
+            return new LwM2mObject(objectId, objectInstances);
+        }
 
-            if (values != null && !values.isEmpty()) {
-                LwM2mPath rscPath = new LwM2mPath(path.getObjectId(), path.getObjectInstanceId(), key);
-                Type expectedType = getResourceType(rscPath, model);
-                for (Entry<Integer, Object> e : values.entrySet()) {
-                    values.put(e.getKey(), parseJsonValue(e.getValue(), expectedType, rscPath));
-                }
-                LwM2mResource res = LwM2mMultipleResource.newResource(key, values, expectedType);
-                lwM2mResourceMap.put(key, res);
+        InstanceContent content = instances.get(path.getObjectInstanceId());
+        List<LwM2mResource> resources = content == null ? new ArrayList<LwM2mResource>() : toResources(content,
+                plan);
+        if (path.isObjectInstance()) {
+            // object instance level request
+            return new LwM2mObjectInstance(path.getObjectInstanceId(), resources);
+        } else {
+            // resource level request
+            if (resources.isEmpty()) {
+                throw new InvalidValueException("No value for the requested resource", path);
             }
+            return resources.get(0);
         }
-        return lwM2mResourceMap;
     }
 
-    private static Object parseJsonValue(Object value, Type expectedType, LwM2mPath path) throws InvalidValueException {
+    private static List<LwM2mResource> toResources(InstanceContent content, ObjectCodecPlan plan) {
+        List<LwM2mResource> resources = new ArrayList<>(content.values.size() + content.multipleValues.size());
+        for (Entry<Integer, Object> value : content.values.entrySet()) {
+            resources.add(LwM2mSingleResource.newResource(value.getKey(), value.getValue(),
+                    plan.getType(value.getKey(), Type.STRING)));
+        }
+        for (Entry<Integer, Map<Integer, Object>> values : content.multipleValues.entrySet()) {
+            resources.add(LwM2mMultipleResource.newResource(values.getKey(), values.getValue(),
+                    plan.getType(values.getKey(), Type.STRING)));
+        }
+        return resources;
+    }
+
+    private static Object parseJsonValue(LwM2mJsonReader reader, Type expectedType, int objectId,
+            int objectInstanceId, int resourceId) throws InvalidValueException {
 
-        LOG.trace("JSON value for path {} and expected type {}: {}", path, expectedType, value);
+        LOG.trace("JSON value for resource {} and expected type {}", resourceId, expectedType);
 
         try {
             switch (expectedType) {
             case INTEGER:
                 // JSON format specs said v = integer or float
-                return ((Number) value).longValue();
+                return reader.getLong();
             case BOOLEAN:
-                return value;
+                return reader.getBoolean();
             case FLOAT:
                 // JSON format specs said v = integer or float
-                return ((Number) value).doubleValue();
+                return reader.getDouble();
             case TIME:
                 // TODO Specs page 44, Resource 13 (current time) of device object represented as Float value
-                return new Date(((Number) value).longValue() * 1000L);
+                return new Date(reader.getLong() * 1000L);
             case OPAQUE:
                 // If the Resource data type is opaque the string value
                 // holds the Base64 encoded representation of the Resource
-                return Base64.decodeBase64((String) value);
+                return Base64.decodeBase64(reader.getString());
             case STRING:
-                return value;
+                return reader.getString();
             default:
-                throw new InvalidValueException("Unsupported type " + expectedType, path);
+                throw new InvalidValueException("Unsupported type " + expectedType, new LwM2mPath(objectId,
+                        objectInstanceId, resourceId));
             }
-        } catch (Exception e) {
-            throw new InvalidValueException("Invalid content for type " + expectedType, path, e);
+        } catch (LwM2mJsonException e) {
+            throw new InvalidValueException("Invalid content for type " + expectedType, new LwM2mPath(objectId,
+                    objectInstanceId, resourceId), e);
         }
     }
 
     public static Type getResourceType(LwM2mPath rscPath, LwM2mModel model) throws InvalidValueException {
-        ResourceModel rscDesc = model.getResourceModel(rscPath.getObjectId(), rscPath.getResourceId());
-        if (rscDesc == null || rscDesc.type == null) {
-            LOG.trace("unknown type for resource : {}", rscPath);
-            // no resource description... string
-            return Type.STRING;
-        } else {
-            return rscDesc.type;
-        }
+        // no resource description... string
+        return ObjectCodecPlan.of(model, rscPath.getObjectId()).getType(rscPath.getResourceId(), Type.STRING);
     }
 }
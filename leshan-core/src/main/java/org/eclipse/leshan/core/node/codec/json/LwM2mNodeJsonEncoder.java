@@ -15,12 +15,10 @@
  *******************************************************************************/
 package org.eclipse.leshan.core.node.codec.json;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.Map.Entry;
 
 import org.eclipse.leshan.core.model.LwM2mModel;
-import org.eclipse.leshan.core.model.ResourceModel;
 import org.eclipse.leshan.core.model.ResourceModel.Type;
 import org.eclipse.leshan.core.node.LwM2mNode;
 import org.eclipse.leshan.core.node.LwM2mNodeVisitor;
@@ -29,14 +27,20 @@ import org.eclipse.leshan.core.node.LwM2mObjectInstance;
 import org.eclipse.leshan.core.node.LwM2mPath;
 import org.eclipse.leshan.core.node.LwM2mResource;
 import org.eclipse.leshan.core.node.codec.Lwm2mNodeEncoderUtil;
-import org.eclipse.leshan.json.JsonArrayEntry;
-import org.eclipse.leshan.json.JsonRootObject;
-import org.eclipse.leshan.json.LwM2mJson;
+import org.eclipse.leshan.core.node.codec.ObjectCodecPlan;
+import org.eclipse.leshan.json.LwM2mJsonWriter;
 import org.eclipse.leshan.util.Base64;
 import org.eclipse.leshan.util.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Encodes a {@link LwM2mNode} in the LWM2M JSON format, written straight to UTF-8 bytes.
+ * <p>
+ * The entry names of an object instance or a resource are relative to the object instance (e.g. <code>6/0</code>).
+ * An object is encoded with the object path as base name and names relative to it (e.g. <code>0/6/0</code>).
+ * </p>
+ */
 public class LwM2mNodeJsonEncoder {
 
     private static final Logger LOG = LoggerFactory.getLogger(LwM2mNodeJsonEncoder.class);
@@ -47,98 +51,91 @@ public class LwM2mNodeJsonEncoder {
         Validate.notNull(model);
 
         InternalEncoder internalEncoder = new InternalEncoder();
-        internalEncoder.objectId = path.getObjectId();
-        internalEncoder.model = model;
+        internalEncoder.plan = ObjectCodecPlan.of(model, path.getObjectId());
         node.accept(internalEncoder);
-        return internalEncoder.encoded;
+        return internalEncoder.writer.toByteArray();
     }
 
     private static class InternalEncoder implements LwM2mNodeVisitor {
         // visitor inputs
-        private int objectId;
-        private LwM2mModel model;
+        private ObjectCodecPlan plan;
 
         // visitor output
-        private byte[] encoded = null;
+        private final LwM2mJsonWriter writer = new LwM2mJsonWriter();
 
         @Override
         public void visit(LwM2mObject object) {
-            // TODO needed to encode multiple instances
-            // How to deal with ObjLink
-            throw new UnsupportedOperationException("Object JSON encoding not supported");
+            LOG.trace("Encoding object {} into JSON", object);
+            writer.beginRoot("/" + object.getId() + "/", null);
+            for (Entry<Integer, LwM2mObjectInstance> instance : object.getInstances().entrySet()) {
+                for (LwM2mResource resource : instance.getValue().getResources().values()) {
+                    encodeResource(instance.getKey(), resource);
+                }
+            }
+            writer.endRoot();
         }
 
         @Override
         public void visit(LwM2mObjectInstance instance) {
             LOG.trace("Encoding object instance {} into JSON", instance);
-            JsonRootObject jsonObject = null;
-            ArrayList<JsonArrayEntry> resourceList = new ArrayList<>();
-            for (Entry<Integer, LwM2mResource> resource : instance.getResources().entrySet()) {
-                LwM2mResource res = resource.getValue();
-                resourceList.addAll(lwM2mResourceToJsonArrayEntry(res));
+            writer.beginRoot(null, null);
+            for (LwM2mResource resource : instance.getResources().values()) {
+                encodeResource(-1, resource);
             }
-            jsonObject = new JsonRootObject(resourceList);
-            String json = LwM2mJson.toJsonLwM2m(jsonObject);
-            encoded = json.getBytes();
+            writer.endRoot();
         }
 
         @Override
         public void visit(LwM2mResource resource) {
             LOG.trace("Encoding resource {} into JSON", resource);
-            JsonRootObject jsonObject = null;
-            jsonObject = new JsonRootObject(lwM2mResourceToJsonArrayEntry(resource));
-            String json = LwM2mJson.toJsonLwM2m(jsonObject);
-            encoded = json.getBytes();
+            writer.beginRoot(null, null);
+            encodeResource(-1, resource);
+            writer.endRoot();
         }
 
-        private ArrayList<JsonArrayEntry> lwM2mResourceToJsonArrayEntry(LwM2mResource resource) {
-            ResourceModel rSpec = model.getResourceModel(objectId, resource.getId());
-            Type expectedType = rSpec != null ? rSpec.type : resource.getType();
-            ArrayList<JsonArrayEntry> resourcesList = new ArrayList<>();
+        // the instance id is negative if it is not part of the entry names
+        private void encodeResource(int instanceId, LwM2mResource resource) {
+            Type expectedType = plan.getType(resource.getId(), resource.getType());
             if (resource.isMultiInstances()) {
                 for (Entry<Integer, ?> entry : resource.getValues().entrySet()) {
-                    JsonArrayEntry jsonResourceElt = new JsonArrayEntry();
-                    jsonResourceElt.setName(resource.getId() + "/" + entry.getKey());
                     Object convertedValue = Lwm2mNodeEncoderUtil.convertValue(entry.getValue(), resource.getType(),
                             expectedType);
-                    this.setResourceValue(convertedValue, expectedType, jsonResourceElt);
-                    resourcesList.add(jsonResourceElt);
+                    this.encodeValue(instanceId, resource.getId(), entry.getKey(), convertedValue, expectedType);
                 }
             } else {
-                JsonArrayEntry jsonResourceElt = new JsonArrayEntry();
-                jsonResourceElt.setName(new StringBuffer().append(resource.getId()).toString());
-                this.setResourceValue(
-                        Lwm2mNodeEncoderUtil.convertValue(resource.getValue(), resource.getType(), expectedType),
-                        expectedType, jsonResourceElt);
-                resourcesList.add(jsonResourceElt);
+                Object convertedValue = Lwm2mNodeEncoderUtil.convertValue(resource.getValue(), resource.getType(),
+                        expectedType);
+                this.encodeValue(instanceId, resource.getId(), -1, convertedValue, expectedType);
             }
-            return resourcesList;
         }
 
-        private void setResourceValue(Object value, Type type, JsonArrayEntry jsonResource) {
+        private void encodeValue(int instanceId, int resourceId, int resourceInstanceId, Object value, Type type) {
             LOG.trace("Encoding value {} in JSON", value);
             // Following table 20 in the Specs
             switch (type) {
             case STRING:
-                jsonResource.setStringValue((String) value);
+                writer.entry(instanceId, resourceId, resourceInstanceId, (String) value);
                 break;
             case INTEGER:
+                writer.entry(instanceId, resourceId, resourceInstanceId, ((Number) value).longValue());
+                break;
             case FLOAT:
-                jsonResource.setFloatValue((Number) value);
+                writer.entry(instanceId, resourceId, resourceInstanceId, ((Number) value).doubleValue());
                 break;
             case BOOLEAN:
-                jsonResource.setBooleanValue((Boolean) value);
+                writer.entry(instanceId, resourceId, resourceInstanceId, (boolean) (Boolean) value);
                 break;
             case TIME:
                 // Specs device object example page 44, rec 13 is Time
                 // represented as float?
-                jsonResource.setFloatValue((((Date) value).getTime() / 1000L));
+                writer.entry(instanceId, resourceId, resourceInstanceId, ((Date) value).getTime() / 1000L);
                 break;
             case OPAQUE:
-                jsonResource.setStringValue(Base64.encodeBase64String((byte[]) value));
+                writer.entry(instanceId, resourceId, resourceInstanceId, Base64.encodeBase64String((byte[]) value));
+                break;
             default:
                 throw new IllegalArgumentException("Invalid value type: " + type);
             }
         }
     }
-}
\ No newline at end of file
+}
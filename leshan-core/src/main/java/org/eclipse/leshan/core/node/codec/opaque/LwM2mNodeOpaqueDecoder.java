@@ -22,6 +22,7 @@ import org.eclipse.leshan.core.node.LwM2mNode;
 import org.eclipse.leshan.core.node.LwM2mPath;
 import org.eclipse.leshan.core.node.LwM2mSingleResource;
 import org.eclipse.leshan.core.node.codec.InvalidValueException;
+import org.eclipse.leshan.core.node.codec.ObjectCodecPlan;
 import org.eclipse.leshan.util.Validate;
 
 public class LwM2mNodeOpaqueDecoder {
@@ -29,7 +30,7 @@ public class LwM2mNodeOpaqueDecoder {
     public static LwM2mNode decode(byte[] content, LwM2mPath path, LwM2mModel model) throws InvalidValueException {
         // single resource value
         Validate.notNull(path.getResourceId());
-        ResourceModel desc = model.getResourceModel(path.getObjectId(), path.getResourceId());
+        ResourceModel desc = ObjectCodecPlan.of(model, path.getObjectId()).getResourceModel(path.getResourceId());
         if (desc != null && desc.type != Type.OPAQUE) {
             throw new InvalidValueException(
                     "Invalid content format, OPAQUE can only be used for single OPAQUE resource", path);
@@ -25,6 +25,7 @@ import org.eclipse.leshan.core.node.LwM2mObjectInstance;
 import org.eclipse.leshan.core.node.LwM2mPath;
 import org.eclipse.leshan.core.node.LwM2mResource;
 import org.eclipse.leshan.core.node.codec.Lwm2mNodeEncoderUtil;
+import org.eclipse.leshan.core.node.codec.ObjectCodecPlan;
 import org.eclipse.leshan.util.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,16 +39,14 @@ public class LwM2mNodeOpaqueEncoder {
         Validate.notNull(model);
 
         InternalEncoder internalEncoder = new InternalEncoder();
-        internalEncoder.objectId = path.getObjectId();
-        internalEncoder.model = model;
+        internalEncoder.plan = ObjectCodecPlan.of(model, path.getObjectId());
         node.accept(internalEncoder);
         return internalEncoder.encoded;
     }
 
     private static class InternalEncoder implements LwM2mNodeVisitor {
 
-        int objectId;
-        LwM2mModel model;
+        ObjectCodecPlan plan;
 
         byte[] encoded = null;
 
@@ -66,7 +65,7 @@ public class LwM2mNodeOpaqueEncoder {
             if (resource.isMultiInstances()) {
                 throw new IllegalArgumentException("Mulitple instances resource cannot be encoded in opaque format");
             }
-            ResourceModel rSpec = model.getResourceModel(objectId, resource.getId());
+            ResourceModel rSpec = plan.getResourceModel(resource.getId());
             if (rSpec != null && rSpec.type != Type.OPAQUE) {
                 throw new IllegalArgumentException("Only single opaque resource can be encoded in opaque format");
             }
@@ -18,12 +18,12 @@ package org.eclipse.leshan.core.node.codec.text;
 import java.util.Date;
 
 import org.eclipse.leshan.core.model.LwM2mModel;
-import org.eclipse.leshan.core.model.ResourceModel;
 import org.eclipse.leshan.core.model.ResourceModel.Type;
 import org.eclipse.leshan.core.node.LwM2mNode;
 import org.eclipse.leshan.core.node.LwM2mPath;
 import org.eclipse.leshan.core.node.LwM2mSingleResource;
 import org.eclipse.leshan.core.node.codec.InvalidValueException;
+import org.eclipse.leshan.core.node.codec.ObjectCodecPlan;
 import org.eclipse.leshan.util.Charsets;
 import org.eclipse.leshan.util.Validate;
 import org.slf4j.Logger;
@@ -35,12 +35,11 @@ public class LwM2mNodeTextDecoder {
     public static LwM2mNode decode(byte[] content, LwM2mPath path, LwM2mModel model) throws InvalidValueException {
         // single resource value
         Validate.notNull(path.getResourceId());
-        ResourceModel rDesc = model.getResourceModel(path.getObjectId(), path.getResourceId());
+        Type type = ObjectCodecPlan.of(model, path.getObjectId()).getType(path.getResourceId(), null);
 
         String strValue = new String(content, Charsets.UTF_8);
-        if (rDesc != null && rDesc.type != null) {
-            return LwM2mSingleResource.newResource(path.getResourceId(), parseTextValue(strValue, rDesc.type, path),
-                    rDesc.type);
+        if (type != null) {
+            return LwM2mSingleResource.newResource(path.getResourceId(), parseTextValue(strValue, type, path), type);
         } else {
             // unknown resource, returning a default string value
             return LwM2mSingleResource.newStringResource(path.getResourceId(), strValue);
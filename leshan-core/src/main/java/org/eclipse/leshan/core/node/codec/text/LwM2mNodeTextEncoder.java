@@ -18,7 +18,6 @@ package org.eclipse.leshan.core.node.codec.text;
 import java.util.Date;
 
 import org.eclipse.leshan.core.model.LwM2mModel;
-import org.eclipse.leshan.core.model.ResourceModel;
 import org.eclipse.leshan.core.model.ResourceModel.Type;
 import org.eclipse.leshan.core.node.LwM2mNode;
 import org.eclipse.leshan.core.node.LwM2mNodeVisitor;
@@ -27,6 +26,7 @@ import org.eclipse.leshan.core.node.LwM2mObjectInstance;
 import org.eclipse.leshan.core.node.LwM2mPath;
 import org.eclipse.leshan.core.node.LwM2mResource;
 import org.eclipse.leshan.core.node.codec.Lwm2mNodeEncoderUtil;
+import org.eclipse.leshan.core.node.codec.ObjectCodecPlan;
 import org.eclipse.leshan.util.Charsets;
 import org.eclipse.leshan.util.Validate;
 import org.slf4j.Logger;
@@ -42,16 +42,14 @@ public class LwM2mNodeTextEncoder {
         Validate.notNull(model);
 
         InternalEncoder internalEncoder = new InternalEncoder();
-        internalEncoder.objectId = path.getObjectId();
-        internalEncoder.model = model;
+        internalEncoder.plan = ObjectCodecPlan.of(model, path.getObjectId());
         node.accept(internalEncoder);
         return internalEncoder.encoded;
     }
 
     private static class InternalEncoder implements LwM2mNodeVisitor {
         // visitor inputs
-        private int objectId;
-        private LwM2mModel model;
+        private ObjectCodecPlan plan;
 
         // visitor output
         private byte[] encoded = null;
@@ -73,8 +71,7 @@ public class LwM2mNodeTextEncoder {
             }
             LOG.trace("Encoding resource {} into text", resource);
 
-            ResourceModel rSpec = model.getResourceModel(objectId, resource.getId());
-            Type expectedType = rSpec != null ? rSpec.type : resource.getType();
+            Type expectedType = plan.getType(resource.getId(), resource.getType());
             Object val = Lwm2mNodeEncoderUtil.convertValue(resource.getValue(), resource.getType(), expectedType);
 
             String strValue = null;
@@ -22,7 +22,6 @@ import java.util.List;
 import java.util.Map;
 
 import org.eclipse.leshan.core.model.LwM2mModel;
-import org.eclipse.leshan.core.model.ResourceModel;
 import org.eclipse.leshan.core.model.ResourceModel.Type;
 import org.eclipse.leshan.core.node.LwM2mMultipleResource;
 import org.eclipse.leshan.core.node.LwM2mNode;
@@ -32,138 +31,177 @@ import org.eclipse.leshan.core.node.LwM2mPath;
 import org.eclipse.leshan.core.node.LwM2mResource;
 import org.eclipse.leshan.core.node.LwM2mSingleResource;
 import org.eclipse.leshan.core.node.codec.InvalidValueException;
+import org.eclipse.leshan.core.node.codec.ObjectCodecPlan;
 import org.eclipse.leshan.tlv.Tlv;
 import org.eclipse.leshan.tlv.Tlv.TlvType;
-import org.eclipse.leshan.tlv.TlvDecoder;
 import org.eclipse.leshan.tlv.TlvException;
+import org.eclipse.leshan.tlv.TlvReader;
+import org.eclipse.leshan.util.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Decodes TLV content into {@link LwM2mNode}s.
+ * <p>
+ * The content is read in place with a {@link TlvReader}: the nodes are built while walking the TLV entries, without
+ * intermediate {@link Tlv} tree, and only the opaque values are copied.
+ * </p>
+ */
 public class LwM2mNodeTlvDecoder {
 
     private static final Logger LOG = LoggerFactory.getLogger(LwM2mNodeTlvDecoder.class);
 
     public static LwM2mNode decode(byte[] content, LwM2mPath path, LwM2mModel model) throws InvalidValueException {
         try {
-            Tlv[] tlvs = TlvDecoder.decode(ByteBuffer.wrap(content));
-            return parseTlv(tlvs, path, model);
+            return parseTlv(new TlvReader(ByteBuffer.wrap(content)), path,
+                    ObjectCodecPlan.of(model, path.getObjectId()));
         } catch (TlvException e) {
-            throw new InvalidValueException("Unable to decode tlv.", path, e);
+            throw new InvalidValueException("Unable to decode tlv.", path, new TlvException("Impossible to parse TLV: \n"
+                    + Hex.encodeHexString(content), e));
         }
     }
 
-    private static LwM2mNode parseTlv(Tlv[] tlvs, LwM2mPath path, LwM2mModel model) throws InvalidValueException {
-        LOG.trace("Parsing TLV content for path {}: {}", path, tlvs);
+    private static LwM2mNode parseTlv(TlvReader reader, LwM2mPath path, ObjectCodecPlan plan)
+            throws InvalidValueException, TlvException {
+        LOG.trace("Parsing TLV content for path {}", path);
 
         if (path.isObject()) {
             // object level request
             final List<LwM2mObjectInstance> instances = new ArrayList<>();
 
-            // is it an array of resource TLV?
-            if (tlvs.length > 0 && //
-                    (tlvs[0].getType() == TlvType.MULTIPLE_RESOURCE || tlvs[0].getType() == TlvType.RESOURCE_VALUE)) {
-                instances.add(parseObjectInstancesTlv(tlvs, path.getObjectId(), 0, model));
-            } else {
-                for (int i = 0; i < tlvs.length; i++) {
-                    if (tlvs[i].getType() != TlvType.OBJECT_INSTANCE)
-                        throw new InvalidValueException(String.format(
-                                "Expected TLV of type OBJECT_INSTANCE but was %s", tlvs[i].getType().name()), path);
-
-                    instances.add(parseObjectInstancesTlv(tlvs[i].getChildren(), path.getObjectId(),
-                            tlvs[i].getIdentifier(), model));
+            if (reader.next()) {
+                // is it an array of resource TLV?
+                if (reader.getType() == TlvType.MULTIPLE_RESOURCE || reader.getType() == TlvType.RESOURCE_VALUE) {
+                    instances.add(parseObjectInstance(reader, path.getObjectId(), 0, plan, true));
+                } else {
+                    do {
+                        if (reader.getType() != TlvType.OBJECT_INSTANCE)
+                            throw new InvalidValueException(String.format(
+                                    "Expected TLV of type OBJECT_INSTANCE but was %s", reader.getType().name()),
+                                    path);
+
+                        int instanceId = reader.getIdentifier();
+                        reader.enter();
+                        instances.add(parseObjectInstance(reader, path.getObjectId(), instanceId, plan, false));
+                        reader.exit();
+                    } while (reader.next());
                 }
             }
             return new LwM2mObject(path.getObjectId(), instances);
 
         } else if (path.isObjectInstance()) {
             // object instance level request
-            return parseObjectInstancesTlv(tlvs, path.getObjectId(), path.getObjectInstanceId(), model);
+            return parseObjectInstance(reader, path.getObjectId(), path.getObjectInstanceId(), plan, false);
         } else {
             // resource level request
-            if (tlvs.length == 1 && tlvs[0].getType() != TlvType.RESOURCE_INSTANCE) {
-                return parseResourceTlv(tlvs[0], path.getObjectId(), path.getObjectInstanceId(), model);
+            if (reader.next() && reader.getType() != TlvType.RESOURCE_INSTANCE && !reader.hasNext()) {
+                return parseResource(reader, path.getObjectId(), path.getObjectInstanceId(), plan);
             } else {
-                Type expectedType = getResourceType(path, model);
+                Type expectedType = getResourceType(plan, path.getResourceId());
                 return LwM2mMultipleResource.newResource(path.getResourceId(),
-                        parseTlvValues(tlvs, expectedType, path), expectedType);
+                        parseResourceInstances(reader, expectedType, path), expectedType);
             }
         }
     }
 
-    private static LwM2mObjectInstance parseObjectInstancesTlv(Tlv[] tlvs, int objectId, int instanceId,
-            LwM2mModel model) throws InvalidValueException {
+    // the first resource is already read if started is true
+    private static LwM2mObjectInstance parseObjectInstance(TlvReader reader, int objectId, int instanceId,
+            ObjectCodecPlan plan, boolean started) throws InvalidValueException, TlvException {
         // read resources
-        List<LwM2mResource> resources = new ArrayList<>(tlvs.length);
-        for (int i = 0; i < tlvs.length; i++) {
-            resources.add(parseResourceTlv(tlvs[i], objectId, instanceId, model));
+        List<LwM2mResource> resources = new ArrayList<>();
+        if (started || reader.next()) {
+            do {
+                resources.add(parseResource(reader, objectId, instanceId, plan));
+            } while (reader.next());
         }
         return new LwM2mObjectInstance(instanceId, resources);
     }
 
-    private static LwM2mResource parseResourceTlv(Tlv tlv, int objectId, int objectInstanceId, LwM2mModel model)
-            throws InvalidValueException {
-        LwM2mPath resourcePath = new LwM2mPath(objectId, objectInstanceId, tlv.getIdentifier());
-        Type expectedType = getResourceType(resourcePath, model);
-        Integer resourceId = tlv.getIdentifier();
-        switch (tlv.getType()) {
+    private static LwM2mResource parseResource(TlvReader reader, int objectId, int objectInstanceId,
+            ObjectCodecPlan plan) throws InvalidValueException, TlvException {
+        int resourceId = reader.getIdentifier();
+        Type expectedType = getResourceType(plan, resourceId);
+        switch (reader.getType()) {
         case MULTIPLE_RESOURCE:
-            return LwM2mMultipleResource.newResource(resourceId,
-                    parseTlvValues(tlv.getChildren(), expectedType, resourcePath), expectedType);
+            reader.enter();
+            Map<Integer, Object> values = parseResourceInstances(reader, expectedType, objectId, objectInstanceId,
+                    resourceId);
+            reader.exit();
+            return LwM2mMultipleResource.newResource(resourceId, values, expectedType);
         case RESOURCE_VALUE:
             return LwM2mSingleResource.newResource(resourceId,
-                    parseTlvValue(tlv.getValue(), expectedType, resourcePath), expectedType);
+                    parseValue(reader, expectedType, objectId, objectInstanceId, resourceId), expectedType);
         default:
-            throw new InvalidValueException("Invalid TLV value", resourcePath);
+            throw new InvalidValueException("Invalid TLV value", new LwM2mPath(objectId, objectInstanceId,
+                    resourceId));
         }
     }
 
-    private static Map<Integer, Object> parseTlvValues(Tlv[] tlvs, Type expectedType, LwM2mPath path)
-            throws InvalidValueException {
+    // the first resource instance is already read
+    private static Map<Integer, Object> parseResourceInstances(TlvReader reader, Type expectedType, LwM2mPath path)
+            throws InvalidValueException, TlvException {
         Map<Integer, Object> values = new HashMap<Integer, Object>();
-        for (int j = 0; j < tlvs.length; j++) {
-            Tlv tlvChild = tlvs[j];
+        if (reader.getType() == null) {
+            return values;
+        }
+        do {
+            if (reader.getType() != TlvType.RESOURCE_INSTANCE)
+                throw new InvalidValueException(String.format("Expected TLV of type RESOURCE_INSTANCE but was %s",
+                        reader.getType().name()), path);
+
+            values.put(reader.getIdentifier(), parseValue(reader, expectedType, path.getObjectId(),
+                    path.getObjectInstanceId(), path.getResourceId()));
+        } while (reader.next());
+        return values;
+    }
 
-            if (tlvChild.getType() != TlvType.RESOURCE_INSTANCE)
+    private static Map<Integer, Object> parseResourceInstances(TlvReader reader, Type expectedType, int objectId,
+            int objectInstanceId, int resourceId) throws InvalidValueException, TlvException {
+        Map<Integer, Object> values = new HashMap<Integer, Object>();
+        while (reader.next()) {
+            if (reader.getType() != TlvType.RESOURCE_INSTANCE)
                 throw new InvalidValueException(String.format("Expected TLV of type RESOURCE_INSTANCE but was %s",
-                        tlvChild.getType().name()), path);
+                        reader.getType().name()), new LwM2mPath(objectId, objectInstanceId, resourceId));
 
-            values.put(tlvChild.getIdentifier(), parseTlvValue(tlvChild.getValue(), expectedType, path));
+            values.put(reader.getIdentifier(), parseValue(reader, expectedType, objectId, objectInstanceId,
+                    resourceId));
         }
         return values;
     }
 
-    private static Object parseTlvValue(byte[] value, Type expectedType, LwM2mPath path) throws InvalidValueException {
+    private static Object parseValue(TlvReader reader, Type expectedType, int objectId, int objectInstanceId,
+            int resourceId) throws InvalidValueException {
         try {
-            LOG.trace("TLV value for path {} and expected type {}: {}", path, expectedType, value);
             switch (expectedType) {
             case STRING:
-                return TlvDecoder.decodeString(value);
+                return reader.getString();
             case INTEGER:
-                return TlvDecoder.decodeInteger(value).longValue();
+                return reader.getInteger();
             case FLOAT:
-                return TlvDecoder.decodeFloat(value).doubleValue();
+                return reader.getFloat();
             case BOOLEAN:
-                return TlvDecoder.decodeBoolean(value);
+                return reader.getBoolean();
             case TIME:
-                return TlvDecoder.decodeDate(value);
+                return reader.getDate();
             case OPAQUE:
-                return value;
+                // the node keeps the value: it can not be a view of the content
+                return reader.getBytes();
             default:
-                throw new InvalidValueException("Unsupported type " + expectedType, path);
+                throw new InvalidValueException("Unsupported type " + expectedType, new LwM2mPath(objectId,
+                        objectInstanceId, resourceId));
             }
         } catch (TlvException e) {
-            throw new InvalidValueException("Invalid content for type " + expectedType, path, e);
+            throw new InvalidValueException("Invalid content for type " + expectedType, new LwM2mPath(objectId,
+                    objectInstanceId, resourceId), e);
         }
     }
 
     public static Type getResourceType(LwM2mPath rscPath, LwM2mModel model) throws InvalidValueException {
-        ResourceModel rscDesc = model.getResourceModel(rscPath.getObjectId(), rscPath.getResourceId());
-        if (rscDesc == null || rscDesc.type == null) {
-            LOG.trace("unknown type for resource : {}", rscPath);
-            // no resource description... opaque
-            return Type.OPAQUE;
-        } else {
-            return rscDesc.type;
-        }
+        return getResourceType(ObjectCodecPlan.of(model, rscPath.getObjectId()), rscPath.getResourceId());
+    }
+
+    private static Type getResourceType(ObjectCodecPlan plan, int resourceId) {
+        // no resource description... opaque
+        return plan.getType(resourceId, Type.OPAQUE);
     }
 }
@@ -15,15 +15,14 @@
  *******************************************************************************/
 package org.eclipse.leshan.core.node.codec.tlv;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Map.Entry;
 
 import org.eclipse.leshan.core.model.LwM2mModel;
-import org.eclipse.leshan.core.model.ObjectModel;
-import org.eclipse.leshan.core.model.ResourceModel;
 import org.eclipse.leshan.core.model.ResourceModel.Type;
 import org.eclipse.leshan.core.node.LwM2mNode;
 import org.eclipse.leshan.core.node.LwM2mNodeVisitor;
@@ -32,13 +31,20 @@ import org.eclipse.leshan.core.node.LwM2mObjectInstance;
 import org.eclipse.leshan.core.node.LwM2mPath;
 import org.eclipse.leshan.core.node.LwM2mResource;
 import org.eclipse.leshan.core.node.codec.Lwm2mNodeEncoderUtil;
-import org.eclipse.leshan.tlv.Tlv;
+import org.eclipse.leshan.core.node.codec.ObjectCodecPlan;
 import org.eclipse.leshan.tlv.Tlv.TlvType;
 import org.eclipse.leshan.tlv.TlvEncoder;
 import org.eclipse.leshan.util.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Encodes a {@link LwM2mNode} in TLV without building an intermediate TLV tree.
+ * <p>
+ * The node is visited twice: a sizing pass computes the length of each TLV once, then a writing pass writes the
+ * headers and the values straight to the output buffer.
+ * </p>
+ */
 public class LwM2mNodeTlvEncoder {
 
     private static final Logger LOG = LoggerFactory.getLogger(LwM2mNodeTlvEncoder.class);
@@ -48,47 +54,86 @@ public class LwM2mNodeTlvEncoder {
         Validate.notNull(path);
         Validate.notNull(model);
 
-        InternalEncoder internalEncoder = new InternalEncoder();
-        internalEncoder.objectId = path.getObjectId();
-        internalEncoder.model = model;
-        node.accept(internalEncoder);
-        return internalEncoder.out.toByteArray();
+        InternalEncoder internalEncoder = new InternalEncoder(ObjectCodecPlan.of(model, path.getObjectId()));
+        int size = internalEncoder.size(node);
+        ByteBuffer out = ByteBuffer.allocate(size);
+        internalEncoder.write(node, out);
+        return out.array();
+    }
+
+    /**
+     * Encodes a node into a caller-supplied buffer, starting at its current position. The buffer position is moved
+     * after the encoded content.
+     *
+     * @return the number of bytes written
+     * @throws BufferOverflowException if the remaining space of the buffer is too small, nothing is written in this
+     *         case
+     */
+    public static int encode(LwM2mNode node, LwM2mPath path, LwM2mModel model, ByteBuffer out) {
+        Validate.notNull(node);
+        Validate.notNull(path);
+        Validate.notNull(model);
+        Validate.notNull(out);
+
+        InternalEncoder internalEncoder = new InternalEncoder(ObjectCodecPlan.of(model, path.getObjectId()));
+        int size = internalEncoder.size(node);
+        if (out.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        ByteOrder order = out.order();
+        out.order(ByteOrder.BIG_ENDIAN);
+        try {
+            internalEncoder.write(node, out);
+        } finally {
+            out.order(order);
+        }
+        return size;
     }
 
     private static class InternalEncoder implements LwM2mNodeVisitor {
 
         // visitor inputs
-        private int objectId;
-        private LwM2mModel model;
+        private final ObjectCodecPlan plan;
+
+        // the lengths of the TLVs in pre-order, filled by the sizing pass
+        private final TlvEncoder.Lengths lengths = new TlvEncoder.Lengths();
 
-        // visitor output
-        private ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // the output of the writing pass, null during the sizing pass
+        private ByteBuffer out;
+
+        // the size of the encoded node, set by the sizing pass
+        private int size;
+
+        private InternalEncoder(ObjectCodecPlan plan) {
+            this.plan = plan;
+        }
+
+        private int size(LwM2mNode node) {
+            out = null;
+            lengths.clear();
+            node.accept(this);
+            return size;
+        }
+
+        private void write(LwM2mNode node, ByteBuffer out) {
+            this.out = out;
+            lengths.rewind();
+            node.accept(this);
+        }
 
         @Override
         public void visit(LwM2mObject object) {
             LOG.trace("Encoding object instances {} into TLV", object);
 
-            Tlv[] tlvs = null;
-
-            ObjectModel objectModel = model.getObjectModel(object.getId());
-            if (objectModel != null && !objectModel.multiple) {
+            if (plan.isSingleInstance()) {
                 // single instance object, the instance is level is not needed
-                tlvs = encodeResources(object.getInstance(0).getResources().values());
+                size = encodeResources(object.getInstance(0).getResources().values());
             } else {
-                tlvs = new Tlv[object.getInstances().size()];
-                int i = 0;
+                size = 0;
                 for (Entry<Integer, LwM2mObjectInstance> instance : object.getInstances().entrySet()) {
-                    Tlv[] resources = encodeResources(instance.getValue().getResources().values());
-                    tlvs[i] = new Tlv(TlvType.OBJECT_INSTANCE, resources, null, instance.getKey());
-                    i++;
+                    size += encodeInstance(instance.getKey(), instance.getValue());
                 }
             }
-
-            try {
-                out.write(TlvEncoder.encode(tlvs).array());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
         }
 
         @Override
@@ -96,81 +141,123 @@ public class LwM2mNodeTlvEncoder {
             LOG.trace("Encoding object instance {} into TLV", instance);
 
             // The instance is encoded as an array of resource TLVs.
-            Tlv[] rTlvs = encodeResources(instance.getResources().values());
-
-            try {
-                out.write(TlvEncoder.encode(rTlvs).array());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            size = encodeResources(instance.getResources().values());
         }
 
         @Override
         public void visit(LwM2mResource resource) {
             LOG.trace("Encoding resource {} into TLV", resource);
 
-            Tlv rTlv = encodeResource(resource);
+            size = encodeResource(resource);
+        }
 
-            try {
-                out.write(TlvEncoder.encode(new Tlv[] { rTlv }).array());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+        private int encodeInstance(int instanceId, LwM2mObjectInstance instance) {
+            if (out != null) {
+                TlvEncoder.encodeHeader(TlvType.OBJECT_INSTANCE, instanceId, lengths.next(), out);
+                encodeResources(instance.getResources().values());
+                return 0;
             }
+
+            int index = lengths.add(0);
+            int length = encodeResources(instance.getResources().values());
+            lengths.set(index, length);
+            return TlvEncoder.encodedSize(instanceId, length);
         }
 
-        private Tlv[] encodeResources(Collection<LwM2mResource> resources) {
-            Tlv[] rTlvs = new Tlv[resources.size()];
-            int i = 0;
+        // returns the encoded size of the resources during the sizing pass
+        private int encodeResources(Collection<LwM2mResource> resources) {
+            int length = 0;
             for (LwM2mResource resource : resources) {
-                rTlvs[i] = encodeResource(resource);
-                i++;
+                length += encodeResource(resource);
             }
-            return rTlvs;
+            return length;
         }
 
-        private Tlv encodeResource(LwM2mResource resource) {
-            ResourceModel rSpec = model.getResourceModel(objectId, resource.getId());
-            Type expectedType = rSpec != null ? rSpec.type : resource.getType();
+        // returns the encoded size of the resource during the sizing pass
+        private int encodeResource(LwM2mResource resource) {
+            Type expectedType = plan.getType(resource.getId(), resource.getType());
 
-            Tlv rTlv = null;
             if (resource.isMultiInstances()) {
-                Tlv[] instances = new Tlv[resource.getValues().size()];
-                int i = 0;
+                if (out != null) {
+                    TlvEncoder.encodeHeader(TlvType.MULTIPLE_RESOURCE, resource.getId(), lengths.next(), out);
+                    for (Entry<Integer, ?> entry : resource.getValues().entrySet()) {
+                        encodeValue(TlvType.RESOURCE_INSTANCE, entry.getKey(), entry.getValue(), resource.getType(),
+                                expectedType);
+                    }
+                    return 0;
+                }
+
+                int index = lengths.add(0);
+                int length = 0;
                 for (Entry<Integer, ?> entry : resource.getValues().entrySet()) {
-                    Object convertedValue = Lwm2mNodeEncoderUtil.convertValue(entry.getValue(), resource.getType(),
-                            expectedType);
-                    instances[i] = new Tlv(TlvType.RESOURCE_INSTANCE, null, this.encodeTlvValue(convertedValue,
-                            expectedType), entry.getKey());
-                    i++;
+                    length += encodeValue(TlvType.RESOURCE_INSTANCE, entry.getKey(), entry.getValue(),
+                            resource.getType(), expectedType);
                 }
-                rTlv = new Tlv(TlvType.MULTIPLE_RESOURCE, instances, null, resource.getId());
+                lengths.set(index, length);
+                return TlvEncoder.encodedSize(resource.getId(), length);
             } else {
-                Object convertedValue = Lwm2mNodeEncoderUtil.convertValue(resource.getValue(), resource.getType(),
+                return encodeValue(TlvType.RESOURCE_VALUE, resource.getId(), resource.getValue(), resource.getType(),
                         expectedType);
-                rTlv = new Tlv(TlvType.RESOURCE_VALUE, null, this.encodeTlvValue(convertedValue, expectedType),
-                        resource.getId());
             }
-            return rTlv;
         }
 
-        private byte[] encodeTlvValue(Object value, Type type) {
+        // returns the encoded size of the TLV during the sizing pass
+        private int encodeValue(TlvType tlvType, int identifier, Object value, Type currentType, Type expectedType) {
+            Object convertedValue = Lwm2mNodeEncoderUtil.convertValue(value, currentType, expectedType);
+            if (out != null) {
+                TlvEncoder.encodeHeader(tlvType, identifier, lengths.next(), out);
+                writeTlvValue(convertedValue, expectedType, out);
+                return 0;
+            }
+
+            int length = tlvValueLength(convertedValue, expectedType);
+            lengths.add(length);
+            return TlvEncoder.encodedSize(identifier, length);
+        }
+
+        private int tlvValueLength(Object value, Type type) {
             LOG.trace("Encoding value {} in TLV", value);
             switch (type) {
             case STRING:
-                return TlvEncoder.encodeString((String) value);
+                return TlvEncoder.stringLength((String) value);
+            case INTEGER:
+                return TlvEncoder.integerLength(((Number) value).longValue());
+            case FLOAT:
+                return TlvEncoder.floatLength(((Number) value).doubleValue());
+            case BOOLEAN:
+                return 1;
+            case TIME:
+                return 4;
+            case OPAQUE:
+                return ((byte[]) value).length;
+            default:
+                throw new IllegalArgumentException("Invalid value type: " + type);
+            }
+        }
+
+        private void writeTlvValue(Object value, Type type, ByteBuffer out) {
+            switch (type) {
+            case STRING:
+                TlvEncoder.encodeString((String) value, out);
+                break;
             case INTEGER:
-                return TlvEncoder.encodeInteger((Number) value);
+                TlvEncoder.encodeInteger(((Number) value).longValue(), out);
+                break;
             case FLOAT:
-                return TlvEncoder.encodeFloat((Number) value);
+                TlvEncoder.encodeFloat(((Number) value).doubleValue(), out);
+                break;
             case BOOLEAN:
-                return TlvEncoder.encodeBoolean((Boolean) value);
+                TlvEncoder.encodeBoolean((Boolean) value, out);
+                break;
             case TIME:
-                return TlvEncoder.encodeDate((Date) value);
+                TlvEncoder.encodeDate((Date) value, out);
+                break;
             case OPAQUE:
-                return (byte[]) value;
+                out.put((byte[]) value);
+                break;
             default:
                 throw new IllegalArgumentException("Invalid value type: " + type);
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,627 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.json;
+
+import org.eclipse.leshan.util.Charsets;
+
+/**
+ * A pull reader for the LWM2M JSON format (<code>application/vnd.oma.lwm2m+json</code>), working directly on the UTF-8
+ * bytes.
+ * <p>
+ * The root object is read on creation (base name, base time), then {@link #next()} moves to each entry of the
+ * <code>e</code> array in turn. The entry name is resolved against the base name and exposed as path identifiers,
+ * numeric values are only parsed when they are read.
+ * </p>
+ */
+public class LwM2mJsonReader {
+
+    /**
+     * The type of an entry value.
+     */
+    public enum ValueType {
+        NUMBER, BOOLEAN, STRING, OBJECT_LINK
+    }
+
+    // object/instance/resource/resource instance
+    private static final int MAX_IDS = 4;
+
+    private final byte[] in;
+    private int pos;
+
+    // root
+    private final String baseName;
+    private final Long baseTime;
+    private final int[] baseIds = new int[MAX_IDS];
+    private int baseIdCount;
+    // the last identifier of a base name which does not end with a '/', -1 if none
+    private int basePendingId = -1;
+
+    private boolean firstEntry = true;
+    private boolean done;
+
+    // current entry
+    private final int[] ids = new int[MAX_IDS];
+    private int idCount;
+    private ValueType valueType;
+    private int valueStart;
+    private int valueEnd;
+    private boolean valueIntegral;
+    private boolean valueEscaped;
+    private boolean booleanValue;
+    private Long time;
+
+    private char[] chars = new char[64];
+
+    /**
+     * Reads the root object.
+     *
+     * @param content the UTF-8 JSON content
+     * @throws LwM2mJsonException if the root object is invalid
+     */
+    public LwM2mJsonReader(byte[] content) throws LwM2mJsonException {
+        this.in = content;
+
+        String bn = null;
+        Long bt = null;
+        int entriesPos = -1;
+
+        skipWhitespaces();
+        expect('{');
+        skipWhitespaces();
+        if (peek() != '}') {
+            do {
+                skipWhitespaces();
+                int keyStart = pos + 1;
+                skipString();
+                int keyEnd = pos - 1;
+                skipWhitespaces();
+                expect(':');
+                skipWhitespaces();
+                if (isKey(keyStart, keyEnd, "e")) {
+                    // the entries are read after the base name and time, wherever they are
+                    entriesPos = pos;
+                    skipValue();
+                } else if (isKey(keyStart, keyEnd, "bn")) {
+                    int start = pos + 1;
+                    boolean escaped = skipString();
+                    bn = decodeString(start, pos - 1, escaped);
+                } else if (isKey(keyStart, keyEnd, "bt")) {
+                    bt = readLong();
+                } else {
+                    skipValue();
+                }
+                skipWhitespaces();
+            } while (consume(','));
+        }
+        expect('}');
+        skipWhitespaces();
+        if (pos != in.length) {
+            throw error("Unexpected content after the root object");
+        }
+        if (entriesPos < 0) {
+            throw new LwM2mJsonException("No 'e' array in the root object");
+        }
+
+        this.baseName = bn;
+        this.baseTime = bt;
+        if (bn != null) {
+            parseBaseName(bn);
+        }
+
+        pos = entriesPos;
+        expect('[');
+    }
+
+    /**
+     * @return the base name, <code>null</code> if there is no base name
+     */
+    public String getBaseName() {
+        return baseName;
+    }
+
+    /**
+     * @return the base time in seconds, <code>null</code> if there is no base time
+     */
+    public Long getBaseTime() {
+        return baseTime;
+    }
+
+    /**
+     * Moves to the next entry.
+     *
+     * @return <code>false</code> if there is no more entry
+     * @throws LwM2mJsonException if the entry is invalid
+     */
+    public boolean next() throws LwM2mJsonException {
+        if (done) {
+            return false;
+        }
+        skipWhitespaces();
+        if (consume(']')) {
+            done = true;
+            return false;
+        }
+        if (!firstEntry) {
+            expect(',');
+            skipWhitespaces();
+        }
+        firstEntry = false;
+
+        // base name only, if there is no "n"
+        resetIds();
+        valueType = null;
+        time = null;
+        Long t = null;
+
+        expect('{');
+        skipWhitespaces();
+        if (peek() != '}') {
+            do {
+                skipWhitespaces();
+                int keyStart = pos + 1;
+                skipString();
+                int keyEnd = pos - 1;
+                skipWhitespaces();
+                expect(':');
+                skipWhitespaces();
+                if (isKey(keyStart, keyEnd, "n")) {
+                    int start = pos + 1;
+                    boolean escaped = skipString();
+                    if (escaped) {
+                        byte[] name = decodeString(start, pos - 1, true).getBytes(Charsets.UTF_8);
+                        parseName(name, 0, name.length);
+                    } else {
+                        parseName(in, start, pos - 1);
+                    }
+                } else if (isKey(keyStart, keyEnd, "v")) {
+                    valueType = ValueType.NUMBER;
+                    valueStart = pos;
+                    valueIntegral = skipNumber();
+                    valueEnd = pos;
+                } else if (isKey(keyStart, keyEnd, "bv")) {
+                    valueType = ValueType.BOOLEAN;
+                    booleanValue = readBoolean();
+                } else if (isKey(keyStart, keyEnd, "sv") || isKey(keyStart, keyEnd, "ov")) {
+                    valueType = in[keyStart] == 's' ? ValueType.STRING : ValueType.OBJECT_LINK;
+                    valueStart = pos + 1;
+                    valueEscaped = skipString();
+                    valueEnd = pos - 1;
+                } else if (isKey(keyStart, keyEnd, "t")) {
+                    t = readLong();
+                } else {
+                    skipValue();
+                }
+                skipWhitespaces();
+            } while (consume(','));
+        }
+        expect('}');
+
+        if (valueType == null) {
+            throw error("No value in entry");
+        }
+        if (t != null || baseTime != null) {
+            time = (baseTime == null ? 0 : baseTime) + (t == null ? 0 : t);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of identifiers of the current entry path (base name and name)
+     */
+    public int getIdCount() {
+        return idCount;
+    }
+
+    /**
+     * @return an identifier of the current entry path (base name and name)
+     */
+    public int getId(int index) {
+        if (index >= idCount) {
+            throw new IndexOutOfBoundsException("No identifier " + index + " in a path of " + idCount);
+        }
+        return ids[index];
+    }
+
+    /**
+     * @return the type of the current entry value
+     */
+    public ValueType getValueType() {
+        return valueType;
+    }
+
+    /**
+     * @return the numeric value of the current entry, truncated if it has a fraction
+     */
+    public long getLong() throws LwM2mJsonException {
+        checkValueType(ValueType.NUMBER);
+        return parseLong(valueStart, valueEnd, valueIntegral);
+    }
+
+    /**
+     * @return the numeric value of the current entry
+     */
+    public double getDouble() throws LwM2mJsonException {
+        checkValueType(ValueType.NUMBER);
+        if (valueIntegral && valueEnd - valueStart <= 15) {
+            // exactly represented
+            return parseLong(valueStart, valueEnd, true);
+        }
+        return parseDouble(valueStart, valueEnd);
+    }
+
+    /**
+     * @return the boolean value of the current entry
+     */
+    public boolean getBoolean() throws LwM2mJsonException {
+        checkValueType(ValueType.BOOLEAN);
+        return booleanValue;
+    }
+
+    /**
+     * @return the string or object link value of the current entry
+     */
+    public String getString() throws LwM2mJsonException {
+        if (valueType != ValueType.STRING && valueType != ValueType.OBJECT_LINK) {
+            checkValueType(ValueType.STRING);
+        }
+        return decodeString(valueStart, valueEnd, valueEscaped);
+    }
+
+    /**
+     * @return the value of the current entry as a {@link Long} or a {@link Double} for numbers, a {@link Boolean} or a
+     *         {@link String}
+     */
+    public Object getValue() throws LwM2mJsonException {
+        switch (valueType) {
+        case NUMBER:
+            return valueIntegral ? (Object) getLong() : (Object) getDouble();
+        case BOOLEAN:
+            return booleanValue;
+        default:
+            return getString();
+        }
+    }
+
+    /**
+     * @return the time of the current entry in seconds (base time plus time), <code>null</code> if there is no time
+     */
+    public Long getTime() {
+        return time;
+    }
+
+    private void checkValueType(ValueType expected) throws LwM2mJsonException {
+        if (valueType != expected) {
+            throw new LwM2mJsonException("Expected a " + expected + " value, not a " + valueType + " value");
+        }
+    }
+
+    private long parseLong(int start, int end, boolean integral) throws LwM2mJsonException {
+        if (integral && end - start <= 18) {
+            boolean negative = in[start] == '-';
+            long value = 0;
+            for (int i = negative ? start + 1 : start; i < end; i++) {
+                value = value * 10 + (in[i] - '0');
+            }
+            return negative ? -value : value;
+        }
+        if (integral) {
+            try {
+                return Long.parseLong(new String(in, start, end - start, Charsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                // out of the long range
+            }
+        }
+        return (long) parseDouble(start, end);
+    }
+
+    private double parseDouble(int start, int end) throws LwM2mJsonException {
+        try {
+            return Double.parseDouble(new String(in, start, end - start, Charsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new LwM2mJsonException("Invalid number", e);
+        }
+    }
+
+    // names
+
+    private void parseBaseName(String bn) throws LwM2mJsonException {
+        byte[] bytes = bn.getBytes(Charsets.UTF_8);
+        idCount = 0;
+        int pending = parseIds(bytes, 0, bytes.length, -1);
+        System.arraycopy(ids, 0, baseIds, 0, idCount);
+        baseIdCount = idCount;
+        basePendingId = pending;
+    }
+
+    private void resetIds() throws LwM2mJsonException {
+        System.arraycopy(baseIds, 0, ids, 0, baseIdCount);
+        idCount = baseIdCount;
+        if (basePendingId >= 0) {
+            addId(basePendingId);
+        }
+    }
+
+    private void parseName(byte[] bytes, int start, int end) throws LwM2mJsonException {
+        // the name is appended to the base name
+        idCount = baseIdCount;
+        int pending = parseIds(bytes, start, end, basePendingId);
+        if (pending >= 0) {
+            addId(pending);
+        }
+    }
+
+    // adds the '/' separated identifiers to ids, returns the unterminated last identifier or -1
+    private int parseIds(byte[] bytes, int start, int end, int pending) throws LwM2mJsonException {
+        int current = pending;
+        for (int i = start; i < end; i++) {
+            byte b = bytes[i];
+            if (b == '/') {
+                if (current >= 0) {
+                    addId(current);
+                    current = -1;
+                }
+            } else if (b >= '0' && b <= '9') {
+                current = (current < 0 ? 0 : current * 10) + (b - '0');
+                if (current > 0xFFFF) {
+                    throw error("Invalid identifier in name");
+                }
+            } else {
+                throw error("Invalid character '" + (char) b + "' in name");
+            }
+        }
+        return current;
+    }
+
+    private void addId(int id) throws LwM2mJsonException {
+        if (idCount == MAX_IDS) {
+            throw error("Too many identifiers in name");
+        }
+        ids[idCount++] = id;
+    }
+
+    // tokens
+
+    private LwM2mJsonException error(String message) {
+        return new LwM2mJsonException(message + " at position " + pos);
+    }
+
+    private int peek() throws LwM2mJsonException {
+        if (pos >= in.length) {
+            throw error("Unexpected end of content");
+        }
+        return in[pos];
+    }
+
+    private void expect(char c) throws LwM2mJsonException {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private boolean consume(char c) {
+        if (pos < in.length && in[pos] == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespaces() {
+        while (pos < in.length && (in[pos] == ' ' || in[pos] == '\n' || in[pos] == '\r' || in[pos] == '\t')) {
+            pos++;
+        }
+    }
+
+    private boolean isKey(int start, int end, String key) {
+        if (end - start != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (in[start + i] != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // skips a string, returns true if it contains escapes
+    private boolean skipString() throws LwM2mJsonException {
+        expect('"');
+        boolean escaped = false;
+        while (true) {
+            int c = peek();
+            pos++;
+            if (c == '"') {
+                return escaped;
+            } else if (c == '\\') {
+                escaped = true;
+                peek();
+                pos++;
+            } else if (c >= 0 && c < 0x20) {
+                throw error("Control character in string");
+            }
+        }
+    }
+
+    // skips a number, returns true if it has no fraction nor exponent
+    private boolean skipNumber() throws LwM2mJsonException {
+        int start = pos;
+        boolean integral = true;
+        consume('-');
+        int digits = skipDigits();
+        if (digits == 0 || (digits > 1 && in[pos - digits] == '0')) {
+            throw error("Invalid number");
+        }
+        if (consume('.')) {
+            integral = false;
+            if (skipDigits() == 0) {
+                throw error("Invalid number");
+            }
+        }
+        if (consume('e') || consume('E')) {
+            integral = false;
+            if (!consume('+')) {
+                consume('-');
+            }
+            if (skipDigits() == 0) {
+                throw error("Invalid number");
+            }
+        }
+        if (pos == start) {
+            throw error("Invalid number");
+        }
+        return integral;
+    }
+
+    private int skipDigits() {
+        int start = pos;
+        while (pos < in.length && in[pos] >= '0' && in[pos] <= '9') {
+            pos++;
+        }
+        return pos - start;
+    }
+
+    private long readLong() throws LwM2mJsonException {
+        int start = pos;
+        boolean integral = skipNumber();
+        return parseLong(start, pos, integral);
+    }
+
+    private boolean readBoolean() throws LwM2mJsonException {
+        if (skipLiteral("true")) {
+            return true;
+        } else if (skipLiteral("false")) {
+            return false;
+        }
+        throw error("Invalid boolean");
+    }
+
+    private boolean skipLiteral(String literal) {
+        if (pos + literal.length() > in.length) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (in[pos + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        pos += literal.length();
+        return true;
+    }
+
+    private void skipValue() throws LwM2mJsonException {
+        switch (peek()) {
+        case '"':
+            skipString();
+            break;
+        case '{':
+        case '[':
+            int closing = in[pos] == '{' ? '}' : ']';
+            pos++;
+            skipWhitespaces();
+            if (consume((char) closing)) {
+                break;
+            }
+            do {
+                skipWhitespaces();
+                if (closing == '}') {
+                    skipString();
+                    skipWhitespaces();
+                    expect(':');
+                    skipWhitespaces();
+                }
+                skipValue();
+                skipWhitespaces();
+            } while (consume(','));
+            expect((char) closing);
+            break;
+        default:
+            if (!skipLiteral("true") && !skipLiteral("false") && !skipLiteral("null")) {
+                skipNumber();
+            }
+        }
+    }
+
+    // decodes the UTF-8 bytes of a string, without the quotes
+    private String decodeString(int start, int end, boolean escaped) throws LwM2mJsonException {
+        if (!escaped) {
+            return new String(in, start, end - start, Charsets.UTF_8);
+        }
+        if (chars.length < end - start) {
+            chars = new char[end - start];
+        }
+        int length = 0;
+        int i = start;
+        while (i < end) {
+            int b = in[i] & 0xFF;
+            if (b != '\\') {
+                // copy the UTF-8 bytes up to the next escape
+                int next = i;
+                while (next < end && in[next] != '\\') {
+                    next++;
+                }
+                String part = new String(in, i, next - i, Charsets.UTF_8);
+                part.getChars(0, part.length(), chars, length);
+                length += part.length();
+                i = next;
+                continue;
+            }
+            char c = (char) in[i + 1];
+            i += 2;
+            switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                chars[length++] = c;
+                break;
+            case 'n':
+                chars[length++] = '\n';
+                break;
+            case 'r':
+                chars[length++] = '\r';
+                break;
+            case 't':
+                chars[length++] = '\t';
+                break;
+            case 'b':
+                chars[length++] = '\b';
+                break;
+            case 'f':
+                chars[length++] = '\f';
+                break;
+            case 'u':
+                if (i + 4 > end) {
+                    throw new LwM2mJsonException("Invalid unicode escape");
+                }
+                int code = 0;
+                for (int j = 0; j < 4; j++) {
+                    int digit = Character.digit(in[i + j], 16);
+                    if (digit < 0) {
+                        throw new LwM2mJsonException("Invalid unicode escape");
+                    }
+                    code = code << 4 | digit;
+                }
+                chars[length++] = (char) code;
+                i += 4;
+                break;
+            default:
+                throw new LwM2mJsonException("Invalid escape \\" + c);
+            }
+        }
+        return new String(chars, 0, length);
+    }
+}
@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.json;
+
+import java.util.Arrays;
+
+/**
+ * Writes the LWM2M JSON format (<code>application/vnd.oma.lwm2m+json</code>) straight to UTF-8 bytes.
+ * <p>
+ * A root object is written by {@link #beginRoot(String, Long)}, one <code>entry</code> call per resource value and
+ * {@link #endRoot()}:
+ * 
+ * <pre>
+ * {"bn":"/3/","bt":1367491215,"e":[{"n":"0/0","sv":"Open Mobile Alliance"},{"n":"0/9","v":100}]}
+ * </pre>
+ * 
+ * The entry names are the resource paths (relative to the base name), given as identifiers to avoid building strings.
+ * A negative identifier is not written.
+ * </p>
+ */
+public class LwM2mJsonWriter {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private byte[] buf;
+    private int count;
+
+    private boolean firstEntry;
+
+    public LwM2mJsonWriter() {
+        this(256);
+    }
+
+    public LwM2mJsonWriter(int initialCapacity) {
+        buf = new byte[initialCapacity];
+    }
+
+    /**
+     * Starts the root object.
+     *
+     * @param baseName the base name or <code>null</code>
+     * @param baseTime the base time in seconds or <code>null</code>
+     */
+    public LwM2mJsonWriter beginRoot(String baseName, Long baseTime) {
+        count = 0;
+        firstEntry = true;
+        writeByte('{');
+        if (baseName != null) {
+            writeAscii("\"bn\":");
+            writeString(baseName);
+            writeByte(',');
+        }
+        if (baseTime != null) {
+            writeAscii("\"bt\":");
+            writeLong(baseTime);
+            writeByte(',');
+        }
+        writeAscii("\"e\":[");
+        return this;
+    }
+
+    /**
+     * Writes an entry holding a numeric value without fraction.
+     */
+    public LwM2mJsonWriter entry(int id1, int id2, int id3, long value) {
+        beginEntry(id1, id2, id3);
+        writeAscii(",\"v\":");
+        writeLong(value);
+        return endEntry();
+    }
+
+    /**
+     * Writes an entry holding a floating point value.
+     *
+     * @throws IllegalArgumentException if the value is not finite
+     */
+    public LwM2mJsonWriter entry(int id1, int id2, int id3, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException(value + " is not a valid JSON number");
+        }
+        beginEntry(id1, id2, id3);
+        writeAscii(",\"v\":");
+        writeAscii(Double.toString(value));
+        return endEntry();
+    }
+
+    /**
+     * Writes an entry holding a boolean value.
+     */
+    public LwM2mJsonWriter entry(int id1, int id2, int id3, boolean value) {
+        beginEntry(id1, id2, id3);
+        writeAscii(value ? ",\"bv\":true" : ",\"bv\":false");
+        return endEntry();
+    }
+
+    /**
+     * Writes an entry holding a string value.
+     */
+    public LwM2mJsonWriter entry(int id1, int id2, int id3, String value) {
+        beginEntry(id1, id2, id3);
+        writeAscii(",\"sv\":");
+        writeString(value);
+        return endEntry();
+    }
+
+    /**
+     * Ends the root object.
+     */
+    public LwM2mJsonWriter endRoot() {
+        writeAscii("]}");
+        return this;
+    }
+
+    /**
+     * @return the written bytes
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * @return the number of written bytes
+     */
+    public int size() {
+        return count;
+    }
+
+    private void beginEntry(int id1, int id2, int id3) {
+        if (!firstEntry) {
+            writeByte(',');
+        }
+        firstEntry = false;
+        writeAscii("{\"n\":\"");
+        writeId(id1, false);
+        writeId(id2, id1 >= 0);
+        writeId(id3, id1 >= 0 || id2 >= 0);
+        writeByte('"');
+    }
+
+    private void writeId(int id, boolean separator) {
+        if (id >= 0) {
+            if (separator) {
+                writeByte('/');
+            }
+            writeLong(id);
+        }
+    }
+
+    private LwM2mJsonWriter endEntry() {
+        writeByte('}');
+        return this;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (count + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + extra));
+        }
+    }
+
+    private void writeByte(int b) {
+        ensureCapacity(1);
+        buf[count++] = (byte) b;
+    }
+
+    private void writeAscii(String s) {
+        ensureCapacity(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buf[count++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buf[count++] = '-';
+            value = -value;
+        }
+        // digits are written backwards, then reversed
+        int start = count;
+        do {
+            buf[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = count - 1; i < j; i++, j--) {
+            byte tmp = buf[i];
+            buf[i] = buf[j];
+            buf[j] = tmp;
+        }
+    }
+
+    // a quoted JSON string, in UTF-8
+    private void writeString(String value) {
+        // at most 6 bytes per char (\\uXXXX escape) and the quotes
+        ensureCapacity(value.length() * 6 + 2);
+        buf[count++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buf[count++] = '\\';
+                buf[count++] = (byte) c;
+            } else if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                // control chars and the line separators which are not valid in javascript strings
+                escape(c);
+            } else if (c < 0x80) {
+                buf[count++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[count++] = (byte) (0xC0 | c >> 6);
+                buf[count++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buf[count++] = (byte) (0xF0 | codePoint >> 18);
+                buf[count++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buf[count++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buf[count++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // malformed surrogate, which can not be encoded in UTF-8
+                escape(c);
+            } else {
+                buf[count++] = (byte) (0xE0 | c >> 12);
+                buf[count++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buf[count++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        buf[count++] = '"';
+    }
+
+    private void escape(char c) {
+        buf[count++] = '\\';
+        switch (c) {
+        case '\n':
+            buf[count++] = 'n';
+            break;
+        case '\r':
+            buf[count++] = 'r';
+            break;
+        case '\t':
+            buf[count++] = 't';
+            break;
+        case '\b':
+            buf[count++] = 'b';
+            break;
+        case '\f':
+            buf[count++] = 'f';
+            break;
+        default:
+            buf[count++] = 'u';
+            buf[count++] = HEX[c >> 12 & 0xF];
+            buf[count++] = HEX[c >> 8 & 0xF];
+            buf[count++] = HEX[c >> 4 & 0xF];
+            buf[count++] = HEX[c & 0xF];
+        }
+    }
+}
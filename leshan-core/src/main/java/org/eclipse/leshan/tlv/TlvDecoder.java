@@ -15,7 +15,6 @@
  *******************************************************************************/
 package org.eclipse.leshan.tlv;
 
-import java.math.BigInteger;
 import java.nio.BufferOverflowException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
@@ -94,7 +93,7 @@ public class TlvDecoder {
                         break;
                     case 0b0001_1000:
                         // 24 bit length
-                        length = ((input.get() & 0xFF) << 16) + input.getShort() & 0xFFFF;
+                        length = ((input.get() & 0xFF) << 16) | (input.getShort() & 0xFFFF);
                         break;
                     default:
                         throw new TlvException("unknown length type: " + (typeByte & 0b0001_1000));
@@ -174,9 +173,8 @@ public class TlvDecoder {
      * Decodes a byte array into a date value.
      */
     public static Date decodeDate(byte[] value) throws TlvException {
-        BigInteger bi = new BigInteger(value);
         if (value.length <= 8) {
-            return new Date(bi.longValue() * 1000L);
+            return new Date(decodeLong(value, 0, value.length) * 1000L);
         } else {
             throw new TlvException("Invalid length for a time value: " + value.length);
         }
@@ -186,17 +184,18 @@ public class TlvDecoder {
      * Decodes a byte array into an integer value.
      */
     public static Number decodeInteger(byte[] value) throws TlvException {
-        BigInteger bi = new BigInteger(value);
+        if (value.length == 0 || value.length > 8) {
+            throw new TlvException("Invalid length for an integer value: " + value.length);
+        }
+        long lValue = decodeLong(value, 0, value.length);
         if (value.length == 1) {
-            return bi.byteValue();
+            return (byte) lValue;
         } else if (value.length <= 2) {
-            return bi.shortValue();
+            return (short) lValue;
         } else if (value.length <= 4) {
-            return bi.intValue();
-        } else if (value.length <= 8) {
-            return bi.longValue();
+            return (int) lValue;
         } else {
-            throw new TlvException("Invalid length for an integer value: " + value.length);
+            return lValue;
         }
     }
 
@@ -204,13 +203,70 @@ public class TlvDecoder {
      * Decodes a byte array into a float value.
      */
     public static Number decodeFloat(byte[] value) throws TlvException {
-        ByteBuffer floatBb = ByteBuffer.wrap(value);
         if (value.length == 4) {
-            return floatBb.getFloat();
+            return Float.intBitsToFloat((int) decodeLong(value, 0, 4));
         } else if (value.length == 8) {
-            return floatBb.getDouble();
+            return Double.longBitsToDouble(decodeLong(value, 0, 8));
         } else {
             throw new TlvException("Invalid length for a float value: " + value.length);
         }
     }
+
+    /**
+     * Decodes a big endian signed integer of 1 to 8 bytes without allocating.
+     *
+     * @param value the bytes
+     * @param offset the position of the first byte
+     * @param length the number of bytes
+     * @return the value, sign-extended from its first byte
+     */
+    public static long decodeLong(byte[] value, int offset, int length) throws TlvException {
+        if (length == 0 || length > 8) {
+            throw new TlvException("Invalid length for an integer value: " + length);
+        }
+        // sign extension of the first byte
+        long lValue = value[offset];
+        for (int i = 1; i < length; i++) {
+            lValue = (lValue << 8) | (value[offset + i] & 0xFF);
+        }
+        return lValue;
+    }
+
+    /**
+     * Decodes a big endian signed integer of 1 to 8 bytes without allocating, whatever the order of the buffer.
+     *
+     * @param buffer the buffer
+     * @param position the absolute position of the first byte
+     * @param length the number of bytes
+     * @return the value, sign-extended from its first byte
+     */
+    public static long decodeLong(ByteBuffer buffer, int position, int length) throws TlvException {
+        if (length == 0 || length > 8) {
+            throw new TlvException("Invalid length for an integer value: " + length);
+        }
+        // sign extension of the first byte
+        long lValue = buffer.get(position);
+        for (int i = 1; i < length; i++) {
+            lValue = (lValue << 8) | (buffer.get(position + i) & 0xFF);
+        }
+        return lValue;
+    }
+
+    /**
+     * Decodes a big endian 4 bytes (single precision) or 8 bytes (double precision) floating point value without
+     * allocating, whatever the order of the buffer.
+     *
+     * @param buffer the buffer
+     * @param position the absolute position of the first byte
+     * @param length the number of bytes
+     */
+    public static double decodeDouble(ByteBuffer buffer, int position, int length) throws TlvException {
+        if (length == 4) {
+            return Float.intBitsToFloat((int) decodeLong(buffer, position, 4));
+        } else if (length == 8) {
+            return Double.longBitsToDouble(decodeLong(buffer, position, 8));
+        } else {
+            throw new TlvException("Invalid length for a float value: " + length);
+        }
+    }
 }
@@ -17,8 +17,10 @@ package org.eclipse.leshan.tlv;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.Date;
 
+import org.eclipse.leshan.tlv.Tlv.TlvType;
 import org.eclipse.leshan.util.Charsets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,20 +37,20 @@ public class TlvEncoder {
      * Encodes an array of TLV.
      */
     public static ByteBuffer encode(Tlv[] tlvs) {
-        int size = 0;
-
         LOG.trace("start");
+        // the lengths of all the TLVs in pre-order, each length is computed once
+        Lengths lengths = new Lengths();
+        int size = 0;
         for (Tlv tlv : tlvs) {
-
-            int length = tlvEncodedLength(tlv);
-            size += tlvEncodedSize(tlv, length);
-            LOG.trace("tlv size : {}", size);
+            size += computeLengths(tlv, lengths);
         }
         LOG.trace("done, size : {}", size);
+
         ByteBuffer b = ByteBuffer.allocate(size);
         b.order(ByteOrder.BIG_ENDIAN);
+        lengths.rewind();
         for (Tlv tlv : tlvs) {
-            encode(tlv, b);
+            encode(tlv, lengths, b);
         }
         b.flip();
         return b;
@@ -58,38 +60,24 @@ public class TlvEncoder {
      * Encodes an integer value.
      */
     public static byte[] encodeInteger(Number number) {
-        ByteBuffer iBuf = null;
         long lValue = number.longValue();
-        if (lValue >= Byte.MIN_VALUE && lValue <= Byte.MAX_VALUE) {
-            iBuf = ByteBuffer.allocate(1);
-            iBuf.put((byte) lValue);
-        } else if (lValue >= Short.MIN_VALUE && lValue <= Short.MAX_VALUE) {
-            iBuf = ByteBuffer.allocate(2);
-            iBuf.putShort((short) lValue);
-        } else if (lValue >= Integer.MIN_VALUE && lValue <= Integer.MAX_VALUE) {
-            iBuf = ByteBuffer.allocate(4);
-            iBuf.putInt((int) lValue);
-        } else {
-            iBuf = ByteBuffer.allocate(8);
-            iBuf.putLong(lValue);
-        }
-        return iBuf.array();
+        byte[] bytes = new byte[integerLength(lValue)];
+        putLong(lValue, bytes);
+        return bytes;
     }
 
     /**
      * Encodes a floating point value.
      */
     public static byte[] encodeFloat(Number number) {
-        ByteBuffer fBuf = null;
         double dValue = number.doubleValue();
-        if (dValue >= Float.MIN_VALUE && dValue <= Float.MAX_VALUE) {
-            fBuf = ByteBuffer.allocate(4);
-            fBuf.putFloat((float) dValue);
+        byte[] bytes = new byte[floatLength(dValue)];
+        if (bytes.length == 4) {
+            putLong(Float.floatToIntBits((float) dValue), bytes);
         } else {
-            fBuf = ByteBuffer.allocate(8);
-            fBuf.putDouble(dValue);
+            putLong(Double.doubleToLongBits(dValue), bytes);
         }
-        return fBuf.array();
+        return bytes;
     }
 
     /**
@@ -110,14 +98,149 @@ public class TlvEncoder {
      * Encodes a date value.
      */
     public static byte[] encodeDate(Date value) {
-        ByteBuffer tBuf = ByteBuffer.allocate(4);
-        tBuf.putInt((int) (value.getTime() / 1000L));
-        return tBuf.array();
+        byte[] bytes = new byte[4];
+        putLong((int) (value.getTime() / 1000L), bytes);
+        return bytes;
+    }
+
+    // big endian, truncated to the length of the array
+    private static void putLong(long value, byte[] bytes) {
+        for (int i = bytes.length - 1; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>= 8;
+        }
+    }
+
+    /**
+     * @return the number of bytes of an encoded integer value: 1, 2, 4 or 8
+     */
+    public static int integerLength(long value) {
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            return 1;
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            return 2;
+        } else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return 4;
+        } else {
+            return 8;
+        }
+    }
+
+    /**
+     * Encodes an integer value at the position of the buffer, on {@link #integerLength(long)} bytes.
+     */
+    public static void encodeInteger(long value, ByteBuffer b) {
+        switch (integerLength(value)) {
+        case 1:
+            b.put((byte) value);
+            break;
+        case 2:
+            b.putShort((short) value);
+            break;
+        case 4:
+            b.putInt((int) value);
+            break;
+        default:
+            b.putLong(value);
+        }
+    }
+
+    /**
+     * @return the number of bytes of an encoded floating point value: 4 if it is a positive value in the single
+     *         precision range, 8 otherwise
+     */
+    public static int floatLength(double value) {
+        return value >= Float.MIN_VALUE && value <= Float.MAX_VALUE ? 4 : 8;
+    }
+
+    /**
+     * Encodes a floating point value at the position of the buffer, on {@link #floatLength(double)} bytes.
+     */
+    public static void encodeFloat(double value, ByteBuffer b) {
+        if (floatLength(value) == 4) {
+            b.putFloat((float) value);
+        } else {
+            b.putDouble(value);
+        }
+    }
+
+    /**
+     * Encodes a boolean value at the position of the buffer, on 1 byte.
+     */
+    public static void encodeBoolean(boolean value, ByteBuffer b) {
+        b.put(value ? (byte) 1 : (byte) 0);
+    }
+
+    /**
+     * Encodes a date value at the position of the buffer, on 4 bytes.
+     */
+    public static void encodeDate(Date value, ByteBuffer b) {
+        b.putInt((int) (value.getTime() / 1000L));
+    }
+
+    /**
+     * @return the number of bytes of an UTF-8 encoded string value
+     */
+    public static int stringLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // malformed surrogates are replaced by '?' like String.getBytes() does
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Encodes a string value in UTF-8 at the position of the buffer, on {@link #stringLength(String)} bytes.
+     */
+    public static void encodeString(String value, ByteBuffer b) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                b.put((byte) c);
+            } else if (c < 0x800) {
+                b.put((byte) (0xC0 | c >> 6));
+                b.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                b.put((byte) (0xF0 | codePoint >> 18));
+                b.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                b.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                b.put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                b.put((byte) '?');
+            } else {
+                b.put((byte) (0xE0 | c >> 12));
+                b.put((byte) (0x80 | c >> 6 & 0x3F));
+                b.put((byte) (0x80 | c & 0x3F));
+            }
+        }
     }
 
-    private static int tlvEncodedSize(Tlv tlv, int length) {
+    /**
+     * Computes the size of an encoded TLV.
+     *
+     * @param identifier the TLV identifier
+     * @param length the length of the TLV value (or of its children)
+     * @return the size of the header and the value
+     */
+    public static int encodedSize(int identifier, int length) {
         int size = 1 /* HEADER */;
-        size += (tlv.getIdentifier() < MAX_LENGTH_8BIT) ? 1 : 2; /* 8 bits or 16 bits identifiers */
+        size += (identifier < MAX_LENGTH_8BIT) ? 1 : 2; /* 8 bits or 16 bits identifiers */
 
         if (length < 8) {
             size += 0;
@@ -135,30 +258,18 @@ public class TlvEncoder {
         return size;
     }
 
-    private static int tlvEncodedLength(Tlv tlv) {
-        int length;
-        switch (tlv.getType()) {
-        case RESOURCE_VALUE:
-        case RESOURCE_INSTANCE:
-            length = tlv.getValue().length;
-            break;
-        default:
-            length = 0;
-            for (Tlv child : tlv.getChildren()) {
-                int subLength = tlvEncodedLength(child);
-                length += tlvEncodedSize(child, subLength);
-            }
-        }
-
-        return length;
-    }
-
-    private static void encode(Tlv tlv, ByteBuffer b) {
-        int length;
-        length = tlvEncodedLength(tlv);
+    /**
+     * Writes a TLV header. The value (or the children) must be written next.
+     *
+     * @param type the TLV type
+     * @param identifier the TLV identifier
+     * @param length the length of the TLV value (or of its children)
+     * @param b the output buffer
+     */
+    public static void encodeHeader(TlvType type, int identifier, int length, ByteBuffer b) {
         int typeByte;
 
-        switch (tlv.getType()) {
+        switch (type) {
         case OBJECT_INSTANCE:
             typeByte = 0b00_000000;
             break;
@@ -173,11 +284,11 @@ public class TlvEncoder {
             typeByte = 0b11_000000;
             break;
         default:
-            throw new IllegalArgumentException("unknown TLV type : '" + tlv.getType() + "'");
+            throw new IllegalArgumentException("unknown TLV type : '" + type + "'");
         }
 
         // encode identifier length
-        typeByte |= (tlv.getIdentifier() < MAX_LENGTH_8BIT) ? 0b00_0000 : 0b10_0000;
+        typeByte |= (identifier < MAX_LENGTH_8BIT) ? 0b00_0000 : 0b10_0000;
 
         // type of length
         if (length < 8) {
@@ -192,14 +303,13 @@ public class TlvEncoder {
 
         // fill the buffer
         b.put((byte) typeByte);
-        if (tlv.getIdentifier() < MAX_LENGTH_8BIT) {
-            b.put((byte) tlv.getIdentifier());
+        if (identifier < MAX_LENGTH_8BIT) {
+            b.put((byte) identifier);
         } else {
-            b.putShort((short) tlv.getIdentifier());
+            b.putShort((short) identifier);
         }
 
         // write length
-
         if (length >= 8) {
             if (length < MAX_LENGTH_8BIT) {
                 b.put((byte) length);
@@ -209,9 +319,32 @@ public class TlvEncoder {
                 int msb = (length & 0xFF_00_00) >> 16;
                 b.put((byte) msb);
                 b.putShort((short) (length & 0xFF_FF));
-                typeByte |= 0b0001_1000;
             }
         }
+    }
+
+    // records the length of the TLV and its children in pre-order and returns its encoded size
+    private static int computeLengths(Tlv tlv, Lengths lengths) {
+        int length;
+        switch (tlv.getType()) {
+        case RESOURCE_VALUE:
+        case RESOURCE_INSTANCE:
+            length = tlv.getValue().length;
+            lengths.add(length);
+            break;
+        default:
+            int index = lengths.add(0);
+            length = 0;
+            for (Tlv child : tlv.getChildren()) {
+                length += computeLengths(child, lengths);
+            }
+            lengths.set(index, length);
+        }
+        return encodedSize(tlv.getIdentifier(), length);
+    }
+
+    private static void encode(Tlv tlv, Lengths lengths, ByteBuffer b) {
+        encodeHeader(tlv.getType(), tlv.getIdentifier(), lengths.next(), b);
 
         switch (tlv.getType()) {
         case RESOURCE_VALUE:
@@ -220,9 +353,64 @@ public class TlvEncoder {
             break;
         default:
             for (Tlv child : tlv.getChildren()) {
-                encode(child, b);
+                encode(child, lengths, b);
             }
             break;
         }
     }
+
+    /**
+     * A growable list of TLV lengths, filled by a sizing pass and consumed in the same order by a writing pass.
+     */
+    public static class Lengths {
+
+        private int[] values = new int[16];
+        private int size;
+        private int position;
+
+        /**
+         * Appends a length.
+         *
+         * @return the index of the length
+         */
+        public int add(int length) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = length;
+            return size++;
+        }
+
+        /**
+         * Replaces the length at the given index.
+         */
+        public void set(int index, int length) {
+            values[index] = length;
+        }
+
+        /**
+         * @return the next length to consume
+         */
+        public int next() {
+            if (position >= size) {
+                throw new IllegalStateException("No more TLV length");
+            }
+            return values[position++];
+        }
+
+        /**
+         * Restarts the consumption from the first length.
+         */
+        public void rewind() {
+            position = 0;
+        }
+
+        /**
+         * Removes all the lengths.
+         */
+        public void clear() {
+            size = 0;
+            position = 0;
+        }
+    }
 }
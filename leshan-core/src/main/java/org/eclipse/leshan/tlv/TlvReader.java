@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import org.eclipse.leshan.tlv.Tlv.TlvType;
+import org.eclipse.leshan.util.Charsets;
+
+/**
+ * A cursor over TLV encoded content, reading the entries in place without building a {@link Tlv} tree nor copying the
+ * values.
+ * <p>
+ * {@link #next()} moves to the next entry of the current level. The content of an {@link TlvType#OBJECT_INSTANCE} or
+ * {@link TlvType#MULTIPLE_RESOURCE} entry is read between {@link #enter()} and {@link #exit()}, the value of a
+ * {@link TlvType#RESOURCE_VALUE} or {@link TlvType#RESOURCE_INSTANCE} entry is read with the typed getters.
+ * </p>
+ * 
+ * <pre>
+ * TlvReader reader = new TlvReader(buffer);
+ * while (reader.next()) {
+ *     if (reader.getType() == TlvType.MULTIPLE_RESOURCE) {
+ *         reader.enter();
+ *         while (reader.next()) {
+ *             long value = reader.getInteger();
+ *         }
+ *         reader.exit();
+ *     }
+ * }
+ * </pre>
+ */
+public class TlvReader {
+
+    // an object instance contains multiple resources which contain resource instances
+    private static final int MAX_DEPTH = 3;
+
+    private final ByteBuffer buffer;
+
+    // the end of the entries of the current level and of the enclosing levels
+    private final int[] ends = new int[MAX_DEPTH + 1];
+    private int depth;
+
+    // the current entry
+    private TlvType type;
+    private int identifier;
+    private int valueStart;
+    private int valueLength;
+    // the start of the next entry of the current level
+    private int next;
+
+    /**
+     * Reads the content between the position and the limit of the buffer. The position of the buffer is not modified.
+     */
+    public TlvReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.next = buffer.position();
+        this.ends[0] = buffer.limit();
+    }
+
+    /**
+     * Moves to the next entry of the current level.
+     * 
+     * @return <code>false</code> if there is no more entry at this level
+     * @throws TlvException if the entry header is invalid
+     */
+    public boolean next() throws TlvException {
+        int end = ends[depth];
+        if (next >= end) {
+            type = null;
+            return false;
+        }
+        int position = next;
+        int typeByte = buffer.get(position++) & 0xFF;
+        switch (typeByte & 0b1100_0000) {
+        case 0b0000_0000:
+            type = TlvType.OBJECT_INSTANCE;
+            break;
+        case 0b0100_0000:
+            type = TlvType.RESOURCE_INSTANCE;
+            break;
+        case 0b1000_0000:
+            type = TlvType.MULTIPLE_RESOURCE;
+            break;
+        default:
+            type = TlvType.RESOURCE_VALUE;
+            break;
+        }
+
+        // identifier
+        int identifierLength = (typeByte & 0b0010_0000) == 0 ? 1 : 2;
+        if (position + identifierLength > end) {
+            throw new TlvException("Invalid 'identifier' length");
+        }
+        identifier = readUnsigned(position, identifierLength);
+        position += identifierLength;
+
+        // length
+        int lengthLength = (typeByte & 0b0001_1000) >> 3;
+        if (lengthLength == 0) {
+            valueLength = typeByte & 0b0000_0111;
+        } else {
+            if (position + lengthLength > end) {
+                throw new TlvException("Invalid 'length' length");
+            }
+            valueLength = readUnsigned(position, lengthLength);
+            position += lengthLength;
+        }
+
+        if (position + valueLength > end) {
+            throw new TlvException("Invalid 'value' length: " + valueLength + " bytes of " + type + " "
+                    + identifier + " but " + (end - position) + " remaining");
+        }
+        valueStart = position;
+        next = position + valueLength;
+        return true;
+    }
+
+    private int readUnsigned(int position, int length) {
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (buffer.get(position + i) & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * @return <code>true</code> if there is another entry after the current one at this level
+     */
+    public boolean hasNext() {
+        return next < ends[depth];
+    }
+
+    /**
+     * Moves into the content of the current object instance or multiple resource, the first child is read with
+     * {@link #next()}.
+     */
+    public void enter() throws TlvException {
+        if (type != TlvType.OBJECT_INSTANCE && type != TlvType.MULTIPLE_RESOURCE) {
+            throw new TlvException("Cannot enter a TLV of type " + type);
+        }
+        if (depth == MAX_DEPTH) {
+            throw new TlvException("Too many nested TLV");
+        }
+        ends[++depth] = next;
+        next = valueStart;
+        type = null;
+    }
+
+    /**
+     * Moves back to the enclosing entry, the remaining children are skipped.
+     */
+    public void exit() {
+        if (depth == 0) {
+            throw new IllegalStateException("Not in a nested TLV");
+        }
+        next = ends[depth--];
+        type = null;
+    }
+
+    /**
+     * @return the type of the current entry
+     */
+    public TlvType getType() {
+        return type;
+    }
+
+    /**
+     * @return the identifier of the current entry
+     */
+    public int getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return the length of the value of the current entry
+     */
+    public int getLength() {
+        return valueLength;
+    }
+
+    /**
+     * @return a read-only view of the value of the current entry, the bytes are not copied
+     */
+    public ByteBuffer getOpaque() {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(valueStart + valueLength).position(valueStart);
+        return slice.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a copy of the value of the current entry
+     */
+    public byte[] getBytes() {
+        byte[] value = new byte[valueLength];
+        for (int i = 0; i < valueLength; i++) {
+            value[i] = buffer.get(valueStart + i);
+        }
+        return value;
+    }
+
+    public String getString() {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + valueStart, valueLength, Charsets.UTF_8);
+        }
+        return new String(getBytes(), Charsets.UTF_8);
+    }
+
+    public boolean getBoolean() throws TlvException {
+        if (valueLength != 1) {
+            throw new TlvException("Invalid length for a boolean value: " + valueLength);
+        }
+        return buffer.get(valueStart) == 1;
+    }
+
+    /**
+     * @return the signed integer value of the current entry, encoded on 1, 2, 4 or 8 bytes
+     */
+    public long getInteger() throws TlvException {
+        return TlvDecoder.decodeLong(buffer, valueStart, valueLength);
+    }
+
+    /**
+     * @return the float value of the current entry, encoded on 4 or 8 bytes
+     */
+    public double getFloat() throws TlvException {
+        return TlvDecoder.decodeDouble(buffer, valueStart, valueLength);
+    }
+
+    /**
+     * @return the time value of the current entry (an integer number of seconds since Epoch)
+     */
+    public Date getDate() throws TlvException {
+        if (valueLength > 8) {
+            throw new TlvException("Invalid length for a time value: " + valueLength);
+        }
+        return new Date(getInteger() * 1000L);
+    }
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Returns a canonical instance for values which are equal, so that the many copies of a value can share the same
+ * instance.
+ * <p>
+ * The number of canonical instances is bounded: all of them are forgotten (but still valid) when the limit is reached.
+ * Interning does not take any lock, so that it can be used on the hot path of every request.
+ * </p>
+ *
+ * @param <T> the type of the interned values, which must be immutable and implement equals and hashCode
+ */
+public class Interner<T> {
+
+    private final int maxSize;
+    private final ConcurrentMap<T, T> instances = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxSize the maximum number of canonical instances kept
+     */
+    public Interner(int maxSize) {
+        Validate.isTrue(maxSize > 0, "the maximum size must be positive");
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the canonical instance equal to the given value, the value itself if there is none yet.
+     */
+    public T intern(T value) {
+        if (value == null) {
+            return null;
+        }
+        T canonical = instances.get(value);
+        if (canonical == null) {
+            if (instances.size() >= maxSize) {
+                instances.clear();
+            }
+            canonical = instances.putIfAbsent(value, value);
+            if (canonical == null) {
+                return value;
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * @return the number of canonical instances
+     */
+    public int size() {
+        return instances.size();
+    }
+}
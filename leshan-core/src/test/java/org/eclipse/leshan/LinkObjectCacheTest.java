@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LinkObjectCacheTest {
+
+    @Test
+    public void identical_payloads_share_links() {
+        LinkObjectCache cache = new LinkObjectCache(10);
+        LinkObject[] first = cache.parse("</1/0>, </3/0>".getBytes());
+        LinkObject[] second = cache.parse("</1/0>, </3/0>".getBytes());
+        LinkObject[] other = cache.parse("</1/0>, </4/0>".getBytes());
+
+        Assert.assertSame(first, second);
+        Assert.assertNotSame(first, other);
+        Assert.assertArrayEquals(LinkObject.parse("</1/0>, </4/0>".getBytes()), other);
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void least_recently_used_payloads_are_evicted() {
+        LinkObjectCache cache = new LinkObjectCache(2);
+        LinkObject[] first = cache.parse("</1/0>".getBytes());
+        cache.parse("</2/0>".getBytes());
+        cache.parse("</1/0>".getBytes());
+        cache.parse("</3/0>".getBytes());
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertSame(first, cache.parse("</1/0>".getBytes()));
+    }
+}
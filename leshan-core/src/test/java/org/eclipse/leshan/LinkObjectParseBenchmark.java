@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.eclipse.leshan.util.Charsets;
+import org.eclipse.leshan.util.StringUtils;
+
+/**
+ * Compares {@link LinkObject#parse(byte[])} with the previous split and regex based parser on a registration payload of
+ * 50 links.
+ * 
+ * This is not a unit test: run the <code>main</code> method manually.
+ */
+public class LinkObjectParseBenchmark {
+
+    private static final int ITERATIONS = 20000;
+
+    public static void main(String[] args) {
+        byte[] payload = payload(50);
+        System.out.printf("payload: %d bytes, %d links%n", payload.length, LinkObject.parse(payload).length);
+
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            int links = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                links += legacyParse(payload).length;
+            }
+            long legacy = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                links += LinkObject.parse(payload).length;
+            }
+            long current = System.nanoTime() - start;
+
+            System.out.printf("round %d: legacy %.1f us/payload, single pass %.1f us/payload (%d links)%n", round,
+                    legacy / 1000.0 / ITERATIONS, current / 1000.0 / ITERATIONS, links);
+        }
+    }
+
+    private static byte[] payload(int links) {
+        StringBuilder payload = new StringBuilder("</>;rt=\"oma.lwm2m\";ct=11543");
+        int objectId = 0;
+        for (int i = 1; i < links; i++) {
+            if (i % 3 == 0) {
+                objectId++;
+            }
+            payload.append(", </").append(objectId).append('/').append(i % 3).append('>');
+            if (i % 10 == 0) {
+                payload.append(";ver=\"1.1\"");
+            }
+        }
+        return payload.toString().getBytes(Charsets.UTF_8);
+    }
+
+    // the parser used up to now
+    private static LinkObject[] legacyParse(byte[] content) {
+        String s = new String(content, Charsets.UTF_8);
+        String[] links = s.split(",");
+        LinkObject[] linksResult = new LinkObject[links.length];
+        int index = 0;
+        for (String link : links) {
+            String[] linkParts = link.split(";");
+
+            // clean URL
+            String url = StringUtils.trim(linkParts[0]);
+            url = StringUtils.removeStart(StringUtils.removeEnd(url, ">"), "<");
+
+            // parse attributes
+            Map<String, Object> attributes = new HashMap<>();
+
+            if (linkParts.length > 1) {
+                for (int i = 1; i < linkParts.length; i++) {
+                    String[] attParts = linkParts[i].split("=");
+                    if (attParts.length > 0) {
+                        String key = attParts[0];
+                        Object value = null;
+                        if (attParts.length > 1) {
+                            String rawvalue = attParts[1];
+                            try {
+                                value = Integer.valueOf(rawvalue);
+                            } catch (NumberFormatException e) {
+
+                                value = rawvalue.replaceFirst("^\"(.*)\"$", "$1");
+                            }
+                        }
+                        attributes.put(key, value);
+                    }
+                }
+            }
+            // the previous constructor also matched each URL with a freshly compiled pattern
+            Pattern.compile("(/(\\d+))(/(\\d+))?(/(\\d+))?").matcher(url).find();
+            linksResult[index] = new LinkObject(url, attributes);
+            index++;
+        }
+        return linksResult;
+    }
+}
@@ -78,6 +78,56 @@ public class LinkObjectTest {
         Assert.assertNull(parse[0].getResourceId());
     }
 
+    @Test
+    public void parse_quoted_values_with_delimiters() {
+        LinkObject[] parse = LinkObject.parse("</1/0>;title=\"a, b;c\";ct=40, </2/0>;title=\"say \\\"hi\\\"\""
+                .getBytes());
+        Assert.assertEquals(2, parse.length);
+        Assert.assertEquals("/1/0", parse[0].getUrl());
+        Assert.assertEquals("a, b;c", parse[0].getAttributes().get("title"));
+        Assert.assertEquals(40, parse[0].getAttributes().get("ct"));
+        Assert.assertEquals("/2/0", parse[1].getUrl());
+        Assert.assertEquals("say \"hi\"", parse[1].getAttributes().get("title"));
+    }
+
+    @Test
+    public void parse_url_with_delimiters() {
+        LinkObject[] parse = LinkObject.parse("</a;b,c/3>;rt=\"x\"".getBytes());
+        Assert.assertEquals(1, parse.length);
+        Assert.assertEquals("/a;b,c/3", parse[0].getUrl());
+        Assert.assertEquals(Integer.valueOf(3), parse[0].getObjectId());
+        Assert.assertEquals("x", parse[0].getAttributes().get("rt"));
+    }
+
+    @Test
+    public void parse_numeric_values() {
+        LinkObject[] parse = LinkObject.parse("</1>;n=-5;big=99999999999;quoted=\"12\";mixed=12a".getBytes());
+        Map<String, Object> attributes = parse[0].getAttributes();
+        Assert.assertEquals(-5, attributes.get("n"));
+        Assert.assertEquals("99999999999", attributes.get("big"));
+        Assert.assertEquals("12", attributes.get("quoted"));
+        Assert.assertEquals("12a", attributes.get("mixed"));
+    }
+
+    @Test
+    public void parse_empty_values() {
+        LinkObject[] parse = LinkObject.parse("</1>;empty=;blank= ;quoted=\"\";none".getBytes());
+        Map<String, Object> attributes = parse[0].getAttributes();
+        Assert.assertTrue(attributes.containsKey("empty"));
+        Assert.assertNull(attributes.get("empty"));
+        Assert.assertNull(attributes.get("blank"));
+        Assert.assertEquals("", attributes.get("quoted"));
+        Assert.assertTrue(attributes.containsKey("none"));
+        Assert.assertNull(attributes.get("none"));
+        Assert.assertEquals(parse[0], LinkObject.parse("</1>;empty;blank;quoted=\"\";none".getBytes())[0]);
+    }
+
+    @Test
+    public void parse_empty_payload() {
+        Assert.assertEquals(0, LinkObject.parse("".getBytes()).length);
+        Assert.assertEquals(0, LinkObject.parse(" , ".getBytes()).length);
+    }
+
     @Test
     public void serialyse_without_attribute() {
         LinkObject obj1 = new LinkObject("/1/0/1");
@@ -151,4 +201,14 @@ public class LinkObjectTest {
         Assert.assertEquals(input, ouput);
 
     }
+
+    @Test
+    public void identical_attributes_are_shared() {
+        LinkObject[] first = LinkObject.parse("</>;rt=\"oma.lwm2m\", </1/0>".getBytes());
+        LinkObject[] second = LinkObject.parse("</>;rt=\"oma.lwm2m\", </3/0>".getBytes());
+
+        Assert.assertSame(first[0].getAttributes(), second[0].getAttributes());
+        Assert.assertSame(first[1].getAttributes(), second[1].getAttributes());
+        Assert.assertEquals(first[0], second[0]);
+    }
 }
@@ -19,6 +19,7 @@ package org.eclipse.leshan.core.node.codec;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Date;
 
@@ -114,6 +115,12 @@ public class LwM2mNodeDecoderTest {
     }
 
     private void assertDeviceInstance(LwM2mObjectInstance oInstance) {
+        assertDeviceInstanceWithoutErrorCode(oInstance);
+        assertEquals(0L, oInstance.getResource(11).getValue());
+    }
+
+    // the error code (resource 11) is a multiple resource, the other fixtures encode it as a single value
+    private void assertDeviceInstanceWithoutErrorCode(LwM2mObjectInstance oInstance) {
         assertEquals(0, oInstance.getId());
 
         assertEquals("Open Mobile Alliance", oInstance.getResource(0).getValue());
@@ -131,7 +138,6 @@ public class LwM2mNodeDecoderTest {
         assertEquals(900L, oInstance.getResource(8).getValue(1));
         assertEquals(100L, oInstance.getResource(9).getValue());
         assertEquals(15L, oInstance.getResource(10).getValue());
-        assertEquals(0L, oInstance.getResource(11).getValue());
         assertNull(oInstance.getResource(12));
         assertEquals(new Date(1367491215000L), oInstance.getResource(13).getValue());
         assertEquals("+02:00", oInstance.getResource(14).getValue());
@@ -203,7 +209,7 @@ public class LwM2mNodeDecoderTest {
         assertDeviceInstance(oInstance);
     }
 
-    @Test(expected = UnsupportedOperationException.class)
+    @Test
     public void json_device_object_instance0_with_root_basename() throws InvalidValueException {
         // json content for instance 0 of device object
         StringBuilder b = new StringBuilder();
@@ -229,6 +235,75 @@ public class LwM2mNodeDecoderTest {
         LwM2mObjectInstance oInstance = (LwM2mObjectInstance) LwM2mNodeDecoder.decode(b.toString().getBytes(),
                 ContentFormat.JSON, new LwM2mPath(3, 0), model);
 
-        assertDeviceInstance(oInstance);
+        assertDeviceInstanceWithoutErrorCode(oInstance);
+        assertTrue(oInstance.getResource(11).isMultiInstances());
+        assertEquals(1, oInstance.getResource(11).getValues().size());
+        assertEquals(0L, oInstance.getResource(11).getValue(0));
+    }
+
+    @Test
+    public void json_device_object_instance0_with_instance_basename() throws InvalidValueException {
+        String content = "{\"bn\":\"/3/0/\",\"bt\":1367491215,\"e\":[{\"n\":\"0\",\"sv\":\"Open Mobile Alliance\"},"
+                + "{\"n\":\"6/0\",\"v\":1},{\"n\":\"6/1\",\"v\":5,\"t\":-10},{\"n\":\"9\",\"v\":1.0E2}]}";
+
+        LwM2mObjectInstance oInstance = (LwM2mObjectInstance) LwM2mNodeDecoder.decode(
+                content.getBytes(Charsets.UTF_8), ContentFormat.JSON, new LwM2mPath(3, 0), model);
+
+        assertEquals(3, oInstance.getResources().size());
+        assertEquals("Open Mobile Alliance", oInstance.getResource(0).getValue());
+        assertEquals(1L, oInstance.getResource(6).getValue(0));
+        assertEquals(5L, oInstance.getResource(6).getValue(1));
+        assertEquals(100L, oInstance.getResource(9).getValue());
+    }
+
+    @Test
+    public void json_object_with_basename() throws InvalidValueException {
+        String content = "{\"bn\":\"/1/\",\"e\":[{\"n\":\"0/0\",\"v\":1},{\"n\":\"0/7\",\"sv\":\"U\"},"
+                + "{\"n\":\"1/0\",\"v\":2},{\"n\":\"1/6\",\"bv\":true}]}";
+
+        LwM2mObject object = (LwM2mObject) LwM2mNodeDecoder.decode(content.getBytes(Charsets.UTF_8),
+                ContentFormat.JSON, new LwM2mPath(1), model);
+
+        assertEquals(1, object.getId());
+        assertEquals(2, object.getInstances().size());
+        assertEquals(1L, object.getInstance(0).getResource(0).getValue());
+        assertEquals("U", object.getInstance(0).getResource(7).getValue());
+        assertEquals(2L, object.getInstance(1).getResource(0).getValue());
+        assertEquals(true, object.getInstance(1).getResource(6).getValue());
+    }
+
+    @Test
+    public void json_object_without_basename() throws InvalidValueException {
+        String content = "{\"e\":[{\"n\":\"0/0\",\"v\":1},{\"n\":\"3/0\",\"v\":2}]}";
+
+        LwM2mObject object = (LwM2mObject) LwM2mNodeDecoder.decode(content.getBytes(Charsets.UTF_8),
+                ContentFormat.JSON, new LwM2mPath(1), model);
+
+        assertEquals(2, object.getInstances().size());
+        assertEquals(2L, object.getInstance(3).getResource(0).getValue());
+    }
+
+    @Test
+    public void json_escaped_and_utf8_string() throws InvalidValueException {
+        String content = "{\"e\":[{\"n\":\"14\",\"sv\":\"caf\u00e9 \\\"\\u20ac\\\" \\n\"}]}";
+
+        LwM2mResource resource = (LwM2mResource) LwM2mNodeDecoder.decode(content.getBytes(Charsets.UTF_8),
+                ContentFormat.JSON, new LwM2mPath(3, 0, 14), model);
+
+        assertEquals("caf\u00e9 \"\u20ac\" \n", resource.getValue());
+    }
+
+    @Test(expected = InvalidValueException.class)
+    public void json_entry_outside_requested_path() throws InvalidValueException {
+        String content = "{\"bn\":\"/3/1/\",\"e\":[{\"n\":\"0\",\"sv\":\"Open Mobile Alliance\"}]}";
+
+        LwM2mNodeDecoder.decode(content.getBytes(Charsets.UTF_8), ContentFormat.JSON, new LwM2mPath(3, 0), model);
+    }
+
+    @Test(expected = InvalidValueException.class)
+    public void json_invalid_content() throws InvalidValueException {
+        String content = "{\"e\":[{\"n\":\"0\",\"sv\":\"Open Mobile Alliance\"}";
+
+        LwM2mNodeDecoder.decode(content.getBytes(Charsets.UTF_8), ContentFormat.JSON, new LwM2mPath(3, 0), model);
     }
 }
@@ -16,7 +16,10 @@
  *******************************************************************************/
 package org.eclipse.leshan.core.node.codec;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -30,6 +33,7 @@ import org.eclipse.leshan.core.node.LwM2mObjectInstance;
 import org.eclipse.leshan.core.node.LwM2mPath;
 import org.eclipse.leshan.core.node.LwM2mResource;
 import org.eclipse.leshan.core.node.LwM2mSingleResource;
+import org.eclipse.leshan.core.node.codec.tlv.LwM2mNodeTlvEncoder;
 import org.eclipse.leshan.core.request.ContentFormat;
 import org.eclipse.leshan.util.Charsets;
 import org.junit.Assert;
@@ -180,6 +184,60 @@ public class LwM2mNodeEncoderTest {
         Assert.assertArrayEquals(expected, encoded);
     }
 
+    @Test
+    public void tlv_encode_multiple_instances_object() throws InvalidValueException {
+        LwM2mObjectInstance[] instances = new LwM2mObjectInstance[3];
+        for (int i = 0; i < instances.length; i++) {
+            instances[i] = new LwM2mObjectInstance(i, LwM2mSingleResource.newIntegerResource(0, 100 + i),
+                    LwM2mSingleResource.newIntegerResource(1, 86400 * i), LwM2mSingleResource.newBooleanResource(6,
+                            true), LwM2mSingleResource.newStringResource(7, "UQ"));
+        }
+        LwM2mObject object = new LwM2mObject(1, instances);
+
+        byte[] encoded = LwM2mNodeEncoder.encode(object, ContentFormat.TLV, new LwM2mPath("/1"), model);
+
+        Assert.assertEquals(object, LwM2mNodeDecoder.decode(encoded, ContentFormat.TLV, new LwM2mPath("/1"), model));
+    }
+
+    @Test
+    public void tlv_encode_utf8_string() throws InvalidValueException {
+        LwM2mResource resource = LwM2mSingleResource.newStringResource(0, "caf\u00e9 \u20ac \ud83d\ude00 \ud83d");
+
+        byte[] encoded = LwM2mNodeEncoder.encode(resource, ContentFormat.TLV, new LwM2mPath("/3/0/0"), model);
+
+        byte[] expected = "caf\u00e9 \u20ac \ud83d\ude00 \ud83d".getBytes(Charsets.UTF_8);
+        Assert.assertArrayEquals(expected, Arrays.copyOfRange(encoded, encoded.length - expected.length,
+                encoded.length));
+    }
+
+    @Test
+    public void tlv_encode_into_buffer() {
+        LwM2mResource resource = LwM2mSingleResource.newStringResource(14, "+02:00");
+        byte[] expected = LwM2mNodeEncoder.encode(resource, ContentFormat.TLV, new LwM2mPath("/3/0/14"), model);
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put((byte) 0x42);
+        int length = LwM2mNodeTlvEncoder.encode(resource, new LwM2mPath("/3/0/14"), model, buffer);
+
+        Assert.assertEquals(expected.length, length);
+        Assert.assertEquals(1 + length, buffer.position());
+        Assert.assertArrayEquals(expected, Arrays.copyOfRange(buffer.array(), 1, 1 + length));
+    }
+
+    @Test
+    public void tlv_encode_into_too_small_buffer() {
+        LwM2mResource resource = LwM2mSingleResource.newStringResource(14, "+02:00");
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+
+        try {
+            LwM2mNodeTlvEncoder.encode(resource, new LwM2mPath("/3/0/14"), model, buffer);
+            Assert.fail("BufferOverflowException expected");
+        } catch (BufferOverflowException e) {
+            // nothing written
+            Assert.assertEquals(0, buffer.position());
+        }
+    }
+
     @Test
     public void json_encode_device_object_instance() {
 
@@ -238,4 +296,42 @@ public class LwM2mNodeEncoderTest {
         String expected = b.toString();
         Assert.assertEquals(expected, new String(encoded));
     }
+
+    @Test
+    public void json_encode_object() throws InvalidValueException {
+        LwM2mObject object = new LwM2mObject(1, new LwM2mObjectInstance(0, LwM2mSingleResource.newIntegerResource(0,
+                1), LwM2mSingleResource.newStringResource(7, "U")), new LwM2mObjectInstance(1,
+                LwM2mSingleResource.newIntegerResource(0, 2), LwM2mSingleResource.newBooleanResource(6, true)));
+
+        byte[] encoded = LwM2mNodeEncoder.encode(object, ContentFormat.JSON, new LwM2mPath("/1"), model);
+
+        String expected = "{\"bn\":\"/1/\",\"e\":[{\"n\":\"0/0\",\"v\":1},{\"n\":\"0/7\",\"sv\":\"U\"},"
+                + "{\"n\":\"1/0\",\"v\":2},{\"n\":\"1/6\",\"bv\":true}]}";
+        Assert.assertEquals(expected, new String(encoded, Charsets.UTF_8));
+        Assert.assertEquals(object, LwM2mNodeDecoder.decode(encoded, ContentFormat.JSON, new LwM2mPath("/1"), model));
+    }
+
+    @Test
+    public void json_encode_float_and_opaque() {
+        LwM2mObjectInstance instance = new LwM2mObjectInstance(0, LwM2mSingleResource.newFloatResource(5700, 21.5),
+                LwM2mSingleResource.newBinaryResource(3, new byte[] { 1, 2, 3 }));
+
+        byte[] encoded = LwM2mNodeEncoder.encode(instance, ContentFormat.JSON, new LwM2mPath("/10000/0"), model);
+
+        Assert.assertEquals("{\"e\":[{\"n\":\"5700\",\"v\":21.5},{\"n\":\"3\",\"sv\":\"AQID\"}]}", new String(
+                encoded, Charsets.UTF_8));
+    }
+
+    @Test
+    public void json_encode_utf8_string() throws InvalidValueException {
+        String value = "caf\u00e9 \"\u20ac\" \\ \n\u0001 \ud83d\ude00";
+        LwM2mResource resource = LwM2mSingleResource.newStringResource(14, value);
+
+        byte[] encoded = LwM2mNodeEncoder.encode(resource, ContentFormat.JSON, new LwM2mPath("/3/0/14"), model);
+
+        Assert.assertEquals("{\"e\":[{\"n\":\"14\",\"sv\":\"caf\u00e9 \\\"\u20ac\\\" \\\\ \\n\\u0001 \ud83d\ude00\"}]}",
+                new String(encoded, Charsets.UTF_8));
+        Assert.assertEquals(resource, LwM2mNodeDecoder.decode(encoded, ContentFormat.JSON, new LwM2mPath("/3/0/14"),
+                model));
+    }
 }
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.node.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.leshan.core.model.LwM2mModel;
+import org.eclipse.leshan.core.model.ObjectLoader;
+import org.eclipse.leshan.core.model.ObjectModel;
+import org.eclipse.leshan.core.model.ResourceModel;
+import org.eclipse.leshan.core.model.ResourceModel.Operations;
+import org.eclipse.leshan.core.model.ResourceModel.Type;
+import org.junit.Test;
+
+public class ObjectCodecPlanTest {
+
+    private static ResourceModel resource(int id, Type type) {
+        return new ResourceModel(id, "r" + id, Operations.RW, false, false, type, null, null, null);
+    }
+
+    @Test
+    public void plan_of_default_model_object() {
+        LwM2mModel model = new LwM2mModel(ObjectLoader.loadDefault());
+        ObjectCodecPlan plan = ObjectCodecPlan.of(model, 3);
+
+        assertTrue(plan.isSingleInstance());
+        assertSame(model.getObjectModel(3), plan.getObjectModel());
+        assertSame(model.getResourceModel(3, 0), plan.getResourceModel(0));
+        assertEquals(Type.STRING, plan.getType(0, Type.OPAQUE));
+        assertEquals(Type.INTEGER, plan.getType(9, Type.OPAQUE));
+        assertEquals(Type.TIME, plan.getType(13, Type.OPAQUE));
+
+        // unknown resources
+        assertNull(plan.getResourceModel(-1));
+        assertNull(plan.getResourceModel(999));
+        assertEquals(Type.OPAQUE, plan.getType(999, Type.OPAQUE));
+
+        // multiple instances object
+        assertFalse(ObjectCodecPlan.of(model, 2).isSingleInstance());
+    }
+
+    @Test
+    public void plan_of_unknown_object() {
+        LwM2mModel model = new LwM2mModel(ObjectLoader.loadDefault());
+        ObjectCodecPlan plan = ObjectCodecPlan.of(model, 666);
+
+        assertNull(plan.getObjectModel());
+        assertFalse(plan.isSingleInstance());
+        assertNull(plan.getResourceModel(0));
+        assertEquals(Type.STRING, plan.getType(0, Type.STRING));
+    }
+
+    @Test
+    public void plan_with_scattered_resource_ids() {
+        ResourceModel low = resource(1, Type.INTEGER);
+        ResourceModel high = resource(60000, Type.BOOLEAN);
+        LwM2mModel model = new LwM2mModel(new ObjectModel(1024, "scattered", null, true, false, low, high,
+                resource(30000, null)));
+        ObjectCodecPlan plan = ObjectCodecPlan.of(model, 1024);
+
+        assertSame(low, plan.getResourceModel(1));
+        assertSame(high, plan.getResourceModel(60000));
+        assertNull(plan.getResourceModel(2));
+        assertNull(plan.getResourceModel(59999));
+        assertEquals(Type.INTEGER, plan.getType(1, Type.OPAQUE));
+        assertEquals(Type.BOOLEAN, plan.getType(60000, Type.OPAQUE));
+        // resource without type
+        assertEquals(Type.OPAQUE, plan.getType(30000, Type.OPAQUE));
+    }
+
+    @Test
+    public void plans_are_cached_per_object_model() {
+        LwM2mModel model = new LwM2mModel(ObjectLoader.loadDefault());
+
+        ObjectCodecPlan plan = ObjectCodecPlan.of(model, 3);
+        assertSame(plan, ObjectCodecPlan.of(model, 3));
+        // other object models, loaded again
+        assertNotSame(plan, ObjectCodecPlan.of(new LwM2mModel(ObjectLoader.loadDefault()), 3));
+    }
+
+    @Test
+    public void plans_are_shared_by_models_created_per_call() {
+        // e.g. the client creates a model for each request from the object model of the enabler
+        ObjectModel objectModel = new LwM2mModel(ObjectLoader.loadDefault()).getObjectModel(3);
+
+        ObjectCodecPlan plan = ObjectCodecPlan.of(new LwM2mModel(objectModel), 3);
+        for (int i = 0; i < 10; i++) {
+            assertSame(plan, ObjectCodecPlan.of(new LwM2mModel(objectModel), 3));
+        }
+    }
+}
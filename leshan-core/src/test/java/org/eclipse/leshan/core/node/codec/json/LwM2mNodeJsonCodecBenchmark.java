@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.node.codec.json;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.leshan.core.model.LwM2mModel;
+import org.eclipse.leshan.core.model.ObjectLoader;
+import org.eclipse.leshan.core.model.ResourceModel.Type;
+import org.eclipse.leshan.core.node.LwM2mMultipleResource;
+import org.eclipse.leshan.core.node.LwM2mObjectInstance;
+import org.eclipse.leshan.core.node.LwM2mPath;
+import org.eclipse.leshan.core.node.LwM2mResource;
+import org.eclipse.leshan.core.node.LwM2mSingleResource;
+import org.eclipse.leshan.json.JsonArrayEntry;
+import org.eclipse.leshan.json.JsonRootObject;
+import org.eclipse.leshan.json.LwM2mJson;
+import org.eclipse.leshan.util.BenchmarkTask;
+
+/**
+ * Compares the time and the allocations of {@link LwM2mNodeJsonEncoder} and {@link LwM2mNodeJsonDecoder} with the
+ * previous Gson based encoding and decoding, on a device object instance.
+ * 
+ * This is not a unit test: run the <code>main</code> method manually, with a fixed heap size and without thread-local
+ * allocation buffers (e.g. <code>-Xms1g -Xmx1g -XX:-UseTLAB</code>), see {@link BenchmarkTask}.
+ */
+public class LwM2mNodeJsonCodecBenchmark {
+
+    private static final int ITERATIONS = 50000;
+
+    // small enough for the young generation
+    private static final int ALLOCATION_ITERATIONS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        final LwM2mModel model = new LwM2mModel(ObjectLoader.loadDefault());
+        final LwM2mPath path = new LwM2mPath(3, 0);
+        final LwM2mObjectInstance instance = newDeviceInstance();
+
+        final byte[] content = LwM2mNodeJsonEncoder.encode(instance, path, model);
+        if (!new String(content).equals(new String(legacyEncode(instance)))) {
+            throw new IllegalStateException("The encoders do not produce the same content");
+        }
+        System.out.printf("payload: %d bytes%n", content.length);
+
+        BenchmarkTask gsonEncode = new BenchmarkTask() {
+            @Override
+            protected Object run() {
+                return legacyEncode(instance);
+            }
+        };
+        BenchmarkTask encode = new BenchmarkTask() {
+            @Override
+            protected Object run() {
+                return LwM2mNodeJsonEncoder.encode(instance, path, model);
+            }
+        };
+        BenchmarkTask gsonDecode = new BenchmarkTask() {
+            @Override
+            protected Object run() throws Exception {
+                return legacyDecode(content, path, model);
+            }
+        };
+        BenchmarkTask decode = new BenchmarkTask() {
+            @Override
+            protected Object run() throws Exception {
+                return LwM2mNodeJsonDecoder.decode(content, path, model);
+            }
+        };
+
+        for (int round = 0; round < 5; round++) {
+            System.out.printf("round %d: encode gson %.2f us %d B, streaming %.2f us %d B | "
+                    + "decode gson %.2f us %d B, streaming %.2f us %d B%n", round,
+                    gsonEncode.micros(ITERATIONS), gsonEncode.bytes(ALLOCATION_ITERATIONS),
+                    encode.micros(ITERATIONS), encode.bytes(ALLOCATION_ITERATIONS),
+                    gsonDecode.micros(ITERATIONS), gsonDecode.bytes(ALLOCATION_ITERATIONS),
+                    decode.micros(ITERATIONS), decode.bytes(ALLOCATION_ITERATIONS));
+        }
+    }
+
+    private static LwM2mObjectInstance newDeviceInstance() {
+        List<LwM2mResource> resources = new ArrayList<>();
+        resources.add(LwM2mSingleResource.newStringResource(0, "Open Mobile Alliance"));
+        resources.add(LwM2mSingleResource.newStringResource(1, "Lightweight M2M Client"));
+        resources.add(LwM2mSingleResource.newStringResource(2, "345000123"));
+        resources.add(LwM2mSingleResource.newStringResource(3, "1.0"));
+        Map<Integer, Long> values = new HashMap<>();
+        values.put(0, 1L);
+        values.put(1, 5L);
+        resources.add(LwM2mMultipleResource.newIntegerResource(6, values));
+        values = new HashMap<>();
+        values.put(0, 3800L);
+        values.put(1, 5000L);
+        resources.add(LwM2mMultipleResource.newIntegerResource(7, values));
+        resources.add(LwM2mSingleResource.newIntegerResource(9, 100));
+        resources.add(LwM2mSingleResource.newIntegerResource(10, 15));
+        resources.add(LwM2mSingleResource.newDateResource(13, new Date(1367491215000L)));
+        resources.add(LwM2mSingleResource.newStringResource(14, "+02:00"));
+        resources.add(LwM2mSingleResource.newStringResource(15, "U"));
+        return new LwM2mObjectInstance(0, resources);
+    }
+
+    // the Gson encoding used up to now, for the device object
+    private static byte[] legacyEncode(LwM2mObjectInstance instance) {
+        ArrayList<JsonArrayEntry> entries = new ArrayList<>();
+        for (LwM2mResource resource : instance.getResources().values()) {
+            if (resource.isMultiInstances()) {
+                for (Entry<Integer, ?> value : resource.getValues().entrySet()) {
+                    entries.add(legacyEntry(resource.getId() + "/" + value.getKey(), value.getValue(),
+                            resource.getType()));
+                }
+            } else {
+                entries.add(legacyEntry(new StringBuffer().append(resource.getId()).toString(), resource.getValue(),
+                        resource.getType()));
+            }
+        }
+        return LwM2mJson.toJsonLwM2m(new JsonRootObject(entries)).getBytes();
+    }
+
+    private static JsonArrayEntry legacyEntry(String name, Object value, Type type) {
+        JsonArrayEntry entry = new JsonArrayEntry();
+        entry.setName(name);
+        if (type == Type.STRING) {
+            entry.setStringValue((String) value);
+        } else if (type == Type.TIME) {
+            entry.setFloatValue(((Date) value).getTime() / 1000L);
+        } else {
+            entry.setFloatValue((Number) value);
+        }
+        return entry;
+    }
+
+    // the Gson decoding used up to now, for object instances
+    private static LwM2mObjectInstance legacyDecode(byte[] content, LwM2mPath path, LwM2mModel model)
+            throws Exception {
+        JsonRootObject json = LwM2mJson.fromJsonLwM2m(new String(content));
+        Map<Integer, LwM2mResource> resources = new HashMap<>();
+        Map<Integer, Map<Integer, Object>> multipleValues = new HashMap<>();
+        for (JsonArrayEntry entry : json.getResourceList()) {
+            String[] names = entry.getName().split("/");
+            Integer resourceId = Integer.valueOf(names[0]);
+            LwM2mPath resourcePath = new LwM2mPath(path.getObjectId(), path.getObjectInstanceId(), resourceId);
+            Type type = LwM2mNodeJsonDecoder.getResourceType(resourcePath, model);
+            Object value = legacyValue(entry.getResourceValue(), type);
+            if (names.length > 1) {
+                Map<Integer, Object> values = multipleValues.get(resourceId);
+                if (values == null) {
+                    values = new HashMap<>();
+                    multipleValues.put(resourceId, values);
+                }
+                values.put(Integer.valueOf(names[1]), value);
+            } else {
+                resources.put(resourceId, LwM2mSingleResource.newResource(resourceId, value, type));
+            }
+        }
+        for (Entry<Integer, Map<Integer, Object>> values : multipleValues.entrySet()) {
+            LwM2mPath resourcePath = new LwM2mPath(path.getObjectId(), path.getObjectInstanceId(), values.getKey());
+            resources.put(values.getKey(), LwM2mMultipleResource.newResource(values.getKey(), values.getValue(),
+                    LwM2mNodeJsonDecoder.getResourceType(resourcePath, model)));
+        }
+        return new LwM2mObjectInstance(path.getObjectInstanceId(), resources.values());
+    }
+
+    private static Object legacyValue(Object value, Type type) {
+        switch (type) {
+        case INTEGER:
+            return ((Number) value).longValue();
+        case FLOAT:
+            return ((Number) value).doubleValue();
+        case TIME:
+            return new Date(((Number) value).longValue() * 1000L);
+        default:
+            return value;
+        }
+    }
+}
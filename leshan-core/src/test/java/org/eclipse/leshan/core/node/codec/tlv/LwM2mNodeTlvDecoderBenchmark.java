@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.node.codec.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.leshan.core.model.LwM2mModel;
+import org.eclipse.leshan.core.model.ObjectLoader;
+import org.eclipse.leshan.core.model.ResourceModel;
+import org.eclipse.leshan.core.model.ResourceModel.Type;
+import org.eclipse.leshan.core.node.LwM2mMultipleResource;
+import org.eclipse.leshan.core.node.LwM2mNode;
+import org.eclipse.leshan.core.node.LwM2mObject;
+import org.eclipse.leshan.core.node.LwM2mObjectInstance;
+import org.eclipse.leshan.core.node.LwM2mPath;
+import org.eclipse.leshan.core.node.LwM2mResource;
+import org.eclipse.leshan.core.node.LwM2mSingleResource;
+import org.eclipse.leshan.tlv.Tlv;
+import org.eclipse.leshan.tlv.Tlv.TlvType;
+import org.eclipse.leshan.tlv.TlvDecoder;
+import org.eclipse.leshan.tlv.TlvEncoder;
+import org.eclipse.leshan.util.BenchmarkTask;
+import org.eclipse.leshan.util.Hex;
+
+/**
+ * Compares the time and the allocations of {@link LwM2mNodeTlvDecoder} with the previous decoding through a {@link Tlv}
+ * tree, on a device object of 10 instances.
+ * 
+ * This is not a unit test: run the <code>main</code> method manually, with a fixed heap size and without thread-local
+ * allocation buffers (e.g. <code>-Xms1g -Xmx1g -XX:-UseTLAB</code>), see {@link BenchmarkTask}.
+ */
+public class LwM2mNodeTlvDecoderBenchmark {
+
+    private static final int ITERATIONS = 50000;
+
+    // small enough for the young generation
+    private static final int ALLOCATION_ITERATIONS = 1000;
+
+    private static final int INSTANCES = 10;
+
+    // the /3/0 instance from libwlwm2m
+    private static final String DEVICE = "C800144F70656E204D6F62696C6520416C6C69616E6365C801164C69676874776569676874204D324D20436C69656E74C80209333435303030313233C303312E30860641000141010588070842000ED842011388870841007D42010384C10964C10A0F830B410000C40D5182428FC60E2B30323A3030C10F55";
+
+    public static void main(String[] args) throws Exception {
+        final LwM2mModel model = new LwM2mModel(ObjectLoader.loadDefault());
+        final LwM2mPath path = new LwM2mPath(3);
+
+        Tlv[] resources = TlvDecoder.decode(ByteBuffer.wrap(Hex.decodeHex(DEVICE.toCharArray())));
+        Tlv[] instances = new Tlv[INSTANCES];
+        for (int i = 0; i < INSTANCES; i++) {
+            instances[i] = new Tlv(TlvType.OBJECT_INSTANCE, resources, null, i);
+        }
+        final byte[] content = TlvEncoder.encode(instances).array();
+        System.out.printf("payload: %d bytes, %d instances%n", content.length, INSTANCES);
+
+        BenchmarkTask tree = new BenchmarkTask() {
+            @Override
+            protected Object run() throws Exception {
+                return legacyDecode(content, path, model);
+            }
+        };
+        BenchmarkTask reader = new BenchmarkTask() {
+            @Override
+            protected Object run() throws Exception {
+                return LwM2mNodeTlvDecoder.decode(content, path, model);
+            }
+        };
+
+        for (int round = 0; round < 5; round++) {
+            System.out.printf("round %d: tree %.2f us %d B/instance, reader %.2f us %d B/instance%n", round,
+                    tree.micros(ITERATIONS), tree.bytes(ALLOCATION_ITERATIONS) / INSTANCES,
+                    reader.micros(ITERATIONS), reader.bytes(ALLOCATION_ITERATIONS) / INSTANCES);
+        }
+    }
+
+    // the decoding used up to now, for object instances
+    private static LwM2mNode legacyDecode(byte[] content, LwM2mPath path, LwM2mModel model) throws Exception {
+        Tlv[] tlvs = TlvDecoder.decode(ByteBuffer.wrap(content));
+        List<LwM2mObjectInstance> instances = new ArrayList<>();
+        for (Tlv instance : tlvs) {
+            List<LwM2mResource> resources = new ArrayList<>(instance.getChildren().length);
+            for (Tlv tlv : instance.getChildren()) {
+                LwM2mPath resourcePath = new LwM2mPath(path.getObjectId(), instance.getIdentifier(),
+                        tlv.getIdentifier());
+                Type type = legacyType(resourcePath, model);
+                if (tlv.getType() == TlvType.MULTIPLE_RESOURCE) {
+                    Map<Integer, Object> values = new HashMap<>();
+                    for (Tlv child : tlv.getChildren()) {
+                        values.put(child.getIdentifier(), legacyValue(child.getValue(), type));
+                    }
+                    resources.add(LwM2mMultipleResource.newResource(tlv.getIdentifier(), values, type));
+                } else {
+                    resources.add(LwM2mSingleResource.newResource(tlv.getIdentifier(),
+                            legacyValue(tlv.getValue(), type), type));
+                }
+            }
+            instances.add(new LwM2mObjectInstance(instance.getIdentifier(), resources));
+        }
+        return new LwM2mObject(path.getObjectId(), instances);
+    }
+
+    private static Type legacyType(LwM2mPath path, LwM2mModel model) {
+        ResourceModel resource = model.getResourceModel(path.getObjectId(), path.getResourceId());
+        return resource == null || resource.type == null ? Type.OPAQUE : resource.type;
+    }
+
+    private static Object legacyValue(byte[] value, Type type) throws Exception {
+        switch (type) {
+        case STRING:
+            return TlvDecoder.decodeString(value);
+        case INTEGER:
+            return TlvDecoder.decodeInteger(value).longValue();
+        case FLOAT:
+            return TlvDecoder.decodeFloat(value).doubleValue();
+        case BOOLEAN:
+            return TlvDecoder.decodeBoolean(value);
+        case TIME:
+            return TlvDecoder.decodeDate(value);
+        default:
+            return value;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.node.codec.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.leshan.core.model.LwM2mModel;
+import org.eclipse.leshan.core.model.ObjectLoader;
+import org.eclipse.leshan.core.model.ResourceModel.Type;
+import org.eclipse.leshan.core.node.LwM2mMultipleResource;
+import org.eclipse.leshan.core.node.LwM2mObject;
+import org.eclipse.leshan.core.node.LwM2mObjectInstance;
+import org.eclipse.leshan.core.node.LwM2mPath;
+import org.eclipse.leshan.core.node.LwM2mResource;
+import org.eclipse.leshan.core.node.LwM2mSingleResource;
+import org.eclipse.leshan.tlv.Tlv;
+import org.eclipse.leshan.tlv.Tlv.TlvType;
+import org.eclipse.leshan.tlv.TlvEncoder;
+import org.eclipse.leshan.util.BenchmarkTask;
+
+/**
+ * Compares the time and the allocations of {@link LwM2mNodeTlvEncoder} with the previous encoding through a {@link Tlv}
+ * tree, on an object of 50 instances holding single and multiple resources (an object which is not in the model, so
+ * the instance level is encoded).
+ * 
+ * This is not a unit test: run the <code>main</code> method manually, with a fixed heap size and without thread-local
+ * allocation buffers (e.g. <code>-Xms1g -Xmx1g -XX:-UseTLAB</code>), see {@link BenchmarkTask}.
+ */
+public class LwM2mNodeTlvEncoderBenchmark {
+
+    private static final int ITERATIONS = 20000;
+
+    // small enough for the young generation
+    private static final int ALLOCATION_ITERATIONS = 200;
+
+    private static final int INSTANCES = 50;
+
+    public static void main(String[] args) throws Exception {
+        final LwM2mModel model = new LwM2mModel(ObjectLoader.loadDefault());
+        final LwM2mPath path = new LwM2mPath(10000);
+        final LwM2mObject object = newObject(path.getObjectId());
+
+        byte[] legacyContent = legacyEncode(object, model);
+        byte[] content = LwM2mNodeTlvEncoder.encode(object, path, model);
+        if (!Arrays.equals(legacyContent, content)) {
+            throw new IllegalStateException("The encoders do not produce the same content");
+        }
+        System.out.printf("payload: %d bytes, %d instances%n", content.length, INSTANCES);
+
+        // a pooled buffer, reused for each encoding
+        final ByteBuffer buffer = ByteBuffer.allocate(content.length);
+
+        BenchmarkTask tree = new BenchmarkTask() {
+            @Override
+            protected Object run() {
+                return legacyEncode(object, model);
+            }
+        };
+        BenchmarkTask direct = new BenchmarkTask() {
+            @Override
+            protected Object run() {
+                return LwM2mNodeTlvEncoder.encode(object, path, model);
+            }
+        };
+        BenchmarkTask pooled = new BenchmarkTask() {
+            @Override
+            protected Object run() {
+                buffer.clear();
+                return LwM2mNodeTlvEncoder.encode(object, path, model, buffer);
+            }
+        };
+
+        for (int round = 0; round < 5; round++) {
+            System.out.printf("round %d: tree %.2f us %d B/instance, direct %.2f us %d B/instance, "
+                    + "pooled %.2f us %d B/instance%n", round,
+                    tree.micros(ITERATIONS), tree.bytes(ALLOCATION_ITERATIONS) / INSTANCES,
+                    direct.micros(ITERATIONS), direct.bytes(ALLOCATION_ITERATIONS) / INSTANCES,
+                    pooled.micros(ITERATIONS), pooled.bytes(ALLOCATION_ITERATIONS) / INSTANCES);
+        }
+    }
+
+    private static LwM2mObject newObject(int objectId) {
+        List<LwM2mObjectInstance> instances = new ArrayList<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            List<LwM2mResource> resources = new ArrayList<>();
+            resources.add(LwM2mSingleResource.newStringResource(0, "Open Mobile Alliance"));
+            resources.add(LwM2mSingleResource.newStringResource(1, "Lightweight M2M Client"));
+            resources.add(LwM2mSingleResource.newIntegerResource(2, 100 * i));
+            resources.add(LwM2mSingleResource.newFloatResource(3, 21.5 + i));
+            resources.add(LwM2mSingleResource.newBooleanResource(4, i % 2 == 0));
+            resources.add(LwM2mSingleResource.newDateResource(5, new Date(1367491215000L)));
+            Map<Integer, Long> values = new HashMap<>();
+            for (int j = 0; j < 8; j++) {
+                values.put(j, 3800L * j);
+            }
+            resources.add(LwM2mMultipleResource.newIntegerResource(6, values));
+            instances.add(new LwM2mObjectInstance(i, resources));
+        }
+        return new LwM2mObject(objectId, instances);
+    }
+
+    // the encoding used up to now, for objects which are not in the model
+    private static byte[] legacyEncode(LwM2mObject object, LwM2mModel model) {
+        Tlv[] tlvs = new Tlv[object.getInstances().size()];
+        int i = 0;
+        for (Entry<Integer, LwM2mObjectInstance> instance : object.getInstances().entrySet()) {
+            List<Tlv> resources = new ArrayList<>();
+            for (LwM2mResource resource : instance.getValue().getResources().values()) {
+                model.getResourceModel(object.getId(), resource.getId());
+                if (resource.isMultiInstances()) {
+                    Tlv[] values = new Tlv[resource.getValues().size()];
+                    int j = 0;
+                    for (Entry<Integer, ?> entry : resource.getValues().entrySet()) {
+                        values[j++] = new Tlv(TlvType.RESOURCE_INSTANCE, null, legacyValue(entry.getValue(),
+                                resource.getType()), entry.getKey());
+                    }
+                    resources.add(new Tlv(TlvType.MULTIPLE_RESOURCE, values, null, resource.getId()));
+                } else {
+                    resources.add(new Tlv(TlvType.RESOURCE_VALUE, null, legacyValue(resource.getValue(),
+                            resource.getType()), resource.getId()));
+                }
+            }
+            tlvs[i++] = new Tlv(TlvType.OBJECT_INSTANCE, resources.toArray(new Tlv[resources.size()]), null,
+                    instance.getKey());
+        }
+        return TlvEncoder.encode(tlvs).array();
+    }
+
+    private static byte[] legacyValue(Object value, Type type) {
+        switch (type) {
+        case STRING:
+            return TlvEncoder.encodeString((String) value);
+        case INTEGER:
+            return TlvEncoder.encodeInteger((Number) value);
+        case FLOAT:
+            return TlvEncoder.encodeFloat((Number) value);
+        case BOOLEAN:
+            return TlvEncoder.encodeBoolean((Boolean) value);
+        case TIME:
+            return TlvEncoder.encodeDate((Date) value);
+        default:
+            return (byte[]) value;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.eclipse.leshan.json.LwM2mJsonReader.ValueType;
+import org.eclipse.leshan.util.Charsets;
+import org.junit.Test;
+
+public class LwM2mJsonReaderTest {
+
+    @Test
+    public void read_entries() throws LwM2mJsonException {
+        LwM2mJsonReader reader = reader("{\"e\":[{\"n\":\"0\",\"sv\":\"Open Mobile Alliance\"},"
+                + "{\"n\":\"6/1\",\"v\":-5},{\"n\":\"9\",\"v\":1.5e1},{\"n\":\"12\",\"bv\":false},"
+                + "{\"n\":\"22\",\"ov\":\"3:0\"}]}");
+
+        assertNull(reader.getBaseName());
+        assertNull(reader.getBaseTime());
+
+        assertTrue(reader.next());
+        assertIds(reader, 0);
+        assertEquals(ValueType.STRING, reader.getValueType());
+        assertEquals("Open Mobile Alliance", reader.getString());
+        assertNull(reader.getTime());
+
+        assertTrue(reader.next());
+        assertIds(reader, 6, 1);
+        assertEquals(-5L, reader.getLong());
+        assertEquals(-5d, reader.getDouble(), 0d);
+        assertEquals(-5L, reader.getValue());
+
+        assertTrue(reader.next());
+        assertEquals(15L, reader.getLong());
+        assertEquals(15d, reader.getValue());
+
+        assertTrue(reader.next());
+        assertFalse(reader.getBoolean());
+
+        assertTrue(reader.next());
+        assertEquals(ValueType.OBJECT_LINK, reader.getValueType());
+        assertEquals("3:0", reader.getString());
+
+        assertFalse(reader.next());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void read_base_name_and_time() throws LwM2mJsonException {
+        // the base name and time may be after the entries, unknown members are ignored
+        LwM2mJsonReader reader = reader(" { \"e\" : [ { \"n\" : \"1\" , \"v\" : 1 , \"t\" : -10 } , { \"v\" : 2 } ] ,"
+                + " \"x\" : { \"y\" : [ 1, true, null, \"z\" ] } , \"bn\" : \"/3/0/1\" , \"bt\" : 1000 } ");
+
+        assertEquals("/3/0/1", reader.getBaseName());
+        assertEquals(Long.valueOf(1000), reader.getBaseTime());
+
+        // the name is concatenated to the base name
+        assertTrue(reader.next());
+        assertIds(reader, 3, 0, 11);
+        assertEquals(Long.valueOf(990), reader.getTime());
+
+        // no name: the base name only
+        assertTrue(reader.next());
+        assertIds(reader, 3, 0, 1);
+        assertEquals(Long.valueOf(1000), reader.getTime());
+
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void read_escaped_strings() throws LwM2mJsonException {
+        LwM2mJsonReader reader = reader("{\"bn\":\"\\/3\\/0\\/\",\"e\":[{\"n\":\"\\u0031\","
+                + "\"sv\":\"caf\u00e9 \\\"\\u20ac\\\" \\\\ \\/ \\b\\f\\n\\r\\t \ud83d\ude00\"}]}");
+
+        assertEquals("/3/0/", reader.getBaseName());
+        assertTrue(reader.next());
+        assertIds(reader, 3, 0, 1);
+        assertEquals("caf\u00e9 \"\u20ac\" \\ / \b\f\n\r\t \ud83d\ude00", reader.getString());
+    }
+
+    @Test
+    public void read_large_numbers() throws LwM2mJsonException {
+        LwM2mJsonReader reader = reader("{\"e\":[{\"v\":9223372036854775807},{\"v\":-9223372036854775808},"
+                + "{\"v\":1234567890123456789},{\"v\":0.1}]}");
+
+        assertTrue(reader.next());
+        assertEquals(Long.MAX_VALUE, reader.getLong());
+        assertTrue(reader.next());
+        assertEquals(Long.MIN_VALUE, reader.getLong());
+        assertTrue(reader.next());
+        assertEquals(1234567890123456789L, reader.getLong());
+        assertTrue(reader.next());
+        assertEquals(0.1d, reader.getDouble(), 0d);
+        assertEquals(0L, reader.getLong());
+    }
+
+    @Test
+    public void read_invalid_content() {
+        String[] contents = new String[] { "", "[]", "{}", "{\"e\":[]", "{\"e\":[]}}", "{\"e\":{}}",
+                                "{\"e\":[{\"n\":\"1\"}]}", "{\"e\":[{\"n\":\"a\",\"v\":1}]}",
+                                "{\"e\":[{\"n\":\"1/2/3/4/5\",\"v\":1}]}", "{\"e\":[{\"v\":01}]}",
+                                "{\"e\":[{\"v\":1.}]}", "{\"e\":[{\"v\":-}]}", "{\"e\":[{\"bv\":1}]}",
+                                "{\"e\":[{\"sv\":\"a\\x\"}]}", "{\"e\":[{\"v\":1}{\"v\":2}]}" };
+        for (String content : contents) {
+            try {
+                LwM2mJsonReader reader = reader(content);
+                while (reader.next()) {
+                    reader.getValue();
+                }
+                fail("invalid content: " + content);
+            } catch (LwM2mJsonException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = LwM2mJsonException.class)
+    public void read_value_of_another_type() throws LwM2mJsonException {
+        LwM2mJsonReader reader = reader("{\"e\":[{\"n\":\"1\",\"sv\":\"1\"}]}");
+        reader.next();
+        reader.getLong();
+    }
+
+    private static LwM2mJsonReader reader(String content) throws LwM2mJsonException {
+        return new LwM2mJsonReader(content.getBytes(Charsets.UTF_8));
+    }
+
+    private static void assertIds(LwM2mJsonReader reader, int... ids) {
+        assertEquals(ids.length, reader.getIdCount());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], reader.getId(i));
+        }
+    }
+}
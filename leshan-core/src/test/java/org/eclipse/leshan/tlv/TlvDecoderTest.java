@@ -15,13 +15,18 @@
  *******************************************************************************/
 package org.eclipse.leshan.tlv;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.Date;
 
+import org.eclipse.leshan.tlv.Tlv.TlvType;
 import org.eclipse.leshan.util.Hex;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -63,4 +68,114 @@ public class TlvDecoderTest {
             assertEquals("Impossible to parse TLV: \n0011223344556677889900", ex.getMessage());
         }
     }
+
+    @Test
+    public void decode_24bit_length() throws TlvException {
+        Tlv[] expectedTlv = new Tlv[] { new Tlv(TlvType.RESOURCE_VALUE, null, new byte[70000], 0) };
+
+        Tlv[] decodedTlv = TlvDecoder.decode(TlvEncoder.encode(expectedTlv));
+
+        assertArrayEquals(expectedTlv, decodedTlv);
+    }
+
+    @Test
+    public void decode_integer_all_1_and_2_bytes_values() throws TlvException {
+        for (int i = 0; i < 256; i++) {
+            byte[] value = new byte[] { (byte) i };
+            assertEquals((byte) i, TlvDecoder.decodeInteger(value));
+            assertEquals((byte) i, TlvDecoder.decodeLong(value, 0, 1));
+        }
+        for (int i = 0; i < 65536; i++) {
+            byte[] value = new byte[] { (byte) (i >> 8), (byte) i };
+            assertEquals((short) i, TlvDecoder.decodeInteger(value));
+            assertEquals((short) i, TlvDecoder.decodeLong(ByteBuffer.wrap(value), 0, 2));
+        }
+    }
+
+    @Test
+    public void decode_integer_sign_extension() throws TlvException {
+        byte[][] patterns = new byte[][] { { 0x00 }, { 0x7F, -1 }, { -0x80, 0x00 }, { -1 }, { 0x01, 0x00 },
+                                { -0x01, 0x7F }, { 0x55, -0x56 } };
+        for (int length = 1; length <= 8; length++) {
+            for (byte[] pattern : patterns) {
+                // the first byte of the pattern, then the other ones repeated
+                byte[] value = new byte[length];
+                value[0] = pattern[0];
+                for (int i = 1; i < length; i++) {
+                    value[i] = pattern[pattern.length > 1 ? 1 : 0];
+                }
+                long expected = new BigInteger(value).longValue();
+
+                assertEquals(expected, TlvDecoder.decodeLong(value, 0, length));
+                assertEquals(expected, TlvDecoder.decodeInteger(value).longValue());
+
+                // with an offset, in a buffer in little endian
+                byte[] padded = new byte[length + 3];
+                System.arraycopy(value, 0, padded, 2, length);
+                assertEquals(expected, TlvDecoder.decodeLong(padded, 2, length));
+                assertEquals(expected,
+                        TlvDecoder.decodeLong(ByteBuffer.wrap(padded).order(ByteOrder.LITTLE_ENDIAN), 2, length));
+            }
+        }
+    }
+
+    @Test
+    public void decode_integer_width() throws TlvException {
+        assertEquals(Byte.class, TlvDecoder.decodeInteger(new byte[1]).getClass());
+        assertEquals(Short.class, TlvDecoder.decodeInteger(new byte[2]).getClass());
+        assertEquals(Integer.class, TlvDecoder.decodeInteger(new byte[3]).getClass());
+        assertEquals(Integer.class, TlvDecoder.decodeInteger(new byte[4]).getClass());
+        for (int length = 5; length <= 8; length++) {
+            assertEquals(Long.class, TlvDecoder.decodeInteger(new byte[length]).getClass());
+        }
+        assertEquals(Long.MIN_VALUE, TlvDecoder.decodeInteger(new byte[] { -0x80, 0, 0, 0, 0, 0, 0, 0 }));
+        assertEquals(Long.MAX_VALUE, TlvDecoder.decodeInteger(new byte[] { 0x7F, -1, -1, -1, -1, -1, -1, -1 }));
+    }
+
+    @Test
+    public void decode_integer_invalid_length() {
+        for (int length : new int[] { 0, 9 }) {
+            try {
+                TlvDecoder.decodeInteger(new byte[length]);
+                fail();
+            } catch (TlvException e) {
+                // expected
+            }
+            try {
+                TlvDecoder.decodeLong(ByteBuffer.allocate(16), 0, length);
+                fail();
+            } catch (TlvException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void decode_float() throws TlvException {
+        for (float value : new float[] { 0f, -0f, 1.5f, -1.5f, Float.MIN_VALUE, Float.MAX_VALUE, Float.NaN,
+                                Float.NEGATIVE_INFINITY }) {
+            byte[] bytes = ByteBuffer.allocate(4).putFloat(value).array();
+            assertEquals(value, TlvDecoder.decodeFloat(bytes));
+            assertEquals(value, (float) TlvDecoder.decodeDouble(ByteBuffer.wrap(bytes), 0, 4), 0f);
+        }
+        for (double value : new double[] { 0d, -0d, 1.1d, -1.1d, Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN,
+                                Double.POSITIVE_INFINITY }) {
+            byte[] bytes = ByteBuffer.allocate(8).putDouble(value).array();
+            assertEquals(value, TlvDecoder.decodeFloat(bytes));
+            assertEquals(value, TlvDecoder.decodeDouble(ByteBuffer.wrap(bytes), 0, 8), 0d);
+        }
+    }
+
+    @Test(expected = TlvException.class)
+    public void decode_float_invalid_length() throws TlvException {
+        TlvDecoder.decodeFloat(new byte[2]);
+    }
+
+    @Test
+    public void decode_date() throws TlvException {
+        assertEquals(new Date(1367491215000L), TlvDecoder.decodeDate(new byte[] { 0x51, -0x7E, 0x42, -0x71 }));
+        // negative and 8 bytes timestamps
+        assertEquals(new Date(-1000L), TlvDecoder.decodeDate(new byte[] { -1 }));
+        assertEquals(new Date(0x1_0000_0000L * 1000L), TlvDecoder.decodeDate(new byte[] { 0, 0, 0, 1, 0, 0, 0, 0 }));
+    }
 }
@@ -18,7 +18,9 @@ package org.eclipse.leshan.tlv;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Date;
 
 import org.eclipse.leshan.tlv.Tlv.TlvType;
@@ -86,4 +88,106 @@ public class TlvEncoderTest {
 
         assertArrayEquals(expectedTlv, decodedTlv);
     }
+
+    @Test
+    public void encode_nested_tlvs() throws TlvException {
+        Tlv[] instances = new Tlv[] { new Tlv(TlvType.RESOURCE_INSTANCE, null, TlvEncoder.encodeInteger(1), 0),
+                                new Tlv(TlvType.RESOURCE_INSTANCE, null, new byte[300], 1) };
+        Tlv[] resources = new Tlv[] { new Tlv(TlvType.MULTIPLE_RESOURCE, instances, null, 6),
+                                new Tlv(TlvType.RESOURCE_VALUE, null, TlvEncoder.encodeString("U"), 1000) };
+        Tlv[] expectedTlv = new Tlv[] { new Tlv(TlvType.OBJECT_INSTANCE, resources, null, 0),
+                                new Tlv(TlvType.OBJECT_INSTANCE, resources, null, 1) };
+
+        ByteBuffer encoded = TlvEncoder.encode(expectedTlv);
+        // 2 * (instance header + multiple resource header + instance 0 + instance 1 header + value + resource)
+        assertEquals(2 * (4 + 4 + 3 + 4 + 300 + 4), encoded.remaining());
+        Tlv[] decodedTlv = TlvDecoder.decode(encoded);
+
+        assertArrayEquals(expectedTlv, decodedTlv);
+    }
+
+    @Test
+    public void encode_integer_width_boundaries() throws TlvException {
+        long[] values = new long[] { 0, -1, Byte.MAX_VALUE, Byte.MIN_VALUE, Byte.MAX_VALUE + 1, Byte.MIN_VALUE - 1,
+                                Short.MAX_VALUE, Short.MIN_VALUE, Short.MAX_VALUE + 1, Short.MIN_VALUE - 1,
+                                Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE + 1L,
+                                Integer.MIN_VALUE - 1L, Long.MAX_VALUE, Long.MIN_VALUE };
+        int[] lengths = new int[] { 1, 1, 1, 1, 2, 2, 2, 2, 4, 4, 4, 4, 8, 8, 8, 8 };
+
+        for (int i = 0; i < values.length; i++) {
+            byte[] encoded = TlvEncoder.encodeInteger(values[i]);
+            assertEquals("length of " + values[i], lengths[i], encoded.length);
+            assertEquals(lengths[i], TlvEncoder.integerLength(values[i]));
+            assertEquals(values[i], TlvDecoder.decodeLong(encoded, 0, encoded.length));
+
+            // the smallest two's complement representation, extended to the selected width
+            byte[] expected = new byte[lengths[i]];
+            byte[] minimal = BigInteger.valueOf(values[i]).toByteArray();
+            Arrays.fill(expected, values[i] < 0 ? (byte) -1 : 0);
+            System.arraycopy(minimal, 0, expected, expected.length - minimal.length, minimal.length);
+            assertArrayEquals(expected, encoded);
+
+            ByteBuffer buffer = ByteBuffer.allocate(8);
+            TlvEncoder.encodeInteger(values[i], buffer);
+            assertEquals(lengths[i], buffer.position());
+            assertArrayEquals(encoded, Arrays.copyOf(buffer.array(), buffer.position()));
+        }
+    }
+
+    @Test
+    public void encode_float_width_selection() throws TlvException {
+        // only the positive values in the single precision range are encoded on 4 bytes
+        double[] values = new double[] { Float.MIN_VALUE, Float.MAX_VALUE, 1.5d, 0d, -1.5d, Float.MIN_VALUE / 2,
+                                Float.MAX_VALUE * 2d, Double.MAX_VALUE, Double.MIN_VALUE, Double.NaN,
+                                Double.POSITIVE_INFINITY };
+        int[] lengths = new int[] { 4, 4, 4, 8, 8, 8, 8, 8, 8, 8, 8 };
+
+        for (int i = 0; i < values.length; i++) {
+            byte[] encoded = TlvEncoder.encodeFloat(values[i]);
+            assertEquals("length of " + values[i], lengths[i], encoded.length);
+            assertEquals(lengths[i], TlvEncoder.floatLength(values[i]));
+            double expected = lengths[i] == 4 ? (float) values[i] : values[i];
+            assertEquals(expected, TlvDecoder.decodeFloat(encoded).doubleValue(), 0d);
+
+            ByteBuffer buffer = ByteBuffer.allocate(8);
+            TlvEncoder.encodeFloat(values[i], buffer);
+            assertArrayEquals(encoded, Arrays.copyOf(buffer.array(), buffer.position()));
+        }
+    }
+
+    @Test
+    public void encode_date_before_epoch() throws TlvException {
+        Date date = new Date(-86400_000L);
+        byte[] encoded = TlvEncoder.encodeDate(date);
+
+        assertEquals(4, encoded.length);
+        assertEquals(date, TlvDecoder.decodeDate(encoded));
+
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        TlvEncoder.encodeDate(date, buffer);
+        assertArrayEquals(encoded, buffer.array());
+    }
+
+    @Test
+    public void encode_string_in_buffer() {
+        String[] values = new String[] { "", "U", "caf\u00e9", "\u07ff\u0800\uffff", "\ud83d\ude00",
+                                "\ud83d", "\ude00a", "a\ud83d\ud83d\ude00" };
+        for (String value : values) {
+            byte[] expected = TlvEncoder.encodeString(value);
+            assertEquals(expected.length, TlvEncoder.stringLength(value));
+
+            ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+            TlvEncoder.encodeString(value, buffer);
+            assertArrayEquals(expected, buffer.array());
+        }
+    }
+
+    @Test
+    public void encode_boolean_in_buffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(2);
+        TlvEncoder.encodeBoolean(true, buffer);
+        TlvEncoder.encodeBoolean(false, buffer);
+
+        assertArrayEquals(new byte[] { 1, 0 }, buffer.array());
+    }
 }
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.tlv;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.eclipse.leshan.util.BenchmarkTask;
+
+/**
+ * Compares the time and the allocations of the TLV integer and float encoding/decoding with the previous
+ * <code>BigInteger</code> and <code>ByteBuffer</code> based implementations, on telemetry like values.
+ * 
+ * This is not a unit test: run the <code>main</code> method manually, with a fixed heap size and without thread-local
+ * allocation buffers (e.g. <code>-Xms1g -Xmx1g -XX:-UseTLAB</code>), see {@link BenchmarkTask}.
+ */
+public class TlvPrimitivesBenchmark {
+
+    private static final int ITERATIONS = 200;
+
+    // small enough for the young generation
+    private static final int ALLOCATION_ITERATIONS = 10;
+
+    private static final int VALUES = 10000;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(42);
+        final long[] integers = new long[VALUES];
+        final double[] floats = new double[VALUES];
+        final byte[][] encodedIntegers = new byte[VALUES][];
+        for (int i = 0; i < VALUES; i++) {
+            // all the widths, mostly small values
+            integers[i] = random.nextLong() >> random.nextInt(64);
+            floats[i] = random.nextDouble() * 100;
+            encodedIntegers[i] = TlvEncoder.encodeInteger(integers[i]);
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(VALUES * 16);
+
+        BenchmarkTask legacyEncode = new BenchmarkTask() {
+            @Override
+            protected Object run() {
+                long length = 0;
+                for (int i = 0; i < VALUES; i++) {
+                    length += legacyEncodeInteger(integers[i]).length + legacyEncodeFloat(floats[i]).length;
+                }
+                return length;
+            }
+        };
+        BenchmarkTask encode = new BenchmarkTask() {
+            @Override
+            protected Object run() {
+                buffer.clear();
+                for (int i = 0; i < VALUES; i++) {
+                    TlvEncoder.encodeInteger(integers[i], buffer);
+                    TlvEncoder.encodeFloat(floats[i], buffer);
+                }
+                return buffer.position();
+            }
+        };
+        BenchmarkTask legacyDecode = new BenchmarkTask() {
+            @Override
+            protected Object run() {
+                long sum = 0;
+                for (int i = 0; i < VALUES; i++) {
+                    sum += new BigInteger(encodedIntegers[i]).longValue();
+                }
+                return sum;
+            }
+        };
+        BenchmarkTask decode = new BenchmarkTask() {
+            @Override
+            protected Object run() throws TlvException {
+                long sum = 0;
+                for (int i = 0; i < VALUES; i++) {
+                    sum += TlvDecoder.decodeLong(encodedIntegers[i], 0, encodedIntegers[i].length);
+                }
+                return sum;
+            }
+        };
+
+        for (int round = 0; round < 5; round++) {
+            // a run encodes or decodes all the values
+            System.out.printf("round %d: encode legacy %.1f ns %d B/value, buffer %.1f ns %d B/value | "
+                    + "decode BigInteger %.1f ns %d B/value, primitive %.1f ns %d B/value%n", round,
+                    legacyEncode.micros(ITERATIONS) * 1000 / VALUES, legacyEncode.bytes(ALLOCATION_ITERATIONS) / VALUES,
+                    encode.micros(ITERATIONS) * 1000 / VALUES, encode.bytes(ALLOCATION_ITERATIONS) / VALUES,
+                    legacyDecode.micros(ITERATIONS) * 1000 / VALUES, legacyDecode.bytes(ALLOCATION_ITERATIONS) / VALUES,
+                    decode.micros(ITERATIONS) * 1000 / VALUES, decode.bytes(ALLOCATION_ITERATIONS) / VALUES);
+        }
+    }
+
+    // the encoding used up to now
+    private static byte[] legacyEncodeInteger(long lValue) {
+        ByteBuffer iBuf;
+        if (lValue >= Byte.MIN_VALUE && lValue <= Byte.MAX_VALUE) {
+            iBuf = ByteBuffer.allocate(1);
+            iBuf.put((byte) lValue);
+        } else if (lValue >= Short.MIN_VALUE && lValue <= Short.MAX_VALUE) {
+            iBuf = ByteBuffer.allocate(2);
+            iBuf.putShort((short) lValue);
+        } else if (lValue >= Integer.MIN_VALUE && lValue <= Integer.MAX_VALUE) {
+            iBuf = ByteBuffer.allocate(4);
+            iBuf.putInt((int) lValue);
+        } else {
+            iBuf = ByteBuffer.allocate(8);
+            iBuf.putLong(lValue);
+        }
+        return iBuf.array();
+    }
+
+    private static byte[] legacyEncodeFloat(double dValue) {
+        ByteBuffer fBuf;
+        if (dValue >= Float.MIN_VALUE && dValue <= Float.MAX_VALUE) {
+            fBuf = ByteBuffer.allocate(4);
+            fBuf.putFloat((float) dValue);
+        } else {
+            fBuf = ByteBuffer.allocate(8);
+            fBuf.putDouble(dValue);
+        }
+        return fBuf.array();
+    }
+}
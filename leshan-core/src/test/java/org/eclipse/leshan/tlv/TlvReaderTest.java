@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.tlv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.leshan.tlv.Tlv.TlvType;
+import org.eclipse.leshan.util.Hex;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link TlvReader}
+ */
+public class TlvReaderTest {
+
+    // the /3// from liwblwm2m
+    private static final String DEVICE = "C800144F70656E204D6F62696C6520416C6C69616E6365C801164C69676874776569676874204D324D20436C69656E74C80209333435303030313233C303312E30860641000141010588070842000ED842011388870841007D42010384C10964C10A0F830B410000C40D5182428FC60E2B30323A3030C10F55";
+
+    @Test
+    public void read_device_object_like_the_decoder() throws TlvException {
+        byte[] bytes = Hex.decodeHex(DEVICE.toCharArray());
+        Tlv[] tlvs = TlvDecoder.decode(ByteBuffer.wrap(bytes));
+
+        TlvReader reader = new TlvReader(ByteBuffer.wrap(bytes));
+        for (Tlv tlv : tlvs) {
+            assertTrue(reader.next());
+            assertEquals(tlv.getType(), reader.getType());
+            assertEquals(tlv.getIdentifier(), reader.getIdentifier());
+            if (tlv.getChildren() != null) {
+                reader.enter();
+                for (Tlv child : tlv.getChildren()) {
+                    assertTrue(reader.next());
+                    assertEquals(child.getIdentifier(), reader.getIdentifier());
+                    assertArrayEquals(child.getValue(), reader.getBytes());
+                }
+                assertFalse(reader.next());
+                reader.exit();
+            } else {
+                assertArrayEquals(tlv.getValue(), reader.getBytes());
+            }
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void read_values_in_place() throws TlvException {
+        // resource 0: string "abc", resource 1: integer -2 on 2 bytes, resource 2: float 1.5, resource 3: opaque
+        byte[] bytes = Hex.decodeHex("C300616263C201FFFEC4023FC00000C303010203".toCharArray());
+        TlvReader reader = new TlvReader(ByteBuffer.wrap(bytes));
+
+        assertTrue(reader.next());
+        assertEquals("abc", reader.getString());
+        assertTrue(reader.next());
+        assertEquals(-2, reader.getInteger());
+        assertTrue(reader.next());
+        assertEquals(1.5, reader.getFloat(), 0);
+        assertTrue(reader.next());
+        ByteBuffer opaque = reader.getOpaque();
+        assertEquals(3, opaque.remaining());
+        assertEquals(1, opaque.get(0));
+        assertTrue(opaque.isReadOnly());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void read_24_bits_length() throws TlvException {
+        byte[] bytes = new byte[5 + 70000];
+        bytes[0] = (byte) 0b1101_1000;
+        bytes[1] = 1;
+        bytes[2] = 0x01;
+        bytes[3] = 0x11;
+        bytes[4] = 0x70;
+        TlvReader reader = new TlvReader(ByteBuffer.wrap(bytes));
+
+        assertTrue(reader.next());
+        assertEquals(70000, reader.getLength());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void value_exceeding_the_content_is_invalid() {
+        // 2 bytes expected for the multiple resource but only one in the content
+        byte[] bytes = Hex.decodeHex("C8050241".toCharArray());
+        try {
+            new TlvReader(ByteBuffer.wrap(bytes)).next();
+            fail();
+        } catch (TlvException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * A task measured by the main-method benchmarks: its duration and the heap it allocates, with the standard
+ * {@link Runtime} and garbage collector management APIs only.
+ * <p>
+ * The allocations are the heap growth over a batch of runs during which no collection happened, so a batch must fit in
+ * the young generation. Run the benchmarks with a fixed heap size and without thread-local allocation buffers, which
+ * round the heap growth up to their size (e.g. <code>-Xms1g -Xmx1g -XX:-UseTLAB</code> on HotSpot).
+ * </p>
+ */
+public abstract class BenchmarkTask {
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    // keeps the results reachable, so that the runs are not optimized away
+    private static volatile Object sink;
+
+    /**
+     * @return the result of the run
+     */
+    protected abstract Object run() throws Exception;
+
+    /**
+     * @return the mean duration of a run in microseconds
+     */
+    public double micros(int runs) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            sink = run();
+        }
+        return (System.nanoTime() - start) / 1000.0 / runs;
+    }
+
+    /**
+     * @return the mean number of bytes allocated by a run, -1 if a collection happened during each attempt
+     */
+    public long bytes(int runs) throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long before = usedHeap();
+            long collections = collections();
+            for (int i = 0; i < runs; i++) {
+                sink = run();
+            }
+            long after = runtime.totalMemory() - runtime.freeMemory();
+            if (collections() == collections) {
+                return (after - before) / runs;
+            }
+        }
+        return -1;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 2; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+}
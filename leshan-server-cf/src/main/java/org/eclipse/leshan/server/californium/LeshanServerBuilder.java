@@ -27,6 +27,9 @@ import org.eclipse.leshan.server.impl.SecurityRegistryImpl;
 import org.eclipse.leshan.server.model.LwM2mModelProvider;
 import org.eclipse.leshan.server.model.StandardModelProvider;
 import org.eclipse.leshan.server.observation.ObservationRegistry;
+import org.eclipse.leshan.server.registration.RandomRegistrationIdGenerator;
+import org.eclipse.leshan.server.registration.RegistrationAdmissionController;
+import org.eclipse.leshan.server.registration.RegistrationIdGenerator;
 import org.eclipse.leshan.server.security.SecurityRegistry;
 
 /**
@@ -48,6 +51,9 @@ public class LeshanServerBuilder {
     private LwM2mModelProvider modelProvider;
     private InetSocketAddress localAddress;
     private InetSocketAddress localAddressSecure;
+    private RegistrationAdmissionController admissionController;
+    private boolean renewEquivalentRegistrations;
+    private RegistrationIdGenerator registrationIdGenerator;
 
     public LeshanServerBuilder setLocalAddress(String hostname, int port) {
         this.localAddress = new InetSocketAddress(hostname, port);
@@ -89,6 +95,32 @@ public class LeshanServerBuilder {
         return this;
     }
 
+    /**
+     * Limits the registration rate, by default all the registrations are admitted.
+     */
+    public LeshanServerBuilder setRegistrationAdmissionController(RegistrationAdmissionController admissionController) {
+        this.admissionController = admissionController;
+        return this;
+    }
+
+    /**
+     * When enabled, a client registering again from the same address with the same parameters (e.g. a retransmitted
+     * register request) keeps its current registration and observations, which are only renewed. Disabled by default.
+     */
+    public LeshanServerBuilder setRenewEquivalentRegistrations(boolean renewEquivalentRegistrations) {
+        this.renewEquivalentRegistrations = renewEquivalentRegistrations;
+        return this;
+    }
+
+    /**
+     * Sets the generator of the registration ids, by default the ids are random, see
+     * {@link RandomRegistrationIdGenerator}.
+     */
+    public LeshanServerBuilder setRegistrationIdGenerator(RegistrationIdGenerator registrationIdGenerator) {
+        this.registrationIdGenerator = registrationIdGenerator;
+        return this;
+    }
+
     public LeshanServer build() {
         if (localAddress == null)
             localAddress = new InetSocketAddress((InetAddress) null, PORT);
@@ -100,10 +132,13 @@ public class LeshanServerBuilder {
             securityRegistry = new SecurityRegistryImpl();
         if (observationRegistry == null)
             observationRegistry = new ObservationRegistryImpl();
+        if (registrationIdGenerator == null)
+            registrationIdGenerator = new RandomRegistrationIdGenerator();
         if (modelProvider == null) {
             modelProvider = new StandardModelProvider();
         }
         return new LeshanServer(localAddress, localAddressSecure, clientRegistry, securityRegistry,
-                observationRegistry, modelProvider);
+                observationRegistry, modelProvider, admissionController, renewEquivalentRegistrations,
+                registrationIdGenerator);
     }
 }
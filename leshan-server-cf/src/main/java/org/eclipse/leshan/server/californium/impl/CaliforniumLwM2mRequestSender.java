@@ -16,6 +16,9 @@
 package org.eclipse.leshan.server.californium.impl;
 
 import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -26,6 +29,7 @@ import org.eclipse.californium.core.coap.MessageObserverAdapter;
 import org.eclipse.californium.core.coap.Request;
 import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.core.network.Endpoint;
+import org.eclipse.californium.core.network.EndpointObserver;
 import org.eclipse.leshan.core.model.LwM2mModel;
 import org.eclipse.leshan.core.request.DownlinkRequest;
 import org.eclipse.leshan.core.request.exception.RequestFailedException;
@@ -45,6 +49,10 @@ public class CaliforniumLwM2mRequestSender implements LwM2mRequestSender {
     private static final Logger LOG = LoggerFactory.getLogger(CaliforniumLwM2mRequestSender.class);
 
     private final Set<Endpoint> endpoints;
+
+    // rebuilt when an endpoint is started or stopped: the address of an endpoint bound to an ephemeral port is only
+    // known once the endpoint is started (visible for testing)
+    volatile Map<InetSocketAddress, Endpoint> endpointsByAddress;
     private final ObservationRegistry observationRegistry;
     private final LwM2mModelProvider modelProvider;
 
@@ -61,6 +69,34 @@ public class CaliforniumLwM2mRequestSender implements LwM2mRequestSender {
         this.observationRegistry = observationRegistry;
         this.endpoints = endpoints;
         this.modelProvider = modelProvider;
+
+        indexEndpoints();
+        EndpointObserver observer = new EndpointObserver() {
+            @Override
+            public void started(Endpoint endpoint) {
+                indexEndpoints();
+            }
+
+            @Override
+            public void stopped(Endpoint endpoint) {
+                indexEndpoints();
+            }
+
+            @Override
+            public void destroyed(Endpoint endpoint) {
+            }
+        };
+        for (Endpoint endpoint : endpoints) {
+            endpoint.addObserver(observer);
+        }
+    }
+
+    private synchronized void indexEndpoints() {
+        Map<InetSocketAddress, Endpoint> byAddress = new HashMap<>();
+        for (Endpoint endpoint : endpoints) {
+            byAddress.put(endpoint.getAddress(), endpoint);
+        }
+        endpointsByAddress = Collections.unmodifiableMap(byAddress);
     }
 
     @Override
@@ -129,18 +165,17 @@ public class CaliforniumLwM2mRequestSender implements LwM2mRequestSender {
      *
      * @param client the client
      * @return the CoAP endpoint bound to the same network address and port that the client connected to during
-     *         registration. If no such CoAP endpoint is available, the first CoAP endpoint from the list of registered
-     *         endpoints is returned
+     *         registration
+     * @throws IllegalStateException if no such CoAP endpoint is available
      */
-    private Endpoint getEndpointForClient(final Client client) {
-        for (final Endpoint ep : endpoints) {
-            final InetSocketAddress endpointAddress = ep.getAddress();
-            if (endpointAddress.equals(client.getRegistrationEndpointAddress())) {
-                return ep;
-            }
+    // visible for testing
+    Endpoint getEndpointForClient(final Client client) {
+        final InetSocketAddress address = client.getRegistrationEndpointAddress();
+        final Endpoint endpoint = endpointsByAddress.get(address);
+        if (endpoint == null) {
+            throw new IllegalStateException("can't find the client endpoint for address : " + address);
         }
-        throw new IllegalStateException("can't find the client endpoint for address : "
-                + client.getRegistrationEndpointAddress());
+        return endpoint;
     }
 
     // ////// Request Observer Class definition/////////////
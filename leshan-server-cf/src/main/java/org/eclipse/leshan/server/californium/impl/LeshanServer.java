@@ -45,7 +45,10 @@ import org.eclipse.leshan.server.client.ClientRegistry;
 import org.eclipse.leshan.server.client.ClientRegistryListener;
 import org.eclipse.leshan.server.model.LwM2mModelProvider;
 import org.eclipse.leshan.server.observation.ObservationRegistry;
+import org.eclipse.leshan.server.registration.RandomRegistrationIdGenerator;
+import org.eclipse.leshan.server.registration.RegistrationAdmissionController;
 import org.eclipse.leshan.server.registration.RegistrationHandler;
+import org.eclipse.leshan.server.registration.RegistrationIdGenerator;
 import org.eclipse.leshan.server.security.SecurityInfo;
 import org.eclipse.leshan.server.security.SecurityRegistry;
 import org.eclipse.leshan.util.Validate;
@@ -98,6 +101,29 @@ public class LeshanServer implements LwM2mServer {
     public LeshanServer(InetSocketAddress localAddress, InetSocketAddress localAddressSecure,
             final ClientRegistry clientRegistry, final SecurityRegistry securityRegistry,
             final ObservationRegistry observationRegistry, final LwM2mModelProvider modelProvider) {
+        this(localAddress, localAddressSecure, clientRegistry, securityRegistry, observationRegistry, modelProvider,
+                null, false, new RandomRegistrationIdGenerator());
+    }
+
+    /**
+     * Initialize a server which will bind to the specified address and port.
+     *
+     * @param localAddress the address to bind the CoAP server.
+     * @param localAddressSecure the address to bind the CoAP server for DTLS connection.
+     * @param clientRegistry the registered {@link Client} registry.
+     * @param securityRegistry the {@link SecurityInfo} registry.
+     * @param observationRegistry the {@link Observation} registry.
+     * @param modelProvider provides the objects description for each client.
+     * @param admissionController limits the registration rate, <code>null</code> to admit all the registrations.
+     * @param renewEquivalentRegistrations <code>true</code> to keep the registration and the observations of a client
+     *        registering again with the same parameters.
+     * @param registrationIdGenerator generates the ids of the new registrations.
+     */
+    public LeshanServer(InetSocketAddress localAddress, InetSocketAddress localAddressSecure,
+            final ClientRegistry clientRegistry, final SecurityRegistry securityRegistry,
+            final ObservationRegistry observationRegistry, final LwM2mModelProvider modelProvider,
+            final RegistrationAdmissionController admissionController, boolean renewEquivalentRegistrations,
+            final RegistrationIdGenerator registrationIdGenerator) {
         Validate.notNull(localAddress, "IP address cannot be null");
         Validate.notNull(localAddressSecure, "Secure IP address cannot be null");
         Validate.notNull(clientRegistry, "clientRegistry cannot be null");
@@ -156,7 +182,7 @@ public class LeshanServer implements LwM2mServer {
 
         // define /rd resource
         final RegisterResource rdResource = new RegisterResource(new RegistrationHandler(this.clientRegistry,
-                this.securityRegistry));
+                this.securityRegistry, renewEquivalentRegistrations, registrationIdGenerator), admissionController);
         coapServer.add(rdResource);
 
         // create sender
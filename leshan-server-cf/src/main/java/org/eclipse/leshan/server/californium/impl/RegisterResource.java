@@ -16,13 +16,7 @@
 package org.eclipse.leshan.server.californium.impl;
 
 import java.net.InetSocketAddress;
-import java.security.Principal;
-import java.security.PublicKey;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import javax.security.auth.x500.X500Principal;
 
 import org.eclipse.californium.core.CoapResource;
 import org.eclipse.californium.core.coap.CoAP.ResponseCode;
@@ -32,10 +26,6 @@ import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.core.network.Exchange;
 import org.eclipse.californium.core.server.resources.CoapExchange;
 import org.eclipse.californium.core.server.resources.Resource;
-import org.eclipse.californium.scandium.auth.PreSharedKeyIdentity;
-import org.eclipse.californium.scandium.auth.RawPublicKeyIdentity;
-import org.eclipse.leshan.LinkObject;
-import org.eclipse.leshan.core.request.BindingMode;
 import org.eclipse.leshan.core.request.DeregisterRequest;
 import org.eclipse.leshan.core.request.Identity;
 import org.eclipse.leshan.core.request.RegisterRequest;
@@ -44,6 +34,7 @@ import org.eclipse.leshan.core.response.DeregisterResponse;
 import org.eclipse.leshan.core.response.RegisterResponse;
 import org.eclipse.leshan.core.response.UpdateResponse;
 import org.eclipse.leshan.server.client.ClientRegistry;
+import org.eclipse.leshan.server.registration.RegistrationAdmissionController;
 import org.eclipse.leshan.server.registration.RegistrationHandler;
 import org.eclipse.leshan.util.Validate;
 import org.slf4j.Logger;
@@ -58,26 +49,32 @@ import org.slf4j.LoggerFactory;
  */
 public class RegisterResource extends CoapResource {
 
-    private static final String QUERY_PARAM_ENDPOINT = "ep=";
-
-    private static final String QUERY_PARAM_BINDING_MODE = "b=";
-
-    private static final String QUERY_PARAM_LWM2M_VERSION = "lwm2m=";
-
-    private static final String QUERY_PARAM_SMS = "sms=";
-
-    private static final String QUERY_PARAM_LIFETIME = "lt=";
-
     private static final Logger LOG = LoggerFactory.getLogger(RegisterResource.class);
 
     public static final String RESOURCE_NAME = "rd";
 
     private final RegistrationHandler registrationHandler;
 
+    // null if all the registrations are admitted
+    private final RegistrationAdmissionController admissionController;
+
+    private final RegistrationRequestParser parser = new RegistrationRequestParser();
+
     public RegisterResource(RegistrationHandler registrationHandler) {
+        this(registrationHandler, null);
+    }
+
+    /**
+     * @param registrationHandler the handler of the registration requests
+     * @param admissionController the controller limiting the registration rate, <code>null</code> to admit all the
+     *        registrations
+     */
+    public RegisterResource(RegistrationHandler registrationHandler,
+            RegistrationAdmissionController admissionController) {
         super(RESOURCE_NAME);
 
         this.registrationHandler = registrationHandler;
+        this.admissionController = admissionController;
         getAttributes().addResourceType("core.rd");
     }
 
@@ -136,6 +133,18 @@ public class RegisterResource extends CoapResource {
     }
 
     private void handleRegister(CoapExchange exchange, Request request) {
+        // Check the registration rate before doing any work
+        // --------------------------------
+        if (admissionController != null && !admissionController.admit(exchange.getSourceAddress())) {
+            LOG.debug("Registration from {} rejected by the admission control", exchange.getSourceAddress());
+            if (admissionController.isRejectionAnswered()) {
+                Response response = new Response(ResponseCode.SERVICE_UNAVAILABLE);
+                response.getOptions().setMaxAge(admissionController.nextRetryAfter());
+                exchange.respond(response);
+            }
+            return;
+        }
+
         // Get identity
         // --------------------------------
         Identity sender = extractIdentity(exchange);
@@ -143,33 +152,14 @@ public class RegisterResource extends CoapResource {
         // Create LwM2m request from CoAP request
         // --------------------------------
         // TODO: assert content media type is APPLICATION LINK FORMAT?
-        String endpoint = null;
-        Long lifetime = null;
-        String smsNumber = null;
-        String lwVersion = null;
-        BindingMode binding = null;
-        LinkObject[] objectLinks = null;
-        // Get parameters
-        for (String param : request.getOptions().getUriQuery()) {
-            if (param.startsWith(QUERY_PARAM_ENDPOINT)) {
-                endpoint = param.substring(3);
-            } else if (param.startsWith(QUERY_PARAM_LIFETIME)) {
-                lifetime = Long.valueOf(param.substring(3));
-            } else if (param.startsWith(QUERY_PARAM_SMS)) {
-                smsNumber = param.substring(4);
-            } else if (param.startsWith(QUERY_PARAM_LWM2M_VERSION)) {
-                lwVersion = param.substring(6);
-            } else if (param.startsWith(QUERY_PARAM_BINDING_MODE)) {
-                binding = BindingMode.valueOf(param.substring(2));
-            }
-        }
-        // Get object Links
-        if (request.getPayload() != null) {
-            objectLinks = LinkObject.parse(request.getPayload());
+        RegisterRequest registerRequest;
+        try {
+            registerRequest = parser.parseRegister(request.getOptions().getUriQuery(), request.getPayload());
+        } catch (IllegalArgumentException e) {
+            LOG.debug("Invalid registration: {}", e.getMessage());
+            exchange.respond(ResponseCode.BAD_REQUEST, e.getMessage());
+            return;
         }
-        // Create request
-        RegisterRequest registerRequest = new RegisterRequest(endpoint, lifetime, lwVersion, binding, smsNumber,
-                objectLinks);
 
         // Handle request
         // -------------------------------
@@ -191,23 +181,15 @@ public class RegisterResource extends CoapResource {
         Identity sender = extractIdentity(exchange);
 
         // Create LwM2m request from CoAP request
-        Long lifetime = null;
-        String smsNumber = null;
-        BindingMode binding = null;
-        LinkObject[] objectLinks = null;
-        for (String param : request.getOptions().getUriQuery()) {
-            if (param.startsWith(QUERY_PARAM_LIFETIME)) {
-                lifetime = Long.valueOf(param.substring(3));
-            } else if (param.startsWith(QUERY_PARAM_SMS)) {
-                smsNumber = param.substring(4);
-            } else if (param.startsWith(QUERY_PARAM_BINDING_MODE)) {
-                binding = BindingMode.valueOf(param.substring(2));
-            }
-        }
-        if (request.getPayload() != null && request.getPayload().length > 0) {
-            objectLinks = LinkObject.parse(request.getPayload());
+        UpdateRequest updateRequest;
+        try {
+            updateRequest = parser.parseUpdate(registrationId, request.getOptions().getUriQuery(),
+                    request.getPayload());
+        } catch (IllegalArgumentException e) {
+            LOG.debug("Invalid registration update: {}", e.getMessage());
+            exchange.respond(ResponseCode.BAD_REQUEST, e.getMessage());
+            return;
         }
-        UpdateRequest updateRequest = new UpdateRequest(registrationId, lifetime, smsNumber, binding, objectLinks);
 
         // Handle request
         UpdateResponse updateResponse = registrationHandler.update(sender, updateRequest);
@@ -232,26 +214,7 @@ public class RegisterResource extends CoapResource {
 
     private Identity extractIdentity(CoapExchange exchange) {
         InetSocketAddress peerAddress = new InetSocketAddress(exchange.getSourceAddress(), exchange.getSourcePort());
-
-        Principal senderIdentity = exchange.advanced().getRequest().getSenderIdentity();
-        if (senderIdentity != null) {
-            if (senderIdentity instanceof PreSharedKeyIdentity) {
-                return Identity.psk(peerAddress, senderIdentity.getName());
-            } else if (senderIdentity instanceof RawPublicKeyIdentity) {
-                PublicKey publicKey = ((RawPublicKeyIdentity) senderIdentity).getKey();
-                return Identity.rpk(peerAddress, publicKey);
-            } else if (senderIdentity instanceof X500Principal) {
-                // Extract common name
-                Matcher endpointMatcher = Pattern.compile("CN=.*?,").matcher(senderIdentity.getName());
-                if (endpointMatcher.find()) {
-                    String x509CommonName = endpointMatcher.group().substring(3, endpointMatcher.group().length() - 1);
-                    return Identity.x509(peerAddress, x509CommonName);
-                } else {
-                    return null;
-                }
-            }
-        }
-        return Identity.unsecure(peerAddress);
+        return parser.extractIdentity(peerAddress, exchange.advanced().getRequest().getSenderIdentity());
     }
 
     // TODO leshan-code-cf: this code should be factorize in a leshan-core-cf project.
@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.impl;
+
+import java.net.InetSocketAddress;
+import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.eclipse.californium.scandium.auth.PreSharedKeyIdentity;
+import org.eclipse.californium.scandium.auth.RawPublicKeyIdentity;
+import org.eclipse.leshan.LinkObject;
+import org.eclipse.leshan.LinkObjectCache;
+import org.eclipse.leshan.core.request.BindingMode;
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.core.request.RegisterRequest;
+import org.eclipse.leshan.core.request.UpdateRequest;
+
+/**
+ * Builds the registration requests from the CoAP requests sent to the "/rd" resource.
+ * <p>
+ * The URI queries are matched and converted in place, without intermediate strings for the keys, the lifetime and the
+ * binding mode. The invalid parameters are reported with an {@link IllegalArgumentException} instead of failing the
+ * request handling.
+ * </p>
+ */
+class RegistrationRequestParser {
+
+    private static final int MAX_CACHED_LINK_PAYLOADS = 1000;
+
+    private static final int MAX_CACHED_PRINCIPALS = 10000;
+
+    // the maximum lifetime is about 136 years
+    private static final long MAX_LIFETIME = 0xFFFFFFFFL;
+
+    private static final BindingMode[] BINDING_MODES = BindingMode.values();
+
+    // the parameters present in a request
+    private static final int ENDPOINT = 1;
+    private static final int LIFETIME = 1 << 1;
+    private static final int SMS = 1 << 2;
+    private static final int LWM2M_VERSION = 1 << 3;
+    private static final int BINDING_MODE = 1 << 4;
+
+    // the devices of a fleet send the same object links: parse each distinct payload once
+    private final LinkObjectCache linkObjectCache = new LinkObjectCache(MAX_CACHED_LINK_PAYLOADS);
+
+    // the X.509 principal of a DTLS session is used by all its requests: extract its common name once
+    private final Map<X500Principal, String> commonNames = new LinkedHashMap<X500Principal, String>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<X500Principal, String> eldest) {
+            return size() > MAX_CACHED_PRINCIPALS;
+        }
+    };
+
+    /**
+     * @param queries the URI queries of the register request
+     * @param payload the object links, may be <code>null</code>
+     * @return the register request
+     * @throws IllegalArgumentException if a parameter is invalid
+     */
+    public RegisterRequest parseRegister(List<String> queries, byte[] payload) {
+        String endpoint = null;
+        Long lifetime = null;
+        String smsNumber = null;
+        String lwVersion = null;
+        BindingMode binding = null;
+        int present = 0;
+        for (String query : queries) {
+            int parameter = parameter(query);
+            if (parameter == 0) {
+                continue;
+            }
+            if ((present & parameter) != 0) {
+                throw new IllegalArgumentException("Duplicate parameter: " + query);
+            }
+            present |= parameter;
+
+            switch (parameter) {
+            case ENDPOINT:
+                endpoint = query.substring(3);
+                if (endpoint.isEmpty()) {
+                    throw new IllegalArgumentException("Empty endpoint name");
+                }
+                break;
+            case LIFETIME:
+                lifetime = parseLifetime(query, 3);
+                break;
+            case SMS:
+                smsNumber = query.substring(4);
+                break;
+            case LWM2M_VERSION:
+                lwVersion = query.substring(6);
+                break;
+            case BINDING_MODE:
+                binding = parseBindingMode(query, 2);
+                break;
+            }
+        }
+        if (endpoint == null) {
+            throw new IllegalArgumentException("Missing endpoint name");
+        }
+
+        LinkObject[] objectLinks = payload != null ? linkObjectCache.parse(payload) : null;
+        return new RegisterRequest(endpoint, lifetime, lwVersion, binding, smsNumber, objectLinks);
+    }
+
+    /**
+     * @param registrationId the registration id from the URI path
+     * @param queries the URI queries of the update request
+     * @param payload the new object links, may be <code>null</code> or empty if the object links are unchanged
+     * @return the update request
+     * @throws IllegalArgumentException if a parameter is invalid
+     */
+    public UpdateRequest parseUpdate(String registrationId, List<String> queries, byte[] payload) {
+        Long lifetime = null;
+        String smsNumber = null;
+        BindingMode binding = null;
+        int present = 0;
+        for (String query : queries) {
+            int parameter = parameter(query);
+            // the end-point name and the version can not be updated
+            if (parameter == 0 || parameter == ENDPOINT || parameter == LWM2M_VERSION) {
+                continue;
+            }
+            if ((present & parameter) != 0) {
+                throw new IllegalArgumentException("Duplicate parameter: " + query);
+            }
+            present |= parameter;
+
+            switch (parameter) {
+            case LIFETIME:
+                lifetime = parseLifetime(query, 3);
+                break;
+            case SMS:
+                smsNumber = query.substring(4);
+                break;
+            case BINDING_MODE:
+                binding = parseBindingMode(query, 2);
+                break;
+            }
+        }
+
+        LinkObject[] objectLinks = payload != null && payload.length > 0 ? linkObjectCache.parse(payload) : null;
+        return new UpdateRequest(registrationId, lifetime, smsNumber, binding, objectLinks);
+    }
+
+    // returns the known parameter of the query or 0
+    private static int parameter(String query) {
+        switch (query.indexOf('=')) {
+        case 1:
+            return query.charAt(0) == 'b' ? BINDING_MODE : 0;
+        case 2:
+            if (query.startsWith("ep")) {
+                return ENDPOINT;
+            }
+            return query.startsWith("lt") ? LIFETIME : 0;
+        case 3:
+            return query.startsWith("sms") ? SMS : 0;
+        case 5:
+            return query.startsWith("lwm2m") ? LWM2M_VERSION : 0;
+        default:
+            return 0;
+        }
+    }
+
+    private static long parseLifetime(String query, int start) {
+        int end = query.length();
+        if (start == end || end - start > 10) {
+            throw new IllegalArgumentException("Invalid lifetime: " + query);
+        }
+        long lifetime = 0;
+        for (int i = start; i < end; i++) {
+            char c = query.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Invalid lifetime: " + query);
+            }
+            lifetime = lifetime * 10 + (c - '0');
+        }
+        if (lifetime == 0 || lifetime > MAX_LIFETIME) {
+            throw new IllegalArgumentException("Invalid lifetime: " + query);
+        }
+        return lifetime;
+    }
+
+    private static BindingMode parseBindingMode(String query, int start) {
+        int length = query.length() - start;
+        for (BindingMode binding : BINDING_MODES) {
+            String name = binding.name();
+            if (name.length() == length && query.startsWith(name, start)) {
+                return binding;
+            }
+        }
+        throw new IllegalArgumentException("Invalid binding mode: " + query);
+    }
+
+    /**
+     * @param peerAddress the address of the client
+     * @param principal the principal of the DTLS session, <code>null</code> for a non secure request
+     * @return the identity of the client or <code>null</code> if the common name of the X.509 certificate is missing
+     */
+    public Identity extractIdentity(InetSocketAddress peerAddress, Principal principal) {
+        if (principal instanceof PreSharedKeyIdentity) {
+            return Identity.psk(peerAddress, principal.getName());
+        } else if (principal instanceof RawPublicKeyIdentity) {
+            return Identity.rpk(peerAddress, ((RawPublicKeyIdentity) principal).getKey());
+        } else if (principal instanceof X500Principal) {
+            String x509CommonName = commonName((X500Principal) principal);
+            return x509CommonName == null ? null : Identity.x509(peerAddress, x509CommonName);
+        }
+        return Identity.unsecure(peerAddress);
+    }
+
+    private String commonName(X500Principal principal) {
+        synchronized (commonNames) {
+            String commonName = commonNames.get(principal);
+            if (commonName != null) {
+                return commonName;
+            }
+        }
+        String commonName = parseCommonName(principal.getName());
+        if (commonName != null) {
+            synchronized (commonNames) {
+                commonNames.put(principal, commonName);
+            }
+        }
+        return commonName;
+    }
+
+    /**
+     * Returns the (escaped) value of the first CN attribute of a RFC 2253 distinguished name.
+     */
+    static String parseCommonName(String name) {
+        int length = name.length();
+        int rdnStart = 0;
+        while (rdnStart < length) {
+            boolean commonName = name.startsWith("CN=", rdnStart);
+            int valueStart = rdnStart + 3;
+
+            // the attribute ends at the first unescaped separator
+            int end = rdnStart;
+            while (end < length) {
+                char c = name.charAt(end);
+                if (c == '\\') {
+                    end += 2;
+                    continue;
+                }
+                if (c == ',' || c == '+') {
+                    break;
+                }
+                end++;
+            }
+            end = Math.min(end, length);
+
+            if (commonName) {
+                return name.substring(valueStart, end);
+            }
+            rdnStart = end + 1;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.impl;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.californium.core.network.CoapEndpoint;
+import org.eclipse.californium.core.network.Endpoint;
+import org.eclipse.leshan.server.client.Client;
+import org.eclipse.leshan.server.impl.ObservationRegistryImpl;
+import org.eclipse.leshan.server.model.StandardModelProvider;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CaliforniumLwM2mRequestSenderTest {
+
+    private List<Endpoint> endpoints;
+    private CaliforniumLwM2mRequestSender sender;
+
+    @Before
+    public void setUp() throws Exception {
+        endpoints = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            // ephemeral ports: the addresses are only known once started
+            endpoints.add(new CoapEndpoint(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)));
+        }
+        sender = new CaliforniumLwM2mRequestSender(new HashSet<>(endpoints), new ObservationRegistryImpl(),
+                new StandardModelProvider());
+        for (Endpoint endpoint : endpoints) {
+            endpoint.start();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (Endpoint endpoint : endpoints) {
+            endpoint.destroy();
+        }
+    }
+
+    @Test
+    public void endpoint_is_found_by_registration_address() {
+        for (Endpoint endpoint : endpoints) {
+            Assert.assertSame(endpoint, sender.getEndpointForClient(clientRegisteredOn(endpoint.getAddress())));
+        }
+    }
+
+    @Test
+    public void missing_endpoint_does_not_rebuild_the_index() throws Exception {
+        Map<InetSocketAddress, Endpoint> index = sender.endpointsByAddress;
+        Endpoint stopped = endpoints.get(2);
+        Client client = clientRegisteredOn(stopped.getAddress());
+
+        stopped.stop();
+        Assert.assertNotSame(index, sender.endpointsByAddress);
+        index = sender.endpointsByAddress;
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                sender.getEndpointForClient(client);
+                Assert.fail("the endpoint should not be found");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            Assert.assertSame(index, sender.endpointsByAddress);
+        }
+        Assert.assertSame(endpoints.get(3), sender.getEndpointForClient(clientRegisteredOn(endpoints.get(3)
+                .getAddress())));
+    }
+
+    private Client clientRegisteredOn(InetSocketAddress registrationAddress) {
+        return new Client("ID", "urn:client", InetAddress.getLoopbackAddress(), 10000, "1.0", 10000L, null, null,
+                null, registrationAddress);
+    }
+}
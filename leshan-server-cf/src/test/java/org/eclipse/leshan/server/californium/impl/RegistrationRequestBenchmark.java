@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.impl;
+
+import java.net.InetSocketAddress;
+import java.security.KeyPairGenerator;
+import java.security.Principal;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.eclipse.californium.scandium.auth.PreSharedKeyIdentity;
+import org.eclipse.californium.scandium.auth.RawPublicKeyIdentity;
+import org.eclipse.leshan.LinkObject;
+import org.eclipse.leshan.core.request.BindingMode;
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.core.request.RegisterRequest;
+import org.eclipse.leshan.core.request.UpdateRequest;
+import org.eclipse.leshan.server.impl.ClientRegistryImpl;
+import org.eclipse.leshan.server.registration.RegistrationHandler;
+import org.eclipse.leshan.server.security.SecurityInfo;
+import org.eclipse.leshan.server.security.SecurityStore;
+import org.eclipse.leshan.util.Charsets;
+
+/**
+ * Compares the handling of PSK, RPK and X.509 register and update requests by {@link RegistrationRequestParser} with
+ * the previous prefix matching and regex based code. The requests are handled by a {@link RegistrationHandler} backed
+ * by an in-memory registry, the CoAP layer is not involved.
+ * 
+ * This is not a unit test: run the <code>main</code> method manually.
+ */
+public class RegistrationRequestBenchmark {
+
+    private static final int ITERATIONS = 100000;
+
+    private static final String ENDPOINT = "urn:imei:350000000000001";
+
+    private static final List<String> REGISTER_QUERIES = Arrays.asList("ep=" + ENDPOINT, "lt=86400", "lwm2m=1.0",
+            "b=UQ");
+
+    private static final List<String> UPDATE_QUERIES = Arrays.asList("lt=86400", "b=UQ");
+
+    private static final byte[] LINKS = "</1/0>,</3/0>,</4/0>,</5>,</6/0>".getBytes(Charsets.UTF_8);
+
+    private static final InetSocketAddress PEER = new InetSocketAddress("10.0.0.1", 45000);
+
+    private static final InetSocketAddress SERVER = new InetSocketAddress("0.0.0.0", 5684);
+
+    public static void main(String[] args) throws Exception {
+        PublicKey publicKey = KeyPairGenerator.getInstance("EC").generateKeyPair().getPublic();
+
+        run("PSK", new PreSharedKeyIdentity("psk-" + ENDPOINT),
+                SecurityInfo.newPreSharedKeyInfo(ENDPOINT, "psk-" + ENDPOINT, new byte[16]));
+        run("RPK", new RawPublicKeyIdentity(publicKey), SecurityInfo.newRawPublicKeyInfo(ENDPOINT, publicKey));
+        run("X.509", new X500Principal("CN=" + ENDPOINT + ", OU=Devices, O=Eclipse, C=FR"),
+                SecurityInfo.newX509CertInfo(ENDPOINT));
+    }
+
+    private static void run(String mode, Principal principal, final SecurityInfo securityInfo) {
+        RegistrationHandler handler = new RegistrationHandler(new ClientRegistryImpl(), new SecurityStore() {
+            @Override
+            public SecurityInfo getByEndpoint(String endpoint) {
+                return securityInfo;
+            }
+
+            @Override
+            public SecurityInfo getByIdentity(String identity) {
+                return securityInfo;
+            }
+        });
+        RegistrationRequestParser parser = new RegistrationRequestParser();
+
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                Identity sender = legacyExtractIdentity(PEER, principal);
+                String registrationId = handler.register(sender, legacyParseRegister(REGISTER_QUERIES, LINKS),
+                        SERVER).getRegistrationID();
+                handler.update(legacyExtractIdentity(PEER, principal),
+                        legacyParseUpdate(registrationId, UPDATE_QUERIES, LINKS));
+            }
+            long legacy = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                Identity sender = parser.extractIdentity(PEER, principal);
+                String registrationId = handler.register(sender, parser.parseRegister(REGISTER_QUERIES, LINKS),
+                        SERVER).getRegistrationID();
+                handler.update(parser.extractIdentity(PEER, principal),
+                        parser.parseUpdate(registrationId, UPDATE_QUERIES, LINKS));
+            }
+            long current = System.nanoTime() - start;
+
+            System.out.printf("%s round %d: legacy %.2f us, parser %.2f us per register + update%n", mode, round,
+                    legacy / 1000.0 / ITERATIONS, current / 1000.0 / ITERATIONS);
+        }
+    }
+
+    // the code used up to now
+    private static RegisterRequest legacyParseRegister(List<String> queries, byte[] payload) {
+        String endpoint = null;
+        Long lifetime = null;
+        String smsNumber = null;
+        String lwVersion = null;
+        BindingMode binding = null;
+        for (String param : queries) {
+            if (param.startsWith("ep=")) {
+                endpoint = param.substring(3);
+            } else if (param.startsWith("lt=")) {
+                lifetime = Long.valueOf(param.substring(3));
+            } else if (param.startsWith("sms=")) {
+                smsNumber = param.substring(4);
+            } else if (param.startsWith("lwm2m=")) {
+                lwVersion = param.substring(6);
+            } else if (param.startsWith("b=")) {
+                binding = BindingMode.valueOf(param.substring(2));
+            }
+        }
+        return new RegisterRequest(endpoint, lifetime, lwVersion, binding, smsNumber, LinkObject.parse(payload));
+    }
+
+    private static UpdateRequest legacyParseUpdate(String registrationId, List<String> queries, byte[] payload) {
+        Long lifetime = null;
+        String smsNumber = null;
+        BindingMode binding = null;
+        for (String param : queries) {
+            if (param.startsWith("lt=")) {
+                lifetime = Long.valueOf(param.substring(3));
+            } else if (param.startsWith("sms=")) {
+                smsNumber = param.substring(4);
+            } else if (param.startsWith("b=")) {
+                binding = BindingMode.valueOf(param.substring(2));
+            }
+        }
+        return new UpdateRequest(registrationId, lifetime, smsNumber, binding, LinkObject.parse(payload));
+    }
+
+    private static Identity legacyExtractIdentity(InetSocketAddress peerAddress, Principal senderIdentity) {
+        if (senderIdentity instanceof PreSharedKeyIdentity) {
+            return Identity.psk(peerAddress, senderIdentity.getName());
+        } else if (senderIdentity instanceof RawPublicKeyIdentity) {
+            return Identity.rpk(peerAddress, ((RawPublicKeyIdentity) senderIdentity).getKey());
+        } else if (senderIdentity instanceof X500Principal) {
+            Matcher endpointMatcher = Pattern.compile("CN=.*?,").matcher(senderIdentity.getName());
+            if (endpointMatcher.find()) {
+                String x509CommonName = endpointMatcher.group().substring(3, endpointMatcher.group().length() - 1);
+                return Identity.x509(peerAddress, x509CommonName);
+            }
+            return null;
+        }
+        return Identity.unsecure(peerAddress);
+    }
+}
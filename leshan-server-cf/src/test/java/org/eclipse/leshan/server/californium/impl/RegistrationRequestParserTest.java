@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.impl;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.eclipse.californium.scandium.auth.PreSharedKeyIdentity;
+import org.eclipse.leshan.core.request.BindingMode;
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.core.request.RegisterRequest;
+import org.eclipse.leshan.core.request.UpdateRequest;
+import org.eclipse.leshan.util.Charsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RegistrationRequestParserTest {
+
+    private final RegistrationRequestParser parser = new RegistrationRequestParser();
+
+    private final InetSocketAddress peerAddress = new InetSocketAddress("127.0.0.1", 5683);
+
+    @Test
+    public void parse_register_parameters() {
+        RegisterRequest request = parser.parseRegister(
+                Arrays.asList("ep=urn:imei:123", "lt=3600", "sms=+33612345678", "lwm2m=1.0", "b=UQ", "unknown=1"),
+                "</3/0>,</5>".getBytes(Charsets.UTF_8));
+
+        Assert.assertEquals("urn:imei:123", request.getEndpointName());
+        Assert.assertEquals(Long.valueOf(3600), request.getLifetime());
+        Assert.assertEquals("+33612345678", request.getSmsNumber());
+        Assert.assertEquals("1.0", request.getLwVersion());
+        Assert.assertEquals(BindingMode.UQ, request.getBindingMode());
+        Assert.assertEquals(2, request.getObjectLinks().length);
+    }
+
+    @Test
+    public void parse_update_parameters() {
+        UpdateRequest request = parser.parseUpdate("4711", Arrays.asList("lt=60", "b=U", "ep=ignored"), new byte[0]);
+
+        Assert.assertEquals("4711", request.getRegistrationId());
+        Assert.assertEquals(Long.valueOf(60), request.getLifeTimeInSec());
+        Assert.assertEquals(BindingMode.U, request.getBindingMode());
+        Assert.assertNull(request.getSmsNumber());
+        Assert.assertNull(request.getObjectLinks());
+    }
+
+    @Test
+    public void reject_invalid_parameters() {
+        assertInvalidRegister("ep=urn:test", "lt=abc");
+        assertInvalidRegister("ep=urn:test", "lt=0");
+        assertInvalidRegister("ep=urn:test", "lt=99999999999");
+        assertInvalidRegister("ep=urn:test", "b=X");
+        assertInvalidRegister("ep=urn:test", "b=");
+        assertInvalidRegister("ep=urn:test", "ep=urn:other");
+        assertInvalidRegister("ep=");
+        assertInvalidRegister("lt=60");
+    }
+
+    private void assertInvalidRegister(String... queries) {
+        try {
+            parser.parseRegister(Arrays.asList(queries), null);
+            Assert.fail("invalid parameters accepted: " + Arrays.toString(queries));
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void parse_x509_common_name() {
+        Assert.assertEquals("urn:test", RegistrationRequestParser.parseCommonName("CN=urn:test,O=Eclipse,C=FR"));
+        Assert.assertEquals("urn:test", RegistrationRequestParser.parseCommonName("O=Eclipse,CN=urn:test"));
+        Assert.assertEquals("a\\,b", RegistrationRequestParser.parseCommonName("OU=x\\,CN=y,CN=a\\,b,C=FR"));
+        Assert.assertEquals("urn:test", RegistrationRequestParser.parseCommonName("OU=x+CN=urn:test,C=FR"));
+        Assert.assertNull(RegistrationRequestParser.parseCommonName("O=Eclipse,C=FR"));
+    }
+
+    @Test
+    public void extract_identities() {
+        Identity psk = parser.extractIdentity(peerAddress, new PreSharedKeyIdentity("client1"));
+        Assert.assertEquals("client1", psk.getPskIdentity());
+
+        X500Principal principal = new X500Principal("CN=urn:test, O=Eclipse");
+        Assert.assertEquals("urn:test", parser.extractIdentity(peerAddress, principal).getX509CommonName());
+        Assert.assertEquals("urn:test", parser.extractIdentity(peerAddress, principal).getX509CommonName());
+        Assert.assertNull(parser.extractIdentity(peerAddress, new X500Principal("O=Eclipse")));
+
+        Assert.assertFalse(parser.extractIdentity(peerAddress, null).isSecure());
+        Assert.assertNull(parser.parseRegister(Collections.singletonList("ep=urn:test"), null).getObjectLinks());
+    }
+}
@@ -23,18 +23,30 @@ import java.util.Date;
 
 import org.eclipse.leshan.LinkObject;
 import org.eclipse.leshan.core.request.BindingMode;
+import org.eclipse.leshan.util.Interner;
 import org.eclipse.leshan.util.Validate;
 
 /**
- * An immutable structure which represent a LW-M2M client registered on the server
+ * An immutable structure which represent a LW-M2M client registered on the server.
+ * <p>
+ * The only exception is the last update time, which is refreshed in place by the registration updates which do not
+ * change anything else (see {@link ClientUpdate#isKeepAlive(Client)}).
+ * </p>
  */
 public class Client {
 
-    private static final long DEFAULT_LIFETIME_IN_SEC = 86400L;
+    /** The lifetime of a registration which does not specify it */
+    public static final long DEFAULT_LIFETIME_IN_SEC = 86400L;
 
-    private static final String DEFAULT_LWM2M_VERSION = "1.0";
+    /** The LWM2M version of a registration which does not specify it */
+    public static final String DEFAULT_LWM2M_VERSION = "1.0";
 
-    private final Date registrationDate;
+    // the clients of a fleet usually register the same objects and support the same version: the identical values
+    // are shared between clients
+    private static final Interner<ObjectLinks> OBJECT_LINKS = new Interner<>(10000);
+    private static final Interner<String> VERSIONS = new Interner<>(100);
+
+    private final long registrationDate;
 
     private final InetAddress address;
 
@@ -65,7 +77,7 @@ public class Client {
     /** The location where LWM2M objects are hosted on the device */
     private final String rootPath;
 
-    private final Date lastUpdate;
+    private volatile long lastUpdate;
 
     public Client(String registrationId, String endpoint, InetAddress address, int port,
             InetSocketAddress registrationEndpointAddress) {
@@ -93,7 +105,7 @@ public class Client {
         this.address = address;
         this.port = port;
 
-        this.objectLinks = objectLinks;
+        this.objectLinks = objectLinks == null ? null : OBJECT_LINKS.intern(new ObjectLinks(objectLinks)).links;
 
         // extract the root objects path from the object links
         String rootPath = "/";
@@ -107,13 +119,14 @@ public class Client {
         }
         this.rootPath = rootPath;
 
-        this.registrationDate = registrationDate == null ? new Date() : registrationDate;
+        long now = System.currentTimeMillis();
+        this.registrationDate = registrationDate == null ? now : registrationDate.getTime();
         this.lifeTimeInSec = lifetimeInSec == null ? DEFAULT_LIFETIME_IN_SEC : lifetimeInSec;
-        this.lwM2mVersion = lwM2mVersion == null ? DEFAULT_LWM2M_VERSION : lwM2mVersion;
+        this.lwM2mVersion = lwM2mVersion == null ? DEFAULT_LWM2M_VERSION : VERSIONS.intern(lwM2mVersion);
         this.bindingMode = bindingMode == null ? BindingMode.U : bindingMode;
         this.smsNumber = smsNumber;
         this.registrationEndpointAddress = registrationEndpointAddress;
-        this.lastUpdate = lastUpdate == null ? new Date() : lastUpdate;
+        this.lastUpdate = lastUpdate == null ? now : lastUpdate.getTime();
     }
 
     public String getRegistrationId() {
@@ -121,7 +134,7 @@ public class Client {
     }
 
     public Date getRegistrationDate() {
-        return registrationDate;
+        return new Date(registrationDate);
     }
 
     /**
@@ -159,6 +172,9 @@ public class Client {
         return registrationEndpointAddress;
     }
 
+    /**
+     * @return the object links, this array may be shared with other clients and must not be modified
+     */
     public LinkObject[] getObjectLinks() {
         return objectLinks;
     }
@@ -268,19 +284,39 @@ public class Client {
     }
 
     public Date getLastUpdate() {
+        return new Date(lastUpdate);
+    }
+
+    /**
+     * @return the time in milliseconds of the registration or of its last update
+     */
+    public long getLastUpdateTime() {
         return lastUpdate;
     }
 
+    // refreshes the registration time-to-live
+    void touch(long time) {
+        lastUpdate = time;
+    }
+
+    /**
+     * @return the time in milliseconds at which the registration expires if it is not updated
+     */
+    public long getExpirationTime() {
+        return lastUpdate + lifeTimeInSec * 1000;
+    }
+
     public boolean isAlive() {
-        return lastUpdate.getTime() + lifeTimeInSec * 1000 > System.currentTimeMillis();
+        return getExpirationTime() > System.currentTimeMillis();
     }
 
     @Override
     public String toString() {
         return String
                 .format("Client [registrationDate=%s, address=%s, port=%s, registrationEndpoint=%s, lifeTimeInSec=%s, smsNumber=%s, lwM2mVersion=%s, bindingMode=%s, endpoint=%s, registrationId=%s, objectLinks=%s, lastUpdate=%s]",
-                        registrationDate, address, port, registrationEndpointAddress, lifeTimeInSec, smsNumber,
-                        lwM2mVersion, bindingMode, endpoint, registrationId, Arrays.toString(objectLinks), lastUpdate);
+                        getRegistrationDate(), address, port, registrationEndpointAddress, lifeTimeInSec, smsNumber,
+                        lwM2mVersion, bindingMode, endpoint, registrationId, Arrays.toString(objectLinks),
+                        getLastUpdate());
     }
 
     /**
@@ -308,4 +344,25 @@ public class Client {
             return false;
         }
     }
+
+    // gives an array a value semantic, for interning
+    private static final class ObjectLinks {
+        private final LinkObject[] links;
+        private final int hashCode;
+
+        private ObjectLinks(LinkObject[] links) {
+            this.links = links;
+            this.hashCode = Arrays.hashCode(links);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ObjectLinks && Arrays.equals(links, ((ObjectLinks) obj).links);
+        }
+    }
 }
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.client;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.eclipse.leshan.LinkObject;
+import org.eclipse.leshan.core.request.BindingMode;
+
+/**
+ * Criteria selecting registered clients, see {@link ClientRegistry#find(ClientQuery)}. A client matches the query if
+ * it matches all the criteria which are set.
+ */
+public class ClientQuery {
+
+    private final Set<Integer> objectIds = new LinkedHashSet<>();
+    private BindingMode bindingMode;
+    private Integer registrationPort;
+    private Long lastUpdateBefore;
+
+    /**
+     * Selects the clients exposing the given object. May be called several times to select the clients exposing all
+     * the given objects.
+     */
+    public ClientQuery withObjectId(int objectId) {
+        objectIds.add(objectId);
+        return this;
+    }
+
+    /**
+     * Selects the clients using the given binding mode.
+     */
+    public ClientQuery withBindingMode(BindingMode bindingMode) {
+        this.bindingMode = bindingMode;
+        return this;
+    }
+
+    /**
+     * Selects the clients registered on the server end point listening on the given port (e.g. the secure end point).
+     */
+    public ClientQuery withRegistrationPort(int port) {
+        this.registrationPort = port;
+        return this;
+    }
+
+    /**
+     * Selects the clients which have not updated their registration since the given time.
+     * 
+     * @param time a time in milliseconds
+     */
+    public ClientQuery withLastUpdateBefore(long time) {
+        this.lastUpdateBefore = time;
+        return this;
+    }
+
+    public Set<Integer> getObjectIds() {
+        return Collections.unmodifiableSet(objectIds);
+    }
+
+    public BindingMode getBindingMode() {
+        return bindingMode;
+    }
+
+    public Integer getRegistrationPort() {
+        return registrationPort;
+    }
+
+    public Long getLastUpdateBefore() {
+        return lastUpdateBefore;
+    }
+
+    /**
+     * @return <code>true</code> if the given client matches all the criteria of this query
+     */
+    public boolean matches(Client client) {
+        if (bindingMode != null && bindingMode != client.getBindingMode()) {
+            return false;
+        }
+        if (registrationPort != null && registrationPort != client.getRegistrationEndpointAddress().getPort()) {
+            return false;
+        }
+        if (lastUpdateBefore != null && client.getLastUpdateTime() >= lastUpdateBefore) {
+            return false;
+        }
+        for (Integer objectId : objectIds) {
+            if (!exposes(client, objectId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean exposes(Client client, Integer objectId) {
+        if (client.getObjectLinks() != null) {
+            for (LinkObject link : client.getObjectLinks()) {
+                if (objectId.equals(link.getObjectId())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ClientQuery [objectIds=%s, bindingMode=%s, registrationPort=%s, lastUpdateBefore=%s]",
+                objectIds, bindingMode, registrationPort, lastUpdateBefore);
+    }
+}
@@ -15,6 +15,7 @@
  *******************************************************************************/
 package org.eclipse.leshan.server.client;
 
+import java.net.InetSocketAddress;
 import java.util.Collection;
 
 /**
@@ -86,4 +87,20 @@ public interface ClientRegistry {
      * @return the matching client or <code>null</code> if not found
      */
     Client findByRegistrationId(String id);
+
+    /**
+     * Retrieves a registered client by the address and port it is currently communicating from.
+     * 
+     * @param address the peer address of the client
+     * @return the matching client or <code>null</code> if not found
+     */
+    Client findByAddress(InetSocketAddress address);
+
+    /**
+     * Retrieves the registered clients matching a query.
+     * 
+     * @param query the criteria selecting the clients
+     * @return the matching clients
+     */
+    Collection<Client> find(ClientQuery query);
 }
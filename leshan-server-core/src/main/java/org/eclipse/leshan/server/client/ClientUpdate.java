@@ -52,11 +52,20 @@ public class ClientUpdate {
 
     /**
      * Returns an updated version of the client.
+     * <p>
+     * A {@link #isKeepAlive(Client) keep-alive} update only refreshes the last update time of the given client, which is
+     * returned. Otherwise a new client is created.
+     * </p>
      * 
      * @param client the registered client
      * @return the updated client
      */
     public Client updateClient(Client client) {
+        if (isKeepAlive(client)) {
+            client.touch(System.currentTimeMillis());
+            return client;
+        }
+
         InetAddress address = this.address != null ? this.address : client.getAddress();
         int port = this.port != null ? this.port : client.getPort();
         LinkObject[] linkObject = this.objectLinks != null ? this.objectLinks : client.getObjectLinks();
@@ -73,6 +82,20 @@ public class ClientUpdate {
                 client.getRegistrationDate(), lastUpdate);
     }
 
+    /**
+     * @param client the registered client
+     * @return <code>true</code> if this update only extends the registration time-to-live, i.e. it does not change any
+     *         property of the client
+     */
+    public boolean isKeepAlive(Client client) {
+        return (address == null || address.equals(client.getAddress()))
+                && (port == null || port.intValue() == client.getPort())
+                && (lifeTimeInSec == null || lifeTimeInSec.longValue() == client.getLifeTimeInSec())
+                && (smsNumber == null || smsNumber.equals(client.getSmsNumber()))
+                && (bindingMode == null || bindingMode == client.getBindingMode())
+                && (objectLinks == null || Arrays.equals(objectLinks, client.getObjectLinks()));
+    }
+
     public String getRegistrationId() {
         return registrationId;
     }
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.leshan.server.Stoppable;
+import org.eclipse.leshan.server.client.Client;
+import org.eclipse.leshan.server.client.ClientRegistryListener;
+import org.eclipse.leshan.util.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link ClientRegistryListener} handing the registration events over to another listener from dedicated worker
+ * threads, so that a slow listener does not slow down the registration of the devices.
+ * <p>
+ * The events are stored in bounded queues, one per worker. All the events of an endpoint go to the same worker: they
+ * are delivered in the order they were produced. When a queue is full, the {@link OverflowPolicy} decides which event
+ * is dropped, or if the registry thread waits.
+ * </p>
+ */
+public class AsyncClientRegistryListener implements ClientRegistryListener, Stoppable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncClientRegistryListener.class);
+
+    /**
+     * What to do with a new event when the queue of its worker is full.
+     */
+    public enum OverflowPolicy {
+        /** the registry thread waits until the event can be queued */
+        BLOCK,
+        /** the new event is dropped */
+        DROP_NEWEST,
+        /** the oldest queued event is dropped to make room for the new one */
+        DROP_OLDEST
+    }
+
+    private enum EventType {
+        REGISTERED, UPDATED, UNREGISTERED
+    }
+
+    private static class Event {
+        private final EventType type;
+        private final Client client;
+        private final long timestamp;
+
+        private Event(EventType type, Client client) {
+            this.type = type;
+            this.client = client;
+            this.timestamp = System.nanoTime();
+        }
+    }
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final long DEFAULT_LAG_THRESHOLD_MS = 1000;
+
+    private final ClientRegistryListener delegate;
+    private final OverflowPolicy overflowPolicy;
+    private final long lagThresholdNanos;
+
+    private final BlockingQueue<Event>[] queues;
+    private final Thread[] workers;
+
+    private volatile boolean stopped = false;
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong laggingEvents = new AtomicLong();
+
+    /**
+     * Creates a listener with a single worker, a queue of 1024 events dropping the oldest events on overflow and
+     * counting the events delivered more than 1 second after they were produced as lagging.
+     * 
+     * @param delegate the listener to notify
+     */
+    public AsyncClientRegistryListener(ClientRegistryListener delegate) {
+        this(delegate, 1, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.DROP_OLDEST, DEFAULT_LAG_THRESHOLD_MS);
+    }
+
+    /**
+     * @param delegate the listener to notify
+     * @param workers the number of worker threads
+     * @param queueCapacity the maximum number of pending events per worker
+     * @param overflowPolicy what to do when the queue of a worker is full
+     * @param lagThresholdMs the delay after which a delivered event is counted as lagging
+     */
+    @SuppressWarnings("unchecked")
+    public AsyncClientRegistryListener(ClientRegistryListener delegate, int workers, int queueCapacity,
+            OverflowPolicy overflowPolicy, long lagThresholdMs) {
+        Validate.notNull(delegate);
+        Validate.notNull(overflowPolicy);
+        Validate.isTrue(workers > 0, "at least one worker is needed");
+        Validate.isTrue(queueCapacity > 0, "the queue capacity must be positive");
+
+        this.delegate = delegate;
+        this.overflowPolicy = overflowPolicy;
+        this.lagThresholdNanos = TimeUnit.MILLISECONDS.toNanos(lagThresholdMs);
+
+        this.queues = new BlockingQueue[workers];
+        this.workers = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            queues[i] = new ArrayBlockingQueue<>(queueCapacity);
+            this.workers[i] = new Thread(new Worker(queues[i]), "ClientRegistryListener dispatcher #" + i);
+            this.workers[i].setDaemon(true);
+            this.workers[i].start();
+        }
+    }
+
+    @Override
+    public void registered(Client client) {
+        dispatch(new Event(EventType.REGISTERED, client));
+    }
+
+    @Override
+    public void updated(Client clientUpdated) {
+        dispatch(new Event(EventType.UPDATED, clientUpdated));
+    }
+
+    @Override
+    public void unregistered(Client client) {
+        dispatch(new Event(EventType.UNREGISTERED, client));
+    }
+
+    private void dispatch(Event event) {
+        if (stopped) {
+            droppedEvents.incrementAndGet();
+            return;
+        }
+
+        BlockingQueue<Event> queue = queues[(event.client.getEndpoint().hashCode() & 0x7FFFFFFF) % queues.length];
+        switch (overflowPolicy) {
+        case BLOCK:
+            try {
+                queue.put(event);
+            } catch (InterruptedException e) {
+                droppedEvents.incrementAndGet();
+                Thread.currentThread().interrupt();
+            }
+            break;
+        case DROP_NEWEST:
+            if (!queue.offer(event)) {
+                droppedEvents.incrementAndGet();
+            }
+            break;
+        case DROP_OLDEST:
+            while (!queue.offer(event)) {
+                if (queue.poll() != null) {
+                    droppedEvents.incrementAndGet();
+                }
+            }
+            break;
+        }
+    }
+
+    private void deliver(Event event) {
+        if (System.nanoTime() - event.timestamp > lagThresholdNanos) {
+            laggingEvents.incrementAndGet();
+        }
+        try {
+            switch (event.type) {
+            case REGISTERED:
+                delegate.registered(event.client);
+                break;
+            case UPDATED:
+                delegate.updated(event.client);
+                break;
+            case UNREGISTERED:
+                delegate.unregistered(event.client);
+                break;
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to notify " + event.type + " event of client " + event.client.getEndpoint(), e);
+        }
+    }
+
+    /**
+     * @return the number of events which were not delivered because of a full queue or because the listener was
+     *         stopped
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * @return the number of events delivered later than the lag threshold
+     */
+    public long getLaggingEvents() {
+        return laggingEvents.get();
+    }
+
+    /**
+     * @return the number of events waiting to be delivered
+     */
+    public int getPendingEvents() {
+        int pending = 0;
+        for (BlockingQueue<Event> queue : queues) {
+            pending += queue.size();
+        }
+        return pending;
+    }
+
+    /**
+     * Stops the worker threads, the pending events are dropped.
+     */
+    @Override
+    public void stop() {
+        stopped = true;
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].interrupt();
+            droppedEvents.addAndGet(queues[i].size());
+            queues[i].clear();
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final BlockingQueue<Event> queue;
+
+        private Worker(BlockingQueue<Event> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                try {
+                    deliver(queue.take());
+                } catch (InterruptedException e) {
+                    // stopped
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -15,37 +15,123 @@
  *******************************************************************************/
 package org.eclipse.leshan.server.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import org.eclipse.leshan.LinkObject;
+import org.eclipse.leshan.LinkObjectCache;
+import org.eclipse.leshan.core.request.BindingMode;
+import org.eclipse.leshan.server.Destroyable;
 import org.eclipse.leshan.server.Startable;
 import org.eclipse.leshan.server.Stoppable;
 import org.eclipse.leshan.server.client.Client;
+import org.eclipse.leshan.server.client.ClientQuery;
 import org.eclipse.leshan.server.client.ClientRegistry;
 import org.eclipse.leshan.server.client.ClientRegistryListener;
 import org.eclipse.leshan.server.client.ClientUpdate;
+import org.eclipse.leshan.util.Charsets;
 import org.eclipse.leshan.util.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * In memory client registry
+ * In memory client registry.
+ * <p>
+ * The registrations can optionally be persisted into a {@link KeyValueJournal}: each registration, update and
+ * de-registration is appended to the file, which is compacted once most of its records are obsolete. A keep-alive
+ * update only appends a small record with the new last update time. On startup, the journal is replayed so that the
+ * clients do not have to register again, the registrations which expired in the meantime are then removed by the
+ * regular cleanup.
+ * </p>
  */
-public class ClientRegistryImpl implements ClientRegistry, Startable, Stoppable {
+public class ClientRegistryImpl implements ClientRegistry, Startable, Stoppable, Destroyable {
 
     private static final Logger LOG = LoggerFactory.getLogger(ClientRegistryImpl.class);
 
     private final Map<String /* end-point */, Client> clientsByEp = new ConcurrentHashMap<>();
 
+    private final Map<String /* registration id */, Client> clientsByRegId = new ConcurrentHashMap<>();
+
+    private final Map<InetSocketAddress /* peer address */, Client> clientsByAddress = new ConcurrentHashMap<>();
+
+    // the indexes for the queries, each value maps end-points to clients (visible for testing)
+    final Map<Integer /* object id */, Map<String, Client>> clientsByObjectId = new ConcurrentHashMap<>();
+
+    final Map<BindingMode, Map<String, Client>> clientsByBindingMode = new ConcurrentHashMap<>();
+
+    final Map<Integer /* server port */, Map<String, Client>> clientsByRegistrationPort = new ConcurrentHashMap<>();
+
+    // in last update order, for the idle clients queries
+    final ConcurrentNavigableMap<Long /* last update */, Map<String, Client>> clientsByLastUpdate =
+            new ConcurrentSkipListMap<>();
+
+    // guards the consistency between the indexes, lookups do not need it
+    private final Object indexLock = new Object();
+
+    // visible for testing
+    final ExpirationQueue expirationQueue = new ExpirationQueue();
+
     private final List<ClientRegistryListener> listeners = new CopyOnWriteArrayList<>();
 
+    // null if the registrations are not persisted
+    private KeyValueJournal<Client> journal;
+
+    private volatile boolean notifyKeepAlives = true;
+
+    /**
+     * Creates a registry keeping the registrations in memory only.
+     */
+    public ClientRegistryImpl() {
+    }
+
+    /**
+     * Creates a registry persisting the registrations into the given file, the registrations found in the file are
+     * restored.
+     * 
+     * @param filename the file path to persist the registrations
+     */
+    public ClientRegistryImpl(String filename) {
+        Validate.notEmpty(filename);
+
+        ClientSerializer serializer = new ClientSerializer();
+        KeyValueJournal<Client> journal = new KeyValueJournal<>(new File(filename), serializer, serializer);
+        try {
+            long start = System.currentTimeMillis();
+            // the journal is keyed by endpoint: replay it directly into the main index
+            journal.open(clientsByEp);
+            serializer.clearCache();
+            for (Client client : clientsByEp.values()) {
+                addToIndexes(client);
+            }
+            this.journal = journal;
+            LOG.info("{} registrations restored in {} ms", clientsByEp.size(), System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            // the failure may have happened while some clients were already indexed
+            clearIndexes();
+            LOG.warn("Could not restore registrations from file, they will not be persisted", e);
+        }
+    }
+
     @Override
     public void addListener(ClientRegistryListener listener) {
         listeners.add(listener);
@@ -56,6 +142,14 @@ public class ClientRegistryImpl implements ClientRegistry, Startable, Stoppable
         listeners.remove(listener);
     }
 
+    /**
+     * Sets whether the listeners are notified of the updates which only extend the registration time-to-live (see
+     * {@link ClientUpdate#isKeepAlive(Client)}). They are notified by default.
+     */
+    public void setNotifyKeepAlives(boolean notifyKeepAlives) {
+        this.notifyKeepAlives = notifyKeepAlives;
+    }
+
     @Override
     public Collection<Client> allClients() {
         return Collections.unmodifiableCollection(clientsByEp.values());
@@ -69,10 +163,19 @@ public class ClientRegistryImpl implements ClientRegistry, Startable, Stoppable
     @Override
     public boolean registerClient(Client client) {
         Validate.notNull(client);
+        Validate.notNull(client.getRegistrationId());
 
         LOG.debug("Registering new client: {}", client);
 
-        Client previous = clientsByEp.put(client.getEndpoint(), client);
+        Client previous;
+        synchronized (indexLock) {
+            previous = clientsByEp.get(client.getEndpoint());
+            if (previous != null) {
+                removeFromIndexes(previous);
+            }
+            addToIndexes(client);
+            persist(client);
+        }
         if (previous != null) {
             for (ClientRegistryListener l : listeners) {
                 l.unregistered(previous);
@@ -90,19 +193,38 @@ public class ClientRegistryImpl implements ClientRegistry, Startable, Stoppable
         Validate.notNull(update);
 
         LOG.debug("Updating registration for client: {}", update);
-        Client client = findByRegistrationId(update.getRegistrationId());
-        if (client == null) {
-            return null;
-        } else {
-            Client clientUpdated = update.updateClient(client);
-            clientsByEp.put(clientUpdated.getEndpoint(), clientUpdated);
+        Client clientUpdated;
+        boolean keepAlive;
+        synchronized (indexLock) {
+            Client client = clientsByRegId.get(update.getRegistrationId());
+            if (client == null) {
+                return null;
+            }
+            long lastUpdate = client.getLastUpdateTime();
+            clientUpdated = update.updateClient(client);
+            keepAlive = clientUpdated == client;
+            if (keepAlive) {
+                // refreshed in place: only the time indexes change
+                unindex(clientsByLastUpdate, lastUpdate, client);
+                index(clientsByLastUpdate, client.getLastUpdateTime(), client);
+                expirationQueue.schedule(client.getRegistrationId(), client.getExpirationTime());
+            } else {
+                removeSecondaryIndexes(client);
+                addToIndexes(clientUpdated);
+                persist(clientUpdated);
+            }
+        }
+        if (keepAlive) {
+            persistKeepAlive(clientUpdated);
+        }
 
-            // notify listener
+        // notify listener
+        if (!keepAlive || notifyKeepAlives) {
             for (ClientRegistryListener l : listeners) {
                 l.updated(clientUpdated);
             }
-            return clientUpdated;
         }
+        return clientUpdated;
     }
 
     @Override
@@ -111,40 +233,253 @@ public class ClientRegistryImpl implements ClientRegistry, Startable, Stoppable
 
         LOG.debug("Deregistering client with registrationId: {}", registrationId);
 
-        Client toBeUnregistered = findByRegistrationId(registrationId);
-        if (toBeUnregistered == null) {
-            return null;
-        } else {
-            Client unregistered = clientsByEp.remove(toBeUnregistered.getEndpoint());
-            for (ClientRegistryListener l : listeners) {
-                l.unregistered(unregistered);
+        Client unregistered;
+        synchronized (indexLock) {
+            unregistered = clientsByRegId.get(registrationId);
+            if (unregistered == null) {
+                return null;
             }
-            LOG.debug("Deregistered client: {}", unregistered);
-            return unregistered;
+            removeFromIndexes(unregistered);
+            unpersist(unregistered);
+        }
+        for (ClientRegistryListener l : listeners) {
+            l.unregistered(unregistered);
         }
+        LOG.debug("Deregistered client: {}", unregistered);
+        return unregistered;
     }
 
     @Override
     public Client findByRegistrationId(String id) {
-        Client result = null;
-        if (id != null) {
-            for (Client client : clientsByEp.values()) {
-                if (id.equals(client.getRegistrationId())) {
-                    result = client;
-                    break;
-                }
+        if (id == null) {
+            return null;
+        }
+        return clientsByRegId.get(id);
+    }
+
+    @Override
+    public Client findByAddress(InetSocketAddress address) {
+        if (address == null) {
+            return null;
+        }
+        return clientsByAddress.get(address);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The clients are looked up in the smallest index selected by the object ids, the binding mode and the
+     * registration port criteria, then filtered by the other criteria. A query only selecting the idle clients goes
+     * through the clients in last update order, up to the given time. A query without any criteria goes through all
+     * the clients.
+     * </p>
+     */
+    @Override
+    public Collection<Client> find(ClientQuery query) {
+        Validate.notNull(query);
+
+        Collection<Client> allClients = clientsByEp.values();
+        Collection<Client> candidates = allClients;
+        for (Integer objectId : query.getObjectIds()) {
+            candidates = smallest(candidates, clientsByObjectId.get(objectId));
+        }
+        if (query.getBindingMode() != null) {
+            candidates = smallest(candidates, clientsByBindingMode.get(query.getBindingMode()));
+        }
+        if (query.getRegistrationPort() != null) {
+            candidates = smallest(candidates, clientsByRegistrationPort.get(query.getRegistrationPort()));
+        }
+        if (query.getLastUpdateBefore() != null && candidates == allClients) {
+            candidates = new ArrayList<>();
+            for (Map<String, Client> clients : clientsByLastUpdate.headMap(query.getLastUpdateBefore()).values()) {
+                candidates.addAll(clients.values());
+            }
+        }
+
+        List<Client> result = new ArrayList<>();
+        for (Client client : candidates) {
+            if (query.matches(client)) {
+                result.add(client);
             }
         }
         return result;
     }
 
+    private static Collection<Client> smallest(Collection<Client> candidates, Map<String, Client> indexed) {
+        if (indexed == null) {
+            return Collections.emptyList();
+        }
+        return indexed.size() < candidates.size() ? indexed.values() : candidates;
+    }
+
+    // must be called while holding the index lock
+    private void addToIndexes(Client client) {
+        clientsByEp.put(client.getEndpoint(), client);
+        clientsByRegId.put(client.getRegistrationId(), client);
+        clientsByAddress.put(peerAddress(client), client);
+        expirationQueue.schedule(client.getRegistrationId(), client.getExpirationTime());
+
+        if (client.getObjectLinks() != null) {
+            for (LinkObject link : client.getObjectLinks()) {
+                if (link.getObjectId() != null) {
+                    index(clientsByObjectId, link.getObjectId(), client);
+                }
+            }
+        }
+        index(clientsByBindingMode, client.getBindingMode(), client);
+        index(clientsByRegistrationPort, client.getRegistrationEndpointAddress().getPort(), client);
+        index(clientsByLastUpdate, client.getLastUpdateTime(), client);
+    }
+
+    // must be called while holding the index lock
+    private void removeFromIndexes(Client client) {
+        clientsByEp.remove(client.getEndpoint());
+        clientsByRegId.remove(client.getRegistrationId());
+        removeSecondaryIndexes(client);
+        expirationQueue.cancel(client.getRegistrationId());
+    }
+
+    private void clearIndexes() {
+        clientsByEp.clear();
+        clientsByRegId.clear();
+        clientsByAddress.clear();
+        clientsByObjectId.clear();
+        clientsByBindingMode.clear();
+        clientsByRegistrationPort.clear();
+        clientsByLastUpdate.clear();
+        expirationQueue.clear();
+    }
+
+    // removes the given client from the indexes which may also reference another client
+    private void removeSecondaryIndexes(Client client) {
+        // the address may have been taken over by another client (e.g. NAT re-binding)
+        InetSocketAddress address = peerAddress(client);
+        if (clientsByAddress.get(address) == client) {
+            clientsByAddress.remove(address);
+        }
+
+        if (client.getObjectLinks() != null) {
+            for (LinkObject link : client.getObjectLinks()) {
+                if (link.getObjectId() != null) {
+                    unindex(clientsByObjectId, link.getObjectId(), client);
+                }
+            }
+        }
+        unindex(clientsByBindingMode, client.getBindingMode(), client);
+        unindex(clientsByRegistrationPort, client.getRegistrationEndpointAddress().getPort(), client);
+        unindex(clientsByLastUpdate, client.getLastUpdateTime(), client);
+    }
+
+    private static <K> void index(Map<K, Map<String, Client>> index, K key, Client client) {
+        Map<String, Client> clients = index.get(key);
+        if (clients == null) {
+            clients = new ConcurrentHashMap<>();
+            index.put(key, clients);
+        }
+        clients.put(client.getEndpoint(), client);
+    }
+
+    // only removes the given instance: the end-point may already be indexed for a new registration or update. The keys
+    // come from the clients (e.g. object ids), so the empty entries are removed.
+    private static <K> void unindex(Map<K, Map<String, Client>> index, K key, Client client) {
+        Map<String, Client> clients = index.get(key);
+        if (clients != null && clients.get(client.getEndpoint()) == client) {
+            clients.remove(client.getEndpoint());
+            if (clients.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    // must be called while holding the index lock, so that the journal records are in the same order as the changes
+    private void persist(Client client) {
+        if (journal != null) {
+            try {
+                journal.put(client.getEndpoint(), client);
+            } catch (IOException e) {
+                LOG.warn("Could not save registration of " + client.getEndpoint() + " to file", e);
+            }
+        }
+    }
+
+    // the keep-alive records do not need to be in the same order as the changes: called without holding the index lock
+    private void persistKeepAlive(Client client) {
+        if (journal != null) {
+            try {
+                journal.update(client.getEndpoint(), ClientSerializer.serializeKeepAlive(client));
+            } catch (IOException e) {
+                LOG.warn("Could not save keep-alive of " + client.getEndpoint() + " to file", e);
+            }
+        }
+    }
+
+    // must be called while holding the index lock
+    private void unpersist(Client client) {
+        if (journal != null) {
+            try {
+                journal.remove(client.getEndpoint());
+            } catch (IOException e) {
+                LOG.warn("Could not remove registration of " + client.getEndpoint() + " from file", e);
+            }
+        }
+    }
+
+    /**
+     * Replaces the journal by a snapshot of the current registrations if most of its records are obsolete.
+     */
+    void compactIfNeeded() {
+        if (journal != null && journal.needsCompaction(clientsByEp.size())) {
+            try {
+                journal.compact(clientsByEp);
+            } catch (IOException e) {
+                LOG.warn("Could not compact registrations file", e);
+            }
+        }
+    }
+
+    private static InetSocketAddress peerAddress(Client client) {
+        return new InetSocketAddress(client.getAddress(), client.getPort());
+    }
+
+    /**
+     * Removes the registrations whose lifetime has expired, only the expired registrations are visited.
+     */
+    void removeExpiredClients() {
+        for (String registrationId : expirationQueue.pollExpired(System.currentTimeMillis())) {
+            Client expired;
+            synchronized (indexLock) {
+                expired = clientsByRegId.get(registrationId);
+                if (expired == null) {
+                    continue;
+                }
+                if (expired.isAlive()) {
+                    // updated concurrently
+                    expirationQueue.schedule(registrationId, expired.getExpirationTime());
+                    continue;
+                }
+                removeFromIndexes(expired);
+                unpersist(expired);
+            }
+
+            // the expired ids are already out of the queue: a failing listener must not prevent the others from being
+            // removed
+            try {
+                for (ClientRegistryListener l : listeners) {
+                    l.unregistered(expired);
+                }
+            } catch (RuntimeException e) {
+                LOG.warn("Unable to notify the expiration of client " + expired.getEndpoint(), e);
+            }
+            LOG.debug("Expired client: {}", expired);
+        }
+    }
+
     /**
      * start the registration manager, will start regular cleanup of dead registrations.
      */
     @Override
     public void start() {
-        // every 2 seconds clean the registration list
-        // TODO re-consider clean-up interval: wouldn't 5 minutes do as well?
+        // every 2 seconds remove the expired registrations
         schedExecutor.scheduleAtFixedRate(new Cleaner(), 2, 2, TimeUnit.SECONDS);
     }
 
@@ -161,20 +496,190 @@ public class ClientRegistryImpl implements ClientRegistry, Startable, Stoppable
         }
     }
 
+    /**
+     * Closes the registrations file, if any.
+     */
+    @Override
+    public void destroy() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                LOG.warn("Could not close registrations file", e);
+            }
+        }
+    }
+
     private final ScheduledExecutorService schedExecutor = Executors.newScheduledThreadPool(1);
 
     private class Cleaner implements Runnable {
 
         @Override
         public void run() {
-            for (Client client : clientsByEp.values()) {
-                synchronized (client) {
-                    if (!client.isAlive()) {
-                        // force de-registration
-                        deregisterClient(client.getRegistrationId());
-                    }
-                }
+            try {
+                removeExpiredClients();
+                compactIfNeeded();
+            } catch (RuntimeException e) {
+                // an exception would cancel the next executions
+                LOG.warn("Unexpected error while cleaning up registrations", e);
             }
         }
     }
+
+    /**
+     * A compact binary form of the clients. The object links, versions and server endpoints of the restored clients
+     * are shared between the clients which registered the same values.
+     */
+    private static class ClientSerializer implements KeyValueJournal.Serializer<Client>,
+            KeyValueJournal.Updater<Client> {
+
+        private static final byte VERSION = 1;
+
+        // only used when replaying the journal
+        private static final int MAX_CACHED_LINKS = 10000;
+        private final LinkObjectCache linksCache = new LinkObjectCache(MAX_CACHED_LINKS);
+        private final Map<InetSocketAddress, InetSocketAddress> endpointsCache = new HashMap<>();
+        private final Map<String, String> versionsCache = new HashMap<>();
+
+        @Override
+        public byte[] serialize(Client client) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeUTF(client.getRegistrationId());
+            out.writeUTF(client.getEndpoint());
+            writeAddress(out, client.getAddress());
+            out.writeInt(client.getPort());
+
+            InetSocketAddress registrationEndpoint = client.getRegistrationEndpointAddress();
+            if (registrationEndpoint.getAddress() != null) {
+                out.writeBoolean(true);
+                writeAddress(out, registrationEndpoint.getAddress());
+            } else {
+                out.writeBoolean(false);
+                out.writeUTF(registrationEndpoint.getHostString());
+            }
+            out.writeInt(registrationEndpoint.getPort());
+
+            out.writeUTF(client.getLwM2mVersion());
+            out.writeLong(client.getLifeTimeInSec());
+            out.writeBoolean(client.getSmsNumber() != null);
+            if (client.getSmsNumber() != null) {
+                out.writeUTF(client.getSmsNumber());
+            }
+            out.writeUTF(client.getBindingMode().name());
+
+            LinkObject[] links = client.getObjectLinks();
+            if (links == null) {
+                out.writeInt(-1);
+            } else if (links.length == 0) {
+                out.writeInt(0);
+            } else {
+                byte[] payload = LinkObject.serialyse(links).getBytes(Charsets.UTF_8);
+                out.writeInt(payload.length);
+                out.write(payload);
+            }
+
+            out.writeLong(client.getRegistrationDate().getTime());
+            out.writeLong(client.getLastUpdateTime());
+            return bytes.toByteArray();
+        }
+
+        // the registration id identifies the registration the keep-alive applies to
+        static byte[] serializeKeepAlive(Client client) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(client.getRegistrationId());
+            out.writeLong(client.getLastUpdateTime());
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public Client update(Client client, byte[] keepAlive) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(keepAlive));
+            String registrationId = in.readUTF();
+            long lastUpdate = in.readLong();
+            // the keep-alive may have been appended after a new registration or a more recent update
+            if (!registrationId.equals(client.getRegistrationId()) || lastUpdate <= client.getLastUpdateTime()) {
+                return client;
+            }
+            return new Client(client.getRegistrationId(), client.getEndpoint(), client.getAddress(), client.getPort(),
+                    client.getLwM2mVersion(), client.getLifeTimeInSec(), client.getSmsNumber(),
+                    client.getBindingMode(), client.getObjectLinks(), client.getRegistrationEndpointAddress(),
+                    client.getRegistrationDate(), new Date(lastUpdate));
+        }
+
+        private static void writeAddress(DataOutputStream out, InetAddress address) throws IOException {
+            byte[] bytes = address.getAddress();
+            out.writeByte(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public Client deserialize(byte[] bytes) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported registration format " + version);
+            }
+            String registrationId = in.readUTF();
+            String endpoint = in.readUTF();
+            InetAddress address = readAddress(in);
+            int port = in.readInt();
+
+            InetSocketAddress registrationEndpoint;
+            if (in.readBoolean()) {
+                registrationEndpoint = new InetSocketAddress(readAddress(in), in.readInt());
+            } else {
+                registrationEndpoint = InetSocketAddress.createUnresolved(in.readUTF(), in.readInt());
+            }
+            registrationEndpoint = intern(endpointsCache, registrationEndpoint);
+
+            String lwM2mVersion = intern(versionsCache, in.readUTF());
+            long lifetime = in.readLong();
+            String smsNumber = in.readBoolean() ? in.readUTF() : null;
+            BindingMode bindingMode = BindingMode.valueOf(in.readUTF());
+
+            LinkObject[] links;
+            int length = in.readInt();
+            if (length < 0) {
+                links = null;
+            } else if (length == 0) {
+                links = new LinkObject[0];
+            } else {
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                links = linksCache.parse(payload);
+            }
+
+            Date registrationDate = new Date(in.readLong());
+            Date lastUpdate = new Date(in.readLong());
+            return new Client(registrationId, endpoint, address, port, lwM2mVersion, lifetime, smsNumber,
+                    bindingMode, links, registrationEndpoint, registrationDate, lastUpdate);
+        }
+
+        private static InetAddress readAddress(DataInputStream in) throws IOException {
+            byte[] bytes = new byte[in.readByte()];
+            in.readFully(bytes);
+            return InetAddress.getByAddress(bytes);
+        }
+
+        // the server has a few endpoints and the clients support a few versions
+        private static <T> T intern(Map<T, T> cache, T value) {
+            T cached = cache.get(value);
+            if (cached != null) {
+                return cached;
+            }
+            if (cache.size() < MAX_CACHED_LINKS) {
+                cache.put(value, value);
+            }
+            return value;
+        }
+
+        private void clearCache() {
+            linksCache.clear();
+            endpointsCache.clear();
+            versionsCache.clear();
+        }
+    }
 }
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A min-heap of registration expiration times.
+ * <p>
+ * Rescheduling is lazy: when an expiration time is pushed back, only the entry is modified and the heap node is moved
+ * when its previous deadline is reached. This makes a registration update O(1) and {@link #pollExpired(long)} only
+ * visits the entries whose deadline has passed.
+ */
+class ExpirationQueue {
+
+    private static class Entry {
+        private final String registrationId;
+        // the current expiration time of the registration
+        private long expiration;
+        // the deadline of the live heap node, only meaningful when queued
+        private long scheduled;
+        private boolean queued;
+
+        private Entry(String registrationId) {
+            this.registrationId = registrationId;
+        }
+    }
+
+    private static class Node {
+        private final Entry entry;
+        private final long deadline;
+
+        private Node(Entry entry, long deadline) {
+            this.entry = entry;
+            this.deadline = deadline;
+        }
+    }
+
+    private final Map<String /* registration id */, Entry> entries = new HashMap<>();
+
+    private final PriorityQueue<Node> heap = new PriorityQueue<>(64, new Comparator<Node>() {
+        @Override
+        public int compare(Node n1, Node n2) {
+            return n1.deadline < n2.deadline ? -1 : (n1.deadline == n2.deadline ? 0 : 1);
+        }
+    });
+
+    /**
+     * Schedules (or re-schedules) the expiration of a registration.
+     *
+     * @param registrationId the registration id
+     * @param expiration the expiration time in milliseconds
+     */
+    public synchronized void schedule(String registrationId, long expiration) {
+        Entry entry = entries.get(registrationId);
+        if (entry == null) {
+            entry = new Entry(registrationId);
+            entries.put(registrationId, entry);
+        }
+        entry.expiration = expiration;
+
+        // a later expiration will be handled when the current node is polled, an earlier one needs a new node: the
+        // previous node becomes stale and will be dropped when polled
+        if (!entry.queued || expiration < entry.scheduled) {
+            entry.scheduled = expiration;
+            entry.queued = true;
+            heap.add(new Node(entry, expiration));
+        }
+    }
+
+    /**
+     * Removes a registration from the queue. The heap nodes are lazily dropped.
+     *
+     * @param registrationId the registration id
+     */
+    public synchronized void cancel(String registrationId) {
+        Entry entry = entries.remove(registrationId);
+        if (entry != null) {
+            entry.queued = false;
+        }
+    }
+
+    /**
+     * Removes and returns the registrations which are expired at the given time.
+     *
+     * @param now the current time in milliseconds
+     * @return the registration ids of the expired registrations
+     */
+    public synchronized List<String> pollExpired(long now) {
+        List<String> expired = new ArrayList<>();
+        Node node;
+        while ((node = heap.peek()) != null && node.deadline <= now) {
+            heap.poll();
+            Entry entry = node.entry;
+            if (!entry.queued || entry.scheduled != node.deadline) {
+                // cancelled registration or stale node
+                continue;
+            }
+            if (entry.expiration > now) {
+                // the registration was updated since this node was queued
+                entry.scheduled = entry.expiration;
+                heap.add(new Node(entry, entry.expiration));
+            } else {
+                entry.queued = false;
+                entries.remove(entry.registrationId);
+                expired.add(entry.registrationId);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Removes all the registrations from the queue.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        heap.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,454 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+import org.eclipse.leshan.util.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only file journal persisting the content of a map.
+ * <p>
+ * Each change is appended to the file as a single <em>put</em> or <em>remove</em> record, replaying the records in
+ * order rebuilds the map. A small change of an entry can also be appended as an <em>update</em> record, which is
+ * applied to the entry by an {@link Updater} when the journal is replayed. As removed and overwritten entries
+ * accumulate, the journal should be compacted: the current content is written to a new file which atomically replaces
+ * the journal. The changes done during a compaction are kept, so it can run in the background.
+ * </p>
+ * <p>
+ * Records are checksummed: a truncated or corrupted record at the end of the file (e.g. after a crash) ends the replay
+ * and is discarded.
+ * </p>
+ *
+ * @param <T> the type of the persisted values
+ */
+public class KeyValueJournal<T> implements Closeable {
+
+    /**
+     * Converts the journal values from/to bytes.
+     */
+    public interface Serializer<T> {
+
+        byte[] serialize(T value) throws IOException;
+
+        T deserialize(byte[] bytes) throws IOException;
+    }
+
+    /**
+     * Applies the update records to the journal values.
+     */
+    public interface Updater<T> {
+
+        /**
+         * @param value the current value of the entry
+         * @param update the content of the update record
+         * @return the updated value, or the given value if the update does not apply to it
+         */
+        T update(T value, byte[] update) throws IOException;
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(KeyValueJournal.class);
+
+    // "LSJ" + format version
+    private static final int MAGIC = 0x4C534A01;
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte UPDATE = 3;
+
+    // length and checksum of a record
+    private static final int RECORD_OVERHEAD = 8;
+
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private static final int DEFAULT_MIN_COMPACTION_RECORDS = 1000;
+
+    private final File file;
+    private final Serializer<T> serializer;
+    // null if the journal does not support update records
+    private final Updater<T> updater;
+    private final boolean sync;
+    private final int minCompactionRecords;
+
+    private FileChannel channel;
+
+    // number of records in the journal file
+    private int records;
+
+    // the records (or batches of records) appended while a compaction is running, null if no compaction is running
+    private List<byte[]> compactionBacklog;
+
+    /**
+     * @param file the journal file
+     * @param serializer the values serializer
+     */
+    public KeyValueJournal(File file, Serializer<T> serializer) {
+        this(file, serializer, null, false, DEFAULT_MIN_COMPACTION_RECORDS);
+    }
+
+    /**
+     * @param file the journal file
+     * @param serializer the values serializer
+     * @param updater applies the update records, <code>null</code> if {@link #update(String, byte[])} is not used
+     */
+    public KeyValueJournal(File file, Serializer<T> serializer, Updater<T> updater) {
+        this(file, serializer, updater, false, DEFAULT_MIN_COMPACTION_RECORDS);
+    }
+
+    /**
+     * @param file the journal file
+     * @param serializer the values serializer
+     * @param updater applies the update records, <code>null</code> if {@link #update(String, byte[])} is not used
+     * @param sync <code>true</code> to force each record to the storage device before returning, otherwise records are
+     *        only written to the operating system
+     * @param minCompactionRecords the number of records below which {@link #needsCompaction(int)} always returns
+     *        <code>false</code>
+     */
+    public KeyValueJournal(File file, Serializer<T> serializer, Updater<T> updater, boolean sync,
+            int minCompactionRecords) {
+        Validate.notNull(file);
+        Validate.notNull(serializer);
+        this.file = file;
+        this.serializer = serializer;
+        this.updater = updater;
+        this.sync = sync;
+        this.minCompactionRecords = minCompactionRecords;
+    }
+
+    /**
+     * @return <code>true</code> if the given file exists and is a journal
+     */
+    public static boolean isJournal(File file) {
+        if (!file.isFile() || file.length() < 4) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens the journal, creating the file if needed, and replays its content in a single pass.
+     *
+     * @param content the map to fill with the journal content
+     * @throws IOException if the file could not be read or is not a journal
+     */
+    public synchronized void open(Map<String, T> content) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+                out.writeInt(MAGIC);
+            }
+            records = 0;
+        } else {
+            long validLength = replay(content);
+            if (validLength < file.length()) {
+                LOG.warn("Discarding {} bytes of incomplete records at the end of journal {}", file.length()
+                        - validLength, file);
+                try (FileChannel truncated = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    truncated.truncate(validLength);
+                }
+            }
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // returns the length of the valid part of the journal
+    private long replay(Map<String, T> content) throws IOException {
+        records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a journal file");
+            }
+            long position = 4;
+            CRC32 crc = new CRC32();
+            byte[] payload = new byte[256];
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return position;
+                }
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    return position;
+                }
+                if (payload.length < length) {
+                    payload = new byte[Math.max(length, payload.length * 2)];
+                }
+                int checksum;
+                try {
+                    in.readFully(payload, 0, length);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    return position;
+                }
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    return position;
+                }
+
+                apply(payload, length, content);
+                records++;
+                position += length + RECORD_OVERHEAD;
+            }
+        }
+    }
+
+    private void apply(byte[] payload, int length, Map<String, T> content) throws IOException {
+        DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload, 0, length));
+        byte type = record.readByte();
+        String key = record.readUTF();
+        switch (type) {
+        case PUT:
+            byte[] value = new byte[record.available()];
+            record.readFully(value);
+            content.put(key, serializer.deserialize(value));
+            break;
+        case REMOVE:
+            content.remove(key);
+            break;
+        case UPDATE:
+            if (updater == null) {
+                throw new IOException("Unexpected update record in journal " + file);
+            }
+            // the entry may have been removed before the update was appended
+            T current = content.get(key);
+            if (current != null) {
+                byte[] update = new byte[record.available()];
+                record.readFully(update);
+                content.put(key, updater.update(current, update));
+            }
+            break;
+        default:
+            throw new IOException("Unknown record type " + type + " in journal " + file);
+        }
+    }
+
+    /**
+     * Appends a record for a new or updated entry.
+     */
+    public void put(String key, T value) throws IOException {
+        append(encode(PUT, key, serializer.serialize(value)));
+    }
+
+    /**
+     * Appends a record for a removed entry.
+     */
+    public void remove(String key) throws IOException {
+        append(encode(REMOVE, key, null));
+    }
+
+    /**
+     * Appends a record for a small change of an entry, applied by the {@link Updater} of the journal when it is
+     * replayed. The update is ignored if the entry does not exist at that point: unlike the other records, update
+     * records do not need to be appended in the same order as the changes of the content, as long as the updater
+     * ignores the outdated updates.
+     */
+    public void update(String key, byte[] update) throws IOException {
+        if (updater == null) {
+            throw new IllegalStateException("Journal " + file + " does not support update records");
+        }
+        append(encode(UPDATE, key, update));
+    }
+
+    /**
+     * Appends the records of several new or updated entries with a single write.
+     */
+    public void putAll(Map<String, T> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        for (Entry<String, T> entry : entries.entrySet()) {
+            batch.write(encode(PUT, entry.getKey(), serializer.serialize(entry.getValue())));
+        }
+        append(batch.toByteArray(), entries.size());
+    }
+
+    /**
+     * Appends the records of several removed entries with a single write.
+     */
+    public void removeAll(Collection<String> keys) throws IOException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        for (String key : keys) {
+            batch.write(encode(REMOVE, key, null));
+        }
+        append(batch.toByteArray(), keys.size());
+    }
+
+    private void append(byte[] record) throws IOException {
+        append(record, 1);
+    }
+
+    private synchronized void append(byte[] bytes, int count) throws IOException {
+        if (channel == null) {
+            throw new IllegalStateException("Journal " + file + " is not opened");
+        }
+        write(channel, bytes);
+        if (sync) {
+            channel.force(false);
+        }
+        records += count;
+        if (compactionBacklog != null) {
+            compactionBacklog.add(bytes);
+        }
+    }
+
+    private static void write(FileChannel channel, byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static byte[] encode(byte type, String key, byte[] value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(key.length() + (value == null ? 0 : value.length)
+                + 16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        // length placeholder
+        out.writeInt(0);
+        out.writeByte(type);
+        out.writeUTF(key);
+        if (value != null) {
+            out.write(value);
+        }
+        // checksum placeholder
+        out.writeInt(0);
+
+        byte[] record = bytes.toByteArray();
+        int length = record.length - RECORD_OVERHEAD;
+        CRC32 crc = new CRC32();
+        crc.update(record, 4, length);
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putInt(0, length);
+        buffer.putInt(record.length - 4, (int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * @param liveEntries the current number of entries
+     * @return <code>true</code> if most of the journal records are obsolete
+     */
+    public synchronized boolean needsCompaction(int liveEntries) {
+        return compactionBacklog == null && records > minCompactionRecords && records > 2 * liveEntries;
+    }
+
+    /**
+     * Replaces the journal by a snapshot of the given content. The content may be modified concurrently as long as the
+     * modifications are also appended to the journal.
+     * <p>
+     * Does nothing if a compaction is already running.
+     * </p>
+     *
+     * @param content the current content
+     */
+    public void compact(Map<String, T> content) throws IOException {
+        int countBeforeCompaction;
+        synchronized (this) {
+            if (compactionBacklog != null) {
+                return;
+            }
+            compactionBacklog = new ArrayList<>();
+            countBeforeCompaction = records;
+        }
+
+        File snapshot = new File(file.getPath() + ".tmp");
+        try {
+            int count = 0;
+            try (FileOutputStream fileOut = new FileOutputStream(snapshot);
+                    BufferedOutputStream out = new BufferedOutputStream(fileOut, 65536)) {
+                out.write(ByteBuffer.allocate(4).putInt(MAGIC).array());
+                for (Entry<String, T> entry : content.entrySet()) {
+                    out.write(encode(PUT, entry.getKey(), serializer.serialize(entry.getValue())));
+                    count++;
+                }
+
+                synchronized (this) {
+                    // the changes which may have been missed by the snapshot
+                    for (byte[] record : compactionBacklog) {
+                        out.write(record);
+                    }
+                    count += records - countBeforeCompaction;
+                    out.flush();
+                    fileOut.getFD().sync();
+
+                    Files.move(snapshot.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    if (channel != null) {
+                        channel.close();
+                    }
+                    channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    records = count;
+                }
+            }
+            LOG.debug("Journal {} compacted to {} records", file, count);
+        } finally {
+            synchronized (this) {
+                compactionBacklog = null;
+            }
+            snapshot.delete();
+        }
+    }
+
+    /**
+     * @return the number of records in the journal
+     */
+    public synchronized int size() {
+        return records;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
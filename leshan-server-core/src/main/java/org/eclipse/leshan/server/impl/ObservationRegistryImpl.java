@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.leshan.core.node.LwM2mNode;
@@ -40,31 +41,52 @@ import org.slf4j.LoggerFactory;
 public class ObservationRegistryImpl implements ObservationRegistry, ObservationListener {
 
     private final Logger LOG = LoggerFactory.getLogger(ObservationRegistryImpl.class);
-    private final Map<String /* registration id */, Map<LwM2mPath /* resource path */, Observation>> observationsByClientAndResource;
+
+    // number of lock stripes, must be a power of 2
+    private static final int LOCK_STRIPES = 64;
+
+    private final ConcurrentMap<String /* registration id */, ConcurrentMap<LwM2mPath /* resource path */, Observation>> observationsByClientAndResource;
+
+    // mutations of the observations of a given registration are guarded by its lock stripe
+    private final Object[] locks;
 
     private final List<ObservationRegistryListener> listeners = new CopyOnWriteArrayList<>();
 
     public ObservationRegistryImpl() {
-        observationsByClientAndResource = new ConcurrentHashMap<String, Map<LwM2mPath, Observation>>();
+        observationsByClientAndResource = new ConcurrentHashMap<String, ConcurrentMap<LwM2mPath, Observation>>();
+        locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    private Object lockFor(String registrationId) {
+        int h = registrationId.hashCode();
+        h ^= (h >>> 16);
+        return locks[h & (LOCK_STRIPES - 1)];
     }
 
     @Override
-    public synchronized void addObservation(Observation observation) {
+    public void addObservation(Observation observation) {
 
         if (observation != null) {
             String registrationID = observation.getRegistrationId();
 
-            Map<LwM2mPath, Observation> clientObservations = observationsByClientAndResource.get(registrationID);
-            if (clientObservations == null) {
-                clientObservations = new ConcurrentHashMap<LwM2mPath, Observation>();
-                observationsByClientAndResource.put(registrationID, clientObservations);
+            Observation oldObservation;
+            synchronized (lockFor(registrationID)) {
+                ConcurrentMap<LwM2mPath, Observation> clientObservations = observationsByClientAndResource
+                        .get(registrationID);
+                if (clientObservations == null) {
+                    clientObservations = new ConcurrentHashMap<LwM2mPath, Observation>();
+                    observationsByClientAndResource.put(registrationID, clientObservations);
+                }
+                oldObservation = clientObservations.put(observation.getPath(), observation);
             }
 
-            Observation oldObservation = clientObservations.get(observation.getPath());
-            if (oldObservation != null) {
+            // the old observation is replaced before being cancelled, so its cancellation does not remove the new one
+            if (oldObservation != null && oldObservation != observation) {
                 oldObservation.cancel();
             }
-            clientObservations.put(observation.getPath(), observation);
             for (ObservationRegistryListener listener : listeners) {
                 listener.newObservation(observation);
             }
@@ -73,11 +95,13 @@ public class ObservationRegistryImpl implements ObservationRegistry, Observation
     }
 
     @Override
-    public synchronized int cancelObservations(Client client) {
+    public int cancelObservations(Client client) {
         int count = 0;
         if (client != null) {
-            Map<LwM2mPath, Observation> clientObservations = observationsByClientAndResource.get(client
-                    .getRegistrationId());
+            Map<LwM2mPath, Observation> clientObservations;
+            synchronized (lockFor(client.getRegistrationId())) {
+                clientObservations = observationsByClientAndResource.remove(client.getRegistrationId());
+            }
 
             if (clientObservations != null) {
                 count = clientObservations.size();
@@ -87,15 +111,13 @@ public class ObservationRegistryImpl implements ObservationRegistry, Observation
                 for (Observation obs : clientObservations.values()) {
                     obs.cancel();
                 }
-                clientObservations.clear();
-                observationsByClientAndResource.remove(client.getRegistrationId());
             }
         }
         return count;
     }
 
     @Override
-    public synchronized void cancelObservation(Client client, String resourcepath) {
+    public void cancelObservation(Client client, String resourcepath) {
         if (client != null && resourcepath != null) {
             Map<LwM2mPath, Observation> clientObservations = observationsByClientAndResource.get(client
                     .getRegistrationId());
@@ -137,16 +159,17 @@ public class ObservationRegistryImpl implements ObservationRegistry, Observation
             listener.cancelled(observation);
         }
 
-        synchronized (this) {
+        synchronized (lockFor(observation.getRegistrationId())) {
             // clear the observationsByClientAndResource map
-            Map<LwM2mPath, Observation> observations = observationsByClientAndResource.get(observation
+            ConcurrentMap<LwM2mPath, Observation> observations = observationsByClientAndResource.get(observation
                     .getRegistrationId());
             if (observations != null) {
                 LwM2mPath path = observation.getPath();
                 if (LOG.isTraceEnabled()) {
                     LOG.trace("Canceling {} observation of registration {}", path, observation.getRegistrationId());
                 }
-                observations.remove(path);
+                // the observation may already have been replaced by a new one for the same path
+                observations.remove(path, observation);
                 if (observations.isEmpty()) {
                     observationsByClientAndResource.remove(observation.getRegistrationId());
                 }
@@ -15,20 +15,32 @@
  *******************************************************************************/
 package org.eclipse.leshan.server.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.leshan.server.Destroyable;
+import org.eclipse.leshan.server.Startable;
+import org.eclipse.leshan.server.Stoppable;
 import org.eclipse.leshan.server.security.NonUniqueSecurityInfoException;
 import org.eclipse.leshan.server.security.SecurityInfo;
 import org.eclipse.leshan.server.security.SecurityRegistry;
@@ -39,11 +51,13 @@ import org.slf4j.LoggerFactory;
 /**
  * An in-memory security store.
  * <p>
- * This implementation serializes the registry content into a file to be able to re-load the security infos when the
- * server is restarted.
+ * This implementation persists the registry content into a {@link KeyValueJournal} to be able to re-load the security
+ * infos when the server is restarted: each change is appended to the file and, once the registry is started, the file
+ * is compacted in the background when most of its records are obsolete. A file written by the previous versions (a
+ * serialized array of security infos) is migrated to the journal format when loaded.
  * </p>
  */
-public class SecurityRegistryImpl implements SecurityRegistry {
+public class SecurityRegistryImpl implements SecurityRegistry, Startable, Stoppable, Destroyable {
 
     private static final Logger LOG = LoggerFactory.getLogger(SecurityRegistryImpl.class);
 
@@ -56,6 +70,11 @@ public class SecurityRegistryImpl implements SecurityRegistry {
     // the name of the file used to persist the registry content
     private final String filename;
 
+    private final KeyValueJournal<SecurityInfo> journal;
+
+    // false if the file could not be loaded (or loading is disabled by a sub-class): changes are not persisted
+    private boolean journalOpened = false;
+
     private PublicKey serverPublicKey;
 
     private PrivateKey serverPrivateKey;
@@ -93,6 +112,7 @@ public class SecurityRegistryImpl implements SecurityRegistry {
         Validate.notEmpty(file);
 
         this.filename = file;
+        this.journal = new KeyValueJournal<>(new File(file), new SecurityInfoSerializer());
         this.serverPrivateKey = serverPrivateKey;
         this.serverPublicKey = serverPublicKey;
         this.loadFromFile();
@@ -108,6 +128,7 @@ public class SecurityRegistryImpl implements SecurityRegistry {
         Validate.notEmpty(trustedCertificates);
 
         this.filename = file;
+        this.journal = new KeyValueJournal<>(new File(file), new SecurityInfoSerializer());
         this.serverPrivateKey = serverPrivateKey;
         this.serverX509CertChain = serverX509CertChain;
         this.trustedCertificates = trustedCertificates;
@@ -137,20 +158,17 @@ public class SecurityRegistryImpl implements SecurityRegistry {
 
     @Override
     public synchronized SecurityInfo add(SecurityInfo info) throws NonUniqueSecurityInfoException {
-        String identity = info.getIdentity();
-        if (identity != null) {
-            SecurityInfo infoByIdentity = securityByIdentity.get(info.getIdentity());
-            if (infoByIdentity != null && !info.getEndpoint().equals(infoByIdentity.getEndpoint())) {
-                throw new NonUniqueSecurityInfoException("PSK Identity " + info.getIdentity() + " is already used");
+        checkUniqueness(info);
+
+        SecurityInfo previous = index(info);
+        if (journalOpened) {
+            try {
+                journal.put(info.getEndpoint(), info);
+            } catch (IOException e) {
+                LOG.warn("Could not save security info of " + info.getEndpoint() + " to file", e);
             }
-
-            securityByIdentity.put(info.getIdentity(), info);
         }
 
-        SecurityInfo previous = securityByEp.put(info.getEndpoint(), info);
-
-        this.saveToFile();
-
         return previous;
     }
 
@@ -163,57 +181,228 @@ public class SecurityRegistryImpl implements SecurityRegistry {
             }
             securityByEp.remove(endpoint);
 
-            this.saveToFile();
+            if (journalOpened) {
+                try {
+                    journal.remove(endpoint);
+                } catch (IOException e) {
+                    LOG.warn("Could not remove security info of " + endpoint + " from file", e);
+                }
+            }
         }
         return info;
     }
 
+    @Override
+    public synchronized Map<Integer, NonUniqueSecurityInfoException> addAll(Collection<SecurityInfo> infos) {
+        Map<Integer, NonUniqueSecurityInfoException> failures = new LinkedHashMap<>();
+        Map<String, SecurityInfo> added = new LinkedHashMap<>();
+        int index = -1;
+        for (SecurityInfo info : infos) {
+            index++;
+            try {
+                if (added.containsKey(info.getEndpoint())) {
+                    throw new NonUniqueSecurityInfoException("Endpoint " + info.getEndpoint()
+                            + " is already used in the batch");
+                }
+                // the previous infos of the batch are already indexed
+                checkUniqueness(info);
+            } catch (NonUniqueSecurityInfoException e) {
+                failures.put(index, e);
+                continue;
+            }
+            index(info);
+            added.put(info.getEndpoint(), info);
+        }
+
+        if (journalOpened) {
+            try {
+                journal.putAll(added);
+            } catch (IOException e) {
+                LOG.warn("Could not save " + added.size() + " security infos to file", e);
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public synchronized Collection<SecurityInfo> removeAll(Collection<String> endpoints) {
+        Map<String, SecurityInfo> removed = new LinkedHashMap<>();
+        for (String endpoint : endpoints) {
+            SecurityInfo info = securityByEp.remove(endpoint);
+            if (info != null) {
+                if (info.getIdentity() != null) {
+                    securityByIdentity.remove(info.getIdentity());
+                }
+                removed.put(endpoint, info);
+            }
+        }
+
+        if (journalOpened) {
+            try {
+                journal.removeAll(removed.keySet());
+            } catch (IOException e) {
+                LOG.warn("Could not remove " + removed.size() + " security infos from file", e);
+            }
+        }
+        return removed.values();
+    }
+
+    private void checkUniqueness(SecurityInfo info) throws NonUniqueSecurityInfoException {
+        String identity = info.getIdentity();
+        if (identity != null) {
+            SecurityInfo infoByIdentity = securityByIdentity.get(identity);
+            if (infoByIdentity != null && !info.getEndpoint().equals(infoByIdentity.getEndpoint())) {
+                throw new NonUniqueSecurityInfoException("PSK Identity " + identity + " is already used");
+            }
+        }
+    }
+
+    // returns the previous info of the end-point
+    private SecurityInfo index(SecurityInfo info) {
+        SecurityInfo previous = securityByEp.put(info.getEndpoint(), info);
+        if (previous != null && previous.getIdentity() != null && !previous.getIdentity().equals(info.getIdentity())) {
+            securityByIdentity.remove(previous.getIdentity());
+        }
+        if (info.getIdentity() != null) {
+            securityByIdentity.put(info.getIdentity(), info);
+        }
+        return previous;
+    }
+
     // /////// File persistence
 
     protected void loadFromFile() {
         try {
             File file = new File(filename);
 
-            if (!file.exists()) {
-                // create parents if needed
-                File parent = file.getParentFile();
-                if (parent != null) {
-                    parent.mkdirs();
-                }
-                file.createNewFile();
-
-            } else {
-
-                try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file));) {
-                    SecurityInfo[] infos = (SecurityInfo[]) in.readObject();
-
-                    if (infos != null) {
-                        for (SecurityInfo info : infos) {
-                            try {
-                                this.add(info);
-                            } catch (NonUniqueSecurityInfoException e) {
-                                // ignore it (should not occur)
-                            }
-                        }
-                    }
-
-                    if (infos != null && infos.length > 0) {
-                        LOG.info("{} security infos loaded", infos.length);
-                    }
-                } catch (Exception e) {
-                    LOG.debug("Could not load security infos from file", e);
-                }
+            if (file.length() > 0 && !KeyValueJournal.isJournal(file)) {
+                migrateFromSerializedFile(file);
+                return;
+            }
+
+            Map<String, SecurityInfo> infos = new HashMap<>();
+            journal.open(infos);
+            journalOpened = true;
+            for (SecurityInfo info : infos.values()) {
+                index(info);
             }
+            if (!infos.isEmpty()) {
+                LOG.info("{} security infos loaded", infos.size());
+            }
+            compactIfNeeded();
         } catch (Exception e) {
-            LOG.debug("Could not load security infos from file", e);
+            LOG.warn("Could not load security infos from file", e);
+        }
+    }
+
+    // the file was written by a previous version, as a serialized array
+    private void migrateFromSerializedFile(File file) throws IOException, ClassNotFoundException {
+        SecurityInfo[] infos;
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+            infos = (SecurityInfo[]) in.readObject();
+        }
+        if (infos != null) {
+            for (SecurityInfo info : infos) {
+                index(info);
+            }
+        }
+
+        // keep the original file until the journal is written
+        File backup = new File(file.getPath() + ".bak");
+        Files.copy(file.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        journal.compact(securityByEp);
+        journalOpened = true;
+        LOG.info("{} security infos migrated to journal {}, the previous file is saved as {}", securityByEp.size(),
+                file, backup);
+    }
+
+    /**
+     * Replaces the journal by a snapshot of the current security infos if most of its records are obsolete.
+     */
+    void compactIfNeeded() {
+        if (journalOpened && journal.needsCompaction(securityByEp.size())) {
+            saveToFile();
         }
     }
 
+    /**
+     * Writes the whole registry content to the file.
+     */
     protected void saveToFile() {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filename));) {
-            out.writeObject(this.getAll().toArray(new SecurityInfo[0]));
+        try {
+            journal.compact(securityByEp);
         } catch (Exception e) {
-            LOG.debug("Could not save security infos to file", e);
+            LOG.warn("Could not save security infos to file", e);
+        }
+    }
+
+    /**
+     * Starts the background compaction of the file.
+     */
+    @Override
+    public void start() {
+        // the changes are appended under the registry lock, the file is compacted outside of it
+        schedExecutor.scheduleWithFixedDelay(new Compactor(), 10, 10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the background compaction of the file.
+     */
+    @Override
+    public void stop() {
+        schedExecutor.shutdownNow();
+        try {
+            schedExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            LOG.warn("Security infos compaction thread was interrupted.", e);
+        }
+    }
+
+    /**
+     * Closes the security infos file.
+     */
+    @Override
+    public void destroy() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            LOG.warn("Could not close security infos file", e);
+        }
+    }
+
+    private final ScheduledExecutorService schedExecutor = Executors.newScheduledThreadPool(1);
+
+    private class Compactor implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                compactIfNeeded();
+            } catch (RuntimeException e) {
+                // an exception would cancel the next executions
+                LOG.warn("Unexpected error while compacting security infos file", e);
+            }
+        }
+    }
+
+    private static class SecurityInfoSerializer implements KeyValueJournal.Serializer<SecurityInfo> {
+
+        @Override
+        public byte[] serialize(SecurityInfo info) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(info);
+            }
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public SecurityInfo deserialize(byte[] bytes) throws IOException {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return (SecurityInfo) in.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
         }
     }
 
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.registration;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.eclipse.leshan.util.Validate;
+
+/**
+ * Generates random base62 registration identifiers.
+ * <p>
+ * The random numbers come from the generator of the calling thread, so concurrent registrations do not contend on a
+ * shared generator. As before, the identifiers are not meant to be secrets: the requests using them are authorized
+ * with the client identity.
+ * </p>
+ */
+public class RandomRegistrationIdGenerator implements RegistrationIdGenerator {
+
+    /** The default number of characters of an identifier (about 59 bits) */
+    public static final int DEFAULT_LENGTH = 10;
+
+    static final char[] BASE62 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private final int length;
+
+    public RandomRegistrationIdGenerator() {
+        this(DEFAULT_LENGTH);
+    }
+
+    /**
+     * @param length the number of characters of the identifiers
+     */
+    public RandomRegistrationIdGenerator(int length) {
+        Validate.isTrue(length > 0, "length must be positive");
+        this.length = length;
+    }
+
+    @Override
+    public String generate() {
+        char[] id = new char[length];
+        appendRandom(id, 0, length);
+        return new String(id);
+    }
+
+    // fills id[from, to[ with random base62 characters
+    static void appendRandom(char[] id, int from, int to) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = from; i < to; i++) {
+            id[i] = BASE62[random.nextInt(BASE62.length)];
+        }
+    }
+}
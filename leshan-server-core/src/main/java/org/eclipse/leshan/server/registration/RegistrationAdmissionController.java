@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.registration;
+
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.leshan.util.Validate;
+
+/**
+ * Limits the rate of the registrations to protect the server from registration storms (e.g. all the devices of a
+ * fleet registering again after a network outage).
+ * <p>
+ * Registrations are admitted by token buckets: a global one and one per source IP address. Each bucket allows a burst
+ * of registrations and is then refilled at a constant rate. A rejected registration should be answered with a 5.03
+ * (Service Unavailable) response carrying a Max-Age option, see {@link #nextRetryAfter()}, so that the device waits
+ * before registering again.
+ * </p>
+ */
+public class RegistrationAdmissionController {
+
+    /** The default Max-Age (in seconds) of the responses to rejected registrations */
+    public static final int DEFAULT_RETRY_AFTER = 60;
+
+    // above this number of tracked addresses, the least recently seen one is forgotten. Visible for testing.
+    static final int MAX_TRACKED_ADDRESSES = 10000;
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static class TokenBucket {
+        private final double tokensPerSecond;
+        private final int capacity;
+
+        private double tokens;
+        private long lastRefill;
+
+        private TokenBucket(double tokensPerSecond, int capacity, long now) {
+            this.tokensPerSecond = tokensPerSecond;
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.lastRefill = now;
+        }
+
+        private void refill(long now) {
+            if (now > lastRefill) {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerSecond / NANOS_PER_SECOND);
+                lastRefill = now;
+            }
+        }
+    }
+
+    private final double registrationsPerSecond;
+    private final int burst;
+    private final double registrationsPerSecondPerAddress;
+    private final int burstPerAddress;
+    private final int retryAfter;
+
+    // null if the global rate is not limited
+    private final TokenBucket globalBucket;
+    // in access order, so that the least recently seen address is evicted in O(1). With more active addresses than the
+    // limit (e.g. a storm from spoofed addresses), an evicted address gets a full bucket again and only the global
+    // bucket applies. Visible for testing.
+    final Map<InetAddress, TokenBucket> addressBuckets = new LinkedHashMap<InetAddress, TokenBucket>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Entry<InetAddress, TokenBucket> eldest) {
+            return size() > MAX_TRACKED_ADDRESSES;
+        }
+    };
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong rejectedByAddress = new AtomicLong();
+
+    /**
+     * Creates a controller answering rejected registrations with a Max-Age of {@link #DEFAULT_RETRY_AFTER} seconds.
+     * 
+     * @param registrationsPerSecond the sustained global registration rate, 0 for no global limit
+     * @param burst the number of registrations admitted at once when the global bucket is full
+     * @param registrationsPerSecondPerAddress the sustained registration rate of a source IP address, 0 for no limit
+     *        per address
+     * @param burstPerAddress the number of registrations of a source IP address admitted at once
+     */
+    public RegistrationAdmissionController(double registrationsPerSecond, int burst,
+            double registrationsPerSecondPerAddress, int burstPerAddress) {
+        this(registrationsPerSecond, burst, registrationsPerSecondPerAddress, burstPerAddress, DEFAULT_RETRY_AFTER);
+    }
+
+    /**
+     * @param registrationsPerSecond the sustained global registration rate, 0 for no global limit
+     * @param burst the number of registrations admitted at once when the global bucket is full
+     * @param registrationsPerSecondPerAddress the sustained registration rate of a source IP address, 0 for no limit
+     *        per address
+     * @param burstPerAddress the number of registrations of a source IP address admitted at once
+     * @param retryAfter the minimum Max-Age (in seconds) of the 5.03 responses to rejected registrations, 0 to ignore
+     *        rejected registrations without answering them
+     */
+    public RegistrationAdmissionController(double registrationsPerSecond, int burst,
+            double registrationsPerSecondPerAddress, int burstPerAddress, int retryAfter) {
+        Validate.isTrue(registrationsPerSecond >= 0, "the registration rate cannot be negative");
+        Validate.isTrue(registrationsPerSecondPerAddress >= 0, "the registration rate per address cannot be negative");
+        Validate.isTrue(registrationsPerSecond == 0 || burst > 0, "the burst must be positive");
+        Validate.isTrue(registrationsPerSecondPerAddress == 0 || burstPerAddress > 0,
+                "the burst per address must be positive");
+        Validate.isTrue(retryAfter >= 0, "the retry delay cannot be negative");
+
+        this.registrationsPerSecond = registrationsPerSecond;
+        this.burst = burst;
+        this.registrationsPerSecondPerAddress = registrationsPerSecondPerAddress;
+        this.burstPerAddress = burstPerAddress;
+        this.retryAfter = retryAfter;
+        this.globalBucket = registrationsPerSecond > 0 ? new TokenBucket(registrationsPerSecond, burst,
+                System.nanoTime()) : null;
+    }
+
+    /**
+     * Decides whether a registration is processed. The admitted registrations consume a token of the global bucket and
+     * of the bucket of their source address.
+     * 
+     * @param address the source IP address of the registration
+     * @return <code>true</code> if the registration is admitted
+     */
+    public boolean admit(InetAddress address) {
+        return admit(address, System.nanoTime());
+    }
+
+    // visible for testing
+    synchronized boolean admit(InetAddress address, long now) {
+        TokenBucket addressBucket = null;
+        if (registrationsPerSecondPerAddress > 0) {
+            addressBucket = addressBucket(address, now);
+            addressBucket.refill(now);
+            if (addressBucket.tokens < 1) {
+                rejected.incrementAndGet();
+                rejectedByAddress.incrementAndGet();
+                return false;
+            }
+        }
+        if (globalBucket != null) {
+            globalBucket.refill(now);
+            if (globalBucket.tokens < 1) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            globalBucket.tokens--;
+        }
+        if (addressBucket != null) {
+            addressBucket.tokens--;
+        }
+        admitted.incrementAndGet();
+        return true;
+    }
+
+    private TokenBucket addressBucket(InetAddress address, long now) {
+        TokenBucket bucket = addressBuckets.get(address);
+        if (bucket == null) {
+            bucket = new TokenBucket(registrationsPerSecondPerAddress, burstPerAddress, now);
+            addressBuckets.put(address, bucket);
+        }
+        return bucket;
+    }
+
+    /**
+     * @return <code>true</code> if the rejected registrations must be answered with a 5.03 response,
+     *         <code>false</code> if they must be ignored
+     */
+    public boolean isRejectionAnswered() {
+        return retryAfter > 0;
+    }
+
+    /**
+     * Returns the Max-Age of the next 5.03 response. It is randomized between the configured delay and twice this delay
+     * so that the rejected devices do not come back all at once.
+     * 
+     * @return the delay in seconds
+     */
+    public int nextRetryAfter() {
+        return retryAfter + ThreadLocalRandom.current().nextInt(retryAfter + 1);
+    }
+
+    /**
+     * @return the number of admitted registrations
+     */
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    /**
+     * @return the number of rejected registrations
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return the number of registrations rejected because of the limit per source address, included in
+     *         {@link #getRejected()}
+     */
+    public long getRejectedByAddress() {
+        return rejectedByAddress.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "RegistrationAdmissionController [rate=%s/s, burst=%s, ratePerAddress=%s/s, burstPerAddress=%s, "
+                        + "retryAfter=%ss, admitted=%s, rejected=%s]", registrationsPerSecond, burst,
+                registrationsPerSecondPerAddress, burstPerAddress, retryAfter, admitted, rejected);
+    }
+}
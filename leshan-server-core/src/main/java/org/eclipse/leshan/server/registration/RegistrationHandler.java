@@ -18,6 +18,7 @@ package org.eclipse.leshan.server.registration;
 import java.net.InetSocketAddress;
 import java.security.PublicKey;
 
+import org.eclipse.leshan.core.request.BindingMode;
 import org.eclipse.leshan.core.request.DeregisterRequest;
 import org.eclipse.leshan.core.request.Identity;
 import org.eclipse.leshan.core.request.RegisterRequest;
@@ -31,7 +32,7 @@ import org.eclipse.leshan.server.client.ClientUpdate;
 import org.eclipse.leshan.server.security.SecurityInfo;
 import org.eclipse.leshan.server.security.SecurityStore;
 import org.eclipse.leshan.util.Hex;
-import org.eclipse.leshan.util.RandomStringUtils;
+import org.eclipse.leshan.util.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,10 +46,40 @@ public class RegistrationHandler {
 
     private SecurityStore securityStore;
     private ClientRegistry clientRegistry;
+    private final boolean renewEquivalentRegistrations;
+    private final RegistrationIdGenerator registrationIdGenerator;
 
     public RegistrationHandler(ClientRegistry clientRegistry, SecurityStore securityStore) {
+        this(clientRegistry, securityStore, false);
+    }
+
+    /**
+     * @param clientRegistry the registry of the registered clients
+     * @param securityStore the security information of the clients
+     * @param renewEquivalentRegistrations <code>true</code> to renew the current registration of a client registering
+     *        again from the same address with the same parameters (e.g. a retransmitted register request) instead of
+     *        replacing it: the registration id and the observations are kept
+     */
+    public RegistrationHandler(ClientRegistry clientRegistry, SecurityStore securityStore,
+            boolean renewEquivalentRegistrations) {
+        this(clientRegistry, securityStore, renewEquivalentRegistrations, new RandomRegistrationIdGenerator());
+    }
+
+    /**
+     * @param clientRegistry the registry of the registered clients
+     * @param securityStore the security information of the clients
+     * @param renewEquivalentRegistrations <code>true</code> to renew the current registration of a client registering
+     *        again from the same address with the same parameters (e.g. a retransmitted register request) instead of
+     *        replacing it: the registration id and the observations are kept
+     * @param registrationIdGenerator the generator of the new registration ids
+     */
+    public RegistrationHandler(ClientRegistry clientRegistry, SecurityStore securityStore,
+            boolean renewEquivalentRegistrations, RegistrationIdGenerator registrationIdGenerator) {
+        Validate.notNull(registrationIdGenerator);
         this.clientRegistry = clientRegistry;
         this.securityStore = securityStore;
+        this.renewEquivalentRegistrations = renewEquivalentRegistrations;
+        this.registrationIdGenerator = registrationIdGenerator;
     }
 
     public RegisterResponse register(Identity sender, RegisterRequest registerRequest, InetSocketAddress serverEndpoint) {
@@ -62,10 +93,18 @@ public class RegistrationHandler {
             return RegisterResponse.forbidden(null);
         }
 
-        Client client = new Client(RegistrationHandler.createRegistrationId(), registerRequest.getEndpointName(),
-                sender.getPeerAddress().getAddress(), sender.getPeerAddress().getPort(),
-                registerRequest.getLwVersion(), registerRequest.getLifetime(), registerRequest.getSmsNumber(),
-                registerRequest.getBindingMode(), registerRequest.getObjectLinks(), serverEndpoint);
+        if (renewEquivalentRegistrations) {
+            Client renewed = renewEquivalentRegistration(sender, registerRequest, serverEndpoint);
+            if (renewed != null) {
+                LOG.debug("Renewed registration of client: {}", renewed);
+                return RegisterResponse.success(renewed.getRegistrationId());
+            }
+        }
+
+        Client client = new Client(registrationIdGenerator.generate(), registerRequest.getEndpointName(), sender
+                .getPeerAddress().getAddress(), sender.getPeerAddress().getPort(), registerRequest.getLwVersion(),
+                registerRequest.getLifetime(), registerRequest.getSmsNumber(), registerRequest.getBindingMode(),
+                registerRequest.getObjectLinks(), serverEndpoint);
 
         if (clientRegistry.registerClient(client)) {
             LOG.debug("New registered client: {}", client);
@@ -123,8 +162,39 @@ public class RegistrationHandler {
         }
     }
 
-    private static String createRegistrationId() {
-        return RandomStringUtils.random(10, true, true);
+    // returns null if the client has no equivalent registration
+    private Client renewEquivalentRegistration(Identity sender, RegisterRequest registerRequest,
+            InetSocketAddress serverEndpoint) {
+        Client registered = clientRegistry.get(registerRequest.getEndpointName());
+        if (registered == null) {
+            return null;
+        }
+        String lwVersion = registerRequest.getLwVersion() != null ? registerRequest.getLwVersion()
+                : Client.DEFAULT_LWM2M_VERSION;
+        long lifetime = registerRequest.getLifetime() != null ? registerRequest.getLifetime()
+                : Client.DEFAULT_LIFETIME_IN_SEC;
+        BindingMode binding = registerRequest.getBindingMode() != null ? registerRequest.getBindingMode()
+                : BindingMode.U;
+        // the update only compares the given properties: the missing ones are compared here
+        if (!registered.getLwM2mVersion().equals(lwVersion)
+                || !registered.getRegistrationEndpointAddress().equals(serverEndpoint)
+                || !equals(registered.getSmsNumber(), registerRequest.getSmsNumber())
+                || (registerRequest.getObjectLinks() == null && registered.getObjectLinks() != null)) {
+            return null;
+        }
+        ClientUpdate renewal = new ClientUpdate(registered.getRegistrationId(), sender.getPeerAddress().getAddress(),
+                sender.getPeerAddress().getPort(), lifetime, registerRequest.getSmsNumber(), binding,
+                registerRequest.getObjectLinks());
+        if (!renewal.isKeepAlive(registered)) {
+            return null;
+        }
+        // a keep-alive update only extends the registration time-to-live, the client may also have been
+        // de-registered in the meantime
+        return clientRegistry.updateClient(renewal);
+    }
+
+    private static boolean equals(Object o1, Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
     }
 
     /**
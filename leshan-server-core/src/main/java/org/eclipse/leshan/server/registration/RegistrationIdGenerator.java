@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.registration;
+
+/**
+ * Generates the identifiers of the new registrations.
+ * <p>
+ * Implementations must be thread-safe and must not return the same identifier for two registrations of the server
+ * lifetime, including the registrations restored from a persisted registry.
+ * </p>
+ */
+public interface RegistrationIdGenerator {
+
+    /**
+     * @return a new registration identifier
+     */
+    String generate();
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.registration;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates base62 registration identifiers ordered by creation time.
+ * <p>
+ * An identifier is made of a strictly increasing sequence (the creation time in milliseconds followed by a counter)
+ * and of a random suffix guarding against a clock going backward between two runs of the server. The identifiers
+ * generated by a server are in increasing lexicographic order: consecutive registrations share a common prefix,
+ * which makes the registry snapshots and journals compress better.
+ * </p>
+ */
+public class TimeOrderedRegistrationIdGenerator implements RegistrationIdGenerator {
+
+    // 4096 identifiers per millisecond before borrowing from the next one
+    private static final int COUNTER_BITS = 12;
+
+    // 62^10 > 2^59: the sequence fits until the year 8000
+    private static final int SEQUENCE_LENGTH = 10;
+
+    private static final int RANDOM_LENGTH = 4;
+
+    private final AtomicLong lastSequence = new AtomicLong();
+
+    @Override
+    public String generate() {
+        long sequence = nextSequence(System.currentTimeMillis());
+
+        char[] id = new char[SEQUENCE_LENGTH + RANDOM_LENGTH];
+        char[] base62 = RandomRegistrationIdGenerator.BASE62;
+        for (int i = SEQUENCE_LENGTH - 1; i >= 0; i--) {
+            id[i] = base62[(int) (sequence % base62.length)];
+            sequence /= base62.length;
+        }
+        RandomRegistrationIdGenerator.appendRandom(id, SEQUENCE_LENGTH, id.length);
+        return new String(id);
+    }
+
+    // visible for testing
+    long nextSequence(long now) {
+        long candidate = now << COUNTER_BITS;
+        while (true) {
+            long last = lastSequence.get();
+            long next = Math.max(candidate, last + 1);
+            if (lastSequence.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+}
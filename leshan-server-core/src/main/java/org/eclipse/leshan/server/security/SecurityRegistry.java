@@ -20,6 +20,7 @@ import java.security.PublicKey;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.Collection;
+import java.util.Map;
 
 public interface SecurityRegistry extends SecurityStore {
 
@@ -41,6 +42,19 @@ public interface SecurityRegistry extends SecurityStore {
      */
     SecurityInfo add(SecurityInfo info) throws NonUniqueSecurityInfoException;
 
+    /**
+     * Registers security information for several client end-points at once.
+     * <p>
+     * Each info is checked against the registry content and the previous infos of the batch, as if they were added
+     * one by one. An end-point can only appear once in a batch. The infos which are not valid are reported and do not
+     * prevent the others from being registered.
+     * </p>
+     * 
+     * @param infos the new security information
+     * @return the rejected infos by position in the batch, empty if all the infos were registered
+     */
+    Map<Integer, NonUniqueSecurityInfoException> addAll(Collection<SecurityInfo> infos);
+
     /**
      * Removes the security information for a given end-point.
      * 
@@ -49,6 +63,14 @@ public interface SecurityRegistry extends SecurityStore {
      */
     SecurityInfo remove(String endpoint);
 
+    /**
+     * Removes the security information for several end-points at once.
+     * 
+     * @param endpoints the client end-points
+     * @return the removed {@link SecurityInfo}, end-points without info are ignored
+     */
+    Collection<SecurityInfo> removeAll(Collection<String> endpoints);
+
     /**
      * Returns the Server Public Key
      */
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.client;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.eclipse.leshan.LinkObject;
+import org.eclipse.leshan.core.request.BindingMode;
+import org.eclipse.leshan.util.Charsets;
+import org.eclipse.leshan.util.RandomStringUtils;
+
+/**
+ * Measures the heap footprint of the registered {@link Client}s.
+ * 
+ * This is not a unit test: run the <code>main</code> method manually, preferably with a fixed heap size (e.g.
+ * <code>-Xms1g -Xmx1g</code>) for more stable figures.
+ */
+public class ClientHeapBenchmark {
+
+    private static final int CLIENTS = 100000;
+
+    // a fleet registers a few distinct object sets, each registration payload is parsed separately
+    private static final String[] PAYLOADS = { "</>;rt=\"oma.lwm2m\", </1/0>, </3/0>, </4/0>, </5>, </6>",
+                            "</>;rt=\"oma.lwm2m\", </1/0>, </3/0>, </4/0>, </5>, </6>, </7>, </3303/0>",
+                            "</1/0>, </2/0>, </2/1>, </3/0>, </4/0>, </5>, </6/0>, </7>, </9/0>, </9/1>" };
+
+    public static void main(String[] args) throws Exception {
+        InetSocketAddress serverAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), 5684);
+        // warm up the classes and the interning caches
+        createClients(1000, serverAddress);
+
+        long before = usedHeap();
+        Client[] clients = createClients(CLIENTS, serverAddress);
+        long after = usedHeap();
+
+        System.out.printf("%d clients: %d bytes/client%n", clients.length, (after - before) / clients.length);
+    }
+
+    private static Client[] createClients(int count, InetSocketAddress serverAddress) throws Exception {
+        Client[] clients = new Client[count];
+        for (int i = 0; i < count; i++) {
+            LinkObject[] links = LinkObject.parse(PAYLOADS[i % PAYLOADS.length].getBytes(Charsets.UTF_8));
+            InetAddress address = InetAddress.getByAddress(new byte[] { 10, (byte) (i >> 16), (byte) (i >> 8),
+                                    (byte) i });
+            clients[i] = new Client(RandomStringUtils.randomAlphanumeric(10), "urn:imei:" + (350000000000000L + i),
+                    address, 10000 + i % 50000, new String("1.0"), 86400L, null, BindingMode.U, links, serverAddress);
+        }
+        return clients;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.impl;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.leshan.server.client.Client;
+import org.eclipse.leshan.server.client.ClientRegistryListener;
+import org.eclipse.leshan.server.impl.AsyncClientRegistryListener.OverflowPolicy;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AsyncClientRegistryListenerTest {
+
+    private AsyncClientRegistryListener listener;
+
+    @After
+    public void tearDown() {
+        if (listener != null) {
+            listener.stop();
+        }
+    }
+
+    @Test
+    public void events_of_an_endpoint_are_delivered_in_order() throws Exception {
+        RecordingListener recorder = new RecordingListener(null);
+        listener = new AsyncClientRegistryListener(recorder, 4, 1000, OverflowPolicy.BLOCK, 1000);
+
+        for (int i = 0; i < 100; i++) {
+            Client client = client("ep" + (i % 10), "reg" + i);
+            listener.registered(client);
+            listener.updated(client);
+            listener.unregistered(client);
+        }
+        recorder.awaitEvents(300);
+
+        for (int ep = 0; ep < 10; ep++) {
+            List<String> expected = new ArrayList<>();
+            for (int i = ep; i < 100; i += 10) {
+                expected.add("registered reg" + i);
+                expected.add("updated reg" + i);
+                expected.add("unregistered reg" + i);
+            }
+            Assert.assertEquals(expected, recorder.eventsOf("ep" + ep));
+        }
+        Assert.assertEquals(0, listener.getDroppedEvents());
+    }
+
+    @Test
+    public void newest_events_are_dropped_when_queue_is_full() throws Exception {
+        CountDownLatch blocker = new CountDownLatch(1);
+        RecordingListener recorder = new RecordingListener(blocker);
+        listener = new AsyncClientRegistryListener(recorder, 1, 2, OverflowPolicy.DROP_NEWEST, 1000);
+
+        // the first event blocks the worker, the two next ones fill the queue
+        listener.registered(client("ep", "reg1"));
+        recorder.awaitDelivering();
+        listener.updated(client("ep", "reg1"));
+        listener.updated(client("ep", "reg2"));
+        listener.updated(client("ep", "reg3"));
+        Assert.assertEquals(1, listener.getDroppedEvents());
+        Assert.assertEquals(2, listener.getPendingEvents());
+
+        blocker.countDown();
+        recorder.awaitEvents(3);
+        Assert.assertEquals(Arrays.asList("registered reg1", "updated reg1", "updated reg2"), recorder.eventsOf("ep"));
+    }
+
+    @Test
+    public void oldest_events_are_dropped_when_queue_is_full() throws Exception {
+        CountDownLatch blocker = new CountDownLatch(1);
+        RecordingListener recorder = new RecordingListener(blocker);
+        listener = new AsyncClientRegistryListener(recorder, 1, 2, OverflowPolicy.DROP_OLDEST, 1000);
+
+        listener.registered(client("ep", "reg1"));
+        recorder.awaitDelivering();
+        listener.updated(client("ep", "reg1"));
+        listener.updated(client("ep", "reg2"));
+        listener.updated(client("ep", "reg3"));
+        Assert.assertEquals(1, listener.getDroppedEvents());
+
+        blocker.countDown();
+        recorder.awaitEvents(3);
+        Assert.assertEquals(Arrays.asList("registered reg1", "updated reg2", "updated reg3"), recorder.eventsOf("ep"));
+    }
+
+    @Test
+    public void late_events_are_counted_as_lagging() throws Exception {
+        CountDownLatch blocker = new CountDownLatch(1);
+        RecordingListener recorder = new RecordingListener(blocker);
+        listener = new AsyncClientRegistryListener(recorder, 1, 10, OverflowPolicy.BLOCK, 0);
+
+        listener.registered(client("ep", "reg1"));
+        recorder.awaitDelivering();
+        listener.updated(client("ep", "reg1"));
+        Thread.sleep(5);
+        blocker.countDown();
+        recorder.awaitEvents(2);
+
+        Assert.assertTrue(listener.getLaggingEvents() >= 1);
+        Assert.assertEquals(0, listener.getDroppedEvents());
+    }
+
+    @Test
+    public void events_are_dropped_after_stop() {
+        listener = new AsyncClientRegistryListener(new RecordingListener(null));
+        listener.stop();
+        listener.registered(client("ep", "reg1"));
+        Assert.assertEquals(1, listener.getDroppedEvents());
+    }
+
+    private static Client client(String endpoint, String registrationId) {
+        return new Client(registrationId, endpoint, InetAddress.getLoopbackAddress(), 5683,
+                InetSocketAddress.createUnresolved("localhost", 5683));
+    }
+
+    private static class RecordingListener implements ClientRegistryListener {
+
+        private final CountDownLatch blocker;
+        private final CountDownLatch delivering = new CountDownLatch(1);
+        private final List<String[]> events = Collections.synchronizedList(new ArrayList<String[]>());
+
+        private RecordingListener(CountDownLatch blocker) {
+            this.blocker = blocker;
+        }
+
+        @Override
+        public void registered(Client client) {
+            record("registered", client);
+        }
+
+        @Override
+        public void updated(Client clientUpdated) {
+            record("updated", clientUpdated);
+        }
+
+        @Override
+        public void unregistered(Client client) {
+            record("unregistered", client);
+        }
+
+        private void record(String type, Client client) {
+            delivering.countDown();
+            if (blocker != null) {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            events.add(new String[] { client.getEndpoint(), type + " " + client.getRegistrationId() });
+        }
+
+        private void awaitDelivering() throws InterruptedException {
+            Assert.assertTrue(delivering.await(5, TimeUnit.SECONDS));
+        }
+
+        private void awaitEvents(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(count, events.size());
+        }
+
+        private List<String> eventsOf(String endpoint) {
+            List<String> result = new ArrayList<>();
+            synchronized (events) {
+                for (String[] event : events) {
+                    if (event[0].equals(endpoint)) {
+                        result.add(event[1]);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
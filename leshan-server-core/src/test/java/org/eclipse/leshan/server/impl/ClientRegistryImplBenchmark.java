@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.impl;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.eclipse.leshan.server.client.Client;
+
+/**
+ * Measures the cost of {@link ClientRegistryImpl#findByRegistrationId(String)} for growing registry sizes.
+ * 
+ * This is not a unit test: run the <code>main</code> method manually, the lookup time should stay flat whatever the
+ * number of registered clients.
+ */
+public class ClientRegistryImplBenchmark {
+
+    private static final int[] REGISTRY_SIZES = { 1000, 10000, 100000, 200000 };
+    private static final int LOOKUPS = 1000000;
+
+    public static void main(String[] args) {
+        InetAddress address = InetAddress.getLoopbackAddress();
+        InetSocketAddress registrationAddress = InetSocketAddress.createUnresolved("localhost", 5683);
+
+        for (int size : REGISTRY_SIZES) {
+            ClientRegistryImpl registry = new ClientRegistryImpl();
+            String[] registrationIds = new String[size];
+            for (int i = 0; i < size; i++) {
+                registrationIds[i] = "reg" + i;
+                registry.registerClient(new Client(registrationIds[i], "urn:client:" + i, address, 10000 + i % 50000,
+                        registrationAddress));
+            }
+
+            // warm up
+            lookup(registry, registrationIds, LOOKUPS);
+
+            long start = System.nanoTime();
+            int found = lookup(registry, registrationIds, LOOKUPS);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%7d clients: %6.1f ns/lookup (%d found)%n", size, (double) elapsed / LOOKUPS, found);
+        }
+    }
+
+    private static int lookup(ClientRegistryImpl registry, String[] registrationIds, int count) {
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            if (registry.findByRegistrationId(registrationIds[(i * 31) % registrationIds.length]) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
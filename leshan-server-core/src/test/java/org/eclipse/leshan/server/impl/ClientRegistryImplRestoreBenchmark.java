@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.impl;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.eclipse.leshan.LinkObject;
+import org.eclipse.leshan.core.request.BindingMode;
+import org.eclipse.leshan.server.client.Client;
+import org.eclipse.leshan.server.client.ClientUpdate;
+import org.eclipse.leshan.util.Charsets;
+
+/**
+ * Measures the registration write latency and the restart time of a persistent {@link ClientRegistryImpl}.
+ * 
+ * This is not a unit test: run the <code>main</code> method manually, optionally giving the number of clients (1M by
+ * default, the JVM needs about 2 GB of heap).
+ */
+public class ClientRegistryImplRestoreBenchmark {
+
+    private static final int DEFAULT_CLIENTS = 1000000;
+
+    private static final String[] PAYLOADS = { "</>;rt=\"oma.lwm2m\", </1/0>, </3/0>, </4/0>, </5>, </6>",
+                            "</>;rt=\"oma.lwm2m\", </1/0>, </3/0>, </4/0>, </5>, </6>, </7>, </3303/0>",
+                            "</1/0>, </2/0>, </2/1>, </3/0>, </4/0>, </5>, </6/0>, </7>, </9/0>, </9/1>" };
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS;
+
+        LinkObject[][] links = new LinkObject[PAYLOADS.length][];
+        for (int i = 0; i < PAYLOADS.length; i++) {
+            links[i] = LinkObject.parse(PAYLOADS[i].getBytes(Charsets.UTF_8));
+        }
+        InetSocketAddress serverAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), 5684);
+
+        File file = File.createTempFile("clients", ".data");
+        file.delete();
+        try {
+            ClientRegistryImpl registry = new ClientRegistryImpl(file.getPath());
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                registry.registerClient(new Client("reg" + i, "urn:client:" + i, address(i), 10000 + i % 50000,
+                        "1.0", 86400L, null, BindingMode.U, links[i % links.length], serverAddress));
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("register: %d clients, %.1f us/registration%n", count, elapsed / 1000.0 / count);
+
+            int updates = count / 2;
+            start = System.nanoTime();
+            for (int i = 0; i < updates; i++) {
+                registry.updateClient(new ClientUpdate("reg" + i, address(i), 10000 + i % 50000, null, null, null,
+                        null));
+            }
+            elapsed = System.nanoTime() - start;
+            System.out.printf("update: %d clients, %.1f us/update%n", updates, elapsed / 1000.0 / updates);
+            registry.destroy();
+            registry = null;
+
+            start = System.nanoTime();
+            ClientRegistryImpl restored = new ClientRegistryImpl(file.getPath());
+            elapsed = System.nanoTime() - start;
+            System.out.printf("restart: %d clients restored in %d ms (file size: %d MB)%n", restored.allClients()
+                    .size(), elapsed / 1000000, file.length() / 1024 / 1024);
+
+            start = System.nanoTime();
+            restored.compactIfNeeded();
+            elapsed = System.nanoTime() - start;
+            System.out.printf("compaction: %d ms (file size: %d MB)%n", elapsed / 1000000,
+                    file.length() / 1024 / 1024);
+            restored.destroy();
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static InetAddress address(int i) throws Exception {
+        return InetAddress.getByAddress(new byte[] { 10, (byte) (i >> 16), (byte) (i >> 8), (byte) i });
+    }
+}
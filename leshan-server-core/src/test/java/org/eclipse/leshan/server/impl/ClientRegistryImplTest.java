@@ -15,19 +15,35 @@
  *******************************************************************************/
 package org.eclipse.leshan.server.impl;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.eclipse.leshan.LinkObject;
 import org.eclipse.leshan.core.request.BindingMode;
 import org.eclipse.leshan.server.client.Client;
+import org.eclipse.leshan.server.client.ClientQuery;
+import org.eclipse.leshan.server.client.ClientRegistryListener;
 import org.eclipse.leshan.server.client.ClientUpdate;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class ClientRegistryImplTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     ClientRegistryImpl registry;
     String ep = "urn:endpoint";
     InetAddress address;
@@ -83,6 +99,371 @@ public class ClientRegistryImplTest {
         Assert.assertTrue(registeredClient.isAlive());
     }
 
+    @Test
+    public void find_by_registration_id_follows_registration_lifecycle() {
+        givenASimpleClient(lifetime);
+        registry.registerClient(client);
+        Assert.assertSame(client, registry.findByRegistrationId(registrationId));
+
+        ClientUpdate update = new ClientUpdate(registrationId, address, port, lifetime, null, null, null);
+        Client updatedClient = registry.updateClient(update);
+        Assert.assertSame(updatedClient, registry.findByRegistrationId(registrationId));
+
+        registry.deregisterClient(registrationId);
+        Assert.assertNull(registry.findByRegistrationId(registrationId));
+        Assert.assertNull(registry.get(ep));
+    }
+
+    @Test
+    public void new_registration_replaces_previous_registration_id() {
+        givenASimpleClient(lifetime);
+        registry.registerClient(client);
+
+        Client newClient = new Client("4712", ep, address, port, null, lifetime, sms, binding, objectLinks,
+                InetSocketAddress.createUnresolved("localhost", 5683));
+        registry.registerClient(newClient);
+
+        Assert.assertNull(registry.findByRegistrationId(registrationId));
+        Assert.assertSame(newClient, registry.findByRegistrationId("4712"));
+        Assert.assertNull(registry.updateClient(new ClientUpdate(registrationId, address, port, null, null, null,
+                null)));
+        Assert.assertNull(registry.deregisterClient(registrationId));
+        Assert.assertSame(newClient, registry.get(ep));
+    }
+
+    @Test
+    public void expired_client_is_unregistered_once() {
+        final List<Client> unregistered = new ArrayList<>();
+        registry.addListener(new ClientRegistryListener() {
+            @Override
+            public void updated(Client clientUpdated) {
+            }
+
+            @Override
+            public void unregistered(Client client) {
+                unregistered.add(client);
+            }
+
+            @Override
+            public void registered(Client client) {
+            }
+        });
+        givenASimpleClient(0L);
+        registry.registerClient(client);
+
+        registry.removeExpiredClients();
+        registry.removeExpiredClients();
+
+        Assert.assertEquals(1, unregistered.size());
+        Assert.assertSame(client, unregistered.get(0));
+        Assert.assertNull(registry.get(ep));
+        Assert.assertNull(registry.findByRegistrationId(registrationId));
+    }
+
+    @Test
+    public void updated_client_does_not_expire() {
+        givenASimpleClient(0L);
+        registry.registerClient(client);
+
+        ClientUpdate update = new ClientUpdate(registrationId, address, port, lifetime, null, null, null);
+        registry.updateClient(update);
+        registry.removeExpiredClients();
+
+        Assert.assertNotNull(registry.get(ep));
+    }
+
+    @Test
+    public void client_with_shortened_lifetime_expires() {
+        givenASimpleClient(lifetime);
+        registry.registerClient(client);
+
+        ClientUpdate update = new ClientUpdate(registrationId, address, port, 0L, null, null, null);
+        registry.updateClient(update);
+        registry.removeExpiredClients();
+
+        Assert.assertNull(registry.get(ep));
+    }
+
+    @Test
+    public void find_by_address_follows_address_changes() {
+        givenASimpleClient(lifetime);
+        registry.registerClient(client);
+        Assert.assertSame(client, registry.findByAddress(new InetSocketAddress(address, port)));
+
+        ClientUpdate update = new ClientUpdate(registrationId, address, port + 1, null, null, null, null);
+        Client updatedClient = registry.updateClient(update);
+        Assert.assertNull(registry.findByAddress(new InetSocketAddress(address, port)));
+        Assert.assertSame(updatedClient, registry.findByAddress(new InetSocketAddress(address, port + 1)));
+
+        registry.deregisterClient(registrationId);
+        Assert.assertNull(registry.findByAddress(new InetSocketAddress(address, port + 1)));
+    }
+
+    @Test
+    public void find_by_address_keeps_address_taken_over_by_another_client() {
+        givenASimpleClient(lifetime);
+        registry.registerClient(client);
+        Client other = new Client("4712", "urn:other", address, port, null, lifetime, sms, binding, objectLinks,
+                InetSocketAddress.createUnresolved("localhost", 5683));
+        registry.registerClient(other);
+
+        registry.deregisterClient(registrationId);
+        Assert.assertSame(other, registry.findByAddress(new InetSocketAddress(address, port)));
+    }
+
+    @Test
+    public void keep_alive_update_refreshes_client_in_place() throws InterruptedException {
+        final List<Client> updated = new ArrayList<>();
+        registry.addListener(new ClientRegistryListener() {
+            @Override
+            public void updated(Client clientUpdated) {
+                updated.add(clientUpdated);
+            }
+
+            @Override
+            public void unregistered(Client client) {
+            }
+
+            @Override
+            public void registered(Client client) {
+            }
+        });
+        givenASimpleClient(lifetime);
+        registry.registerClient(client);
+        long expiration = client.getExpirationTime();
+        Thread.sleep(5);
+
+        Client updatedClient = registry.updateClient(new ClientUpdate(registrationId, address, port, lifetime, null,
+                null, null));
+        Assert.assertSame(client, updatedClient);
+        Assert.assertTrue(client.getExpirationTime() > expiration);
+        Assert.assertEquals(1, updated.size());
+
+        registry.setNotifyKeepAlives(false);
+        registry.updateClient(new ClientUpdate(registrationId, address, port, null, null, null, null));
+        Assert.assertEquals(1, updated.size());
+
+        // not a keep-alive
+        updatedClient = registry.updateClient(new ClientUpdate(registrationId, address, port, lifetime + 1, null,
+                null, null));
+        Assert.assertNotSame(client, updatedClient);
+        Assert.assertEquals(2, updated.size());
+    }
+
+    @Test
+    public void kept_alive_client_does_not_expire() {
+        registry.registerClient(new Client(registrationId, ep, address, port, null, 1L, sms, binding, objectLinks,
+                InetSocketAddress.createUnresolved("localhost", 5683), null, new Date(0)));
+
+        registry.updateClient(new ClientUpdate(registrationId, address, port, null, null, null, null));
+        registry.removeExpiredClients();
+
+        Assert.assertNotNull(registry.get(ep));
+    }
+
+    @Test
+    public void find_selects_clients_by_object_binding_and_port() {
+        givenASimpleClient(lifetime);
+        registry.registerClient(client);
+        Client other = new Client("4712", "urn:other", address, port + 1, null, lifetime, sms, BindingMode.U,
+                LinkObject.parse("</3/0>,</5>".getBytes(org.eclipse.leshan.util.Charsets.UTF_8)),
+                InetSocketAddress.createUnresolved("localhost", 5684));
+        registry.registerClient(other);
+
+        assertFound(registry.find(new ClientQuery().withObjectId(3)), client, other);
+        assertFound(registry.find(new ClientQuery().withObjectId(3).withObjectId(5)), other);
+        assertFound(registry.find(new ClientQuery().withObjectId(4)));
+        assertFound(registry.find(new ClientQuery().withBindingMode(BindingMode.UQS)), client);
+        assertFound(registry.find(new ClientQuery().withObjectId(3).withRegistrationPort(5684)), other);
+        assertFound(registry.find(new ClientQuery()), client, other);
+    }
+
+    @Test
+    public void find_follows_registration_updates() {
+        givenASimpleClient(lifetime);
+        registry.registerClient(client);
+
+        LinkObject[] newLinks = LinkObject.parse("</5>".getBytes(org.eclipse.leshan.util.Charsets.UTF_8));
+        Client updatedClient = registry.updateClient(new ClientUpdate(registrationId, address, port, null, null,
+                BindingMode.U, newLinks));
+        assertFound(registry.find(new ClientQuery().withObjectId(3)));
+        assertFound(registry.find(new ClientQuery().withBindingMode(BindingMode.UQS)));
+        assertFound(registry.find(new ClientQuery().withObjectId(5).withBindingMode(BindingMode.U)), updatedClient);
+
+        registry.deregisterClient(registrationId);
+        assertFound(registry.find(new ClientQuery().withObjectId(5)));
+    }
+
+    @Test
+    public void find_indexes_do_not_keep_departed_clients_keys() {
+        givenASimpleClient(lifetime);
+        registry.registerClient(client);
+        Client other = new Client("4712", "urn:other", address, port + 1, null, lifetime, sms, BindingMode.U,
+                LinkObject.parse("</3/0>,</1024>".getBytes(org.eclipse.leshan.util.Charsets.UTF_8)),
+                InetSocketAddress.createUnresolved("localhost", 5684));
+        registry.registerClient(other);
+        Assert.assertEquals(2, registry.clientsByObjectId.size());
+
+        registry.deregisterClient("4712");
+        Assert.assertEquals(1, registry.clientsByObjectId.size());
+        Assert.assertNotNull(registry.clientsByObjectId.get(3));
+        Assert.assertNull(registry.clientsByBindingMode.get(BindingMode.U));
+        Assert.assertNull(registry.clientsByRegistrationPort.get(5684));
+
+        // the first client no longer supports the object 3
+        registry.updateClient(new ClientUpdate(registrationId, address, port, null, null, null,
+                LinkObject.parse("</5>".getBytes(org.eclipse.leshan.util.Charsets.UTF_8))));
+        Assert.assertNull(registry.clientsByObjectId.get(3));
+        Assert.assertNotNull(registry.clientsByObjectId.get(5));
+
+        registry.deregisterClient(registrationId);
+        Assert.assertTrue(registry.clientsByObjectId.isEmpty());
+        Assert.assertTrue(registry.clientsByBindingMode.isEmpty());
+        Assert.assertTrue(registry.clientsByRegistrationPort.isEmpty());
+        Assert.assertTrue(registry.clientsByLastUpdate.isEmpty());
+    }
+
+    @Test
+    public void find_selects_idle_clients() {
+        givenASimpleClient(lifetime);
+        registry.registerClient(client);
+
+        long lastUpdate = client.getLastUpdate().getTime();
+        assertFound(registry.find(new ClientQuery().withLastUpdateBefore(lastUpdate)));
+        assertFound(registry.find(new ClientQuery().withObjectId(3).withLastUpdateBefore(lastUpdate + 1)), client);
+        assertFound(registry.find(new ClientQuery().withLastUpdateBefore(lastUpdate + 1)), client);
+    }
+
+    @Test
+    public void find_follows_keep_alives_of_idle_clients() throws InterruptedException {
+        givenASimpleClient(lifetime);
+        registry.registerClient(client);
+        long lastUpdate = client.getLastUpdateTime();
+        Thread.sleep(5);
+
+        registry.updateClient(new ClientUpdate(registrationId, address, port, null, null, null, null));
+        assertFound(registry.find(new ClientQuery().withLastUpdateBefore(lastUpdate + 1)));
+        assertFound(registry.find(new ClientQuery().withLastUpdateBefore(client.getLastUpdateTime() + 1)), client);
+        Assert.assertEquals(1, registry.clientsByLastUpdate.size());
+    }
+
+    private static void assertFound(Collection<Client> found, Client... expected) {
+        Assert.assertEquals(expected.length, found.size());
+        for (Client client : expected) {
+            Assert.assertTrue(found.contains(client));
+        }
+    }
+
+    @Test
+    public void registrations_are_restored() {
+        String file = new File(folder.getRoot(), "clients.data").getPath();
+        registry = new ClientRegistryImpl(file);
+        givenASimpleClient(lifetime);
+        registry.registerClient(client);
+        registry.registerClient(new Client("4712", "urn:other", address, port + 1, null, lifetime, null, null, null,
+                new InetSocketAddress(address, 5684)));
+        registry.updateClient(new ClientUpdate(registrationId, address, port + 2, null, null, null, null));
+        registry.deregisterClient("4712");
+        registry.destroy();
+
+        ClientRegistryImpl restored = new ClientRegistryImpl(file);
+        Assert.assertEquals(1, restored.allClients().size());
+        Assert.assertNull(restored.findByRegistrationId("4712"));
+
+        Client restoredClient = restored.findByRegistrationId(registrationId);
+        Assert.assertEquals(ep, restoredClient.getEndpoint());
+        Assert.assertEquals(port + 2, restoredClient.getPort());
+        Assert.assertEquals(lifetime, restoredClient.getLifeTimeInSec());
+        Assert.assertEquals(sms, restoredClient.getSmsNumber());
+        Assert.assertSame(binding, restoredClient.getBindingMode());
+        Assert.assertArrayEquals(objectLinks, restoredClient.getObjectLinks());
+        Assert.assertEquals(client.getRegistrationDate(), restoredClient.getRegistrationDate());
+        Assert.assertEquals(client.getRegistrationEndpointAddress(), restoredClient.getRegistrationEndpointAddress());
+        Assert.assertSame(restoredClient, restored.findByAddress(new InetSocketAddress(address, port + 2)));
+    }
+
+    @Test
+    public void keep_alives_are_restored() throws InterruptedException {
+        File file = new File(folder.getRoot(), "clients.data");
+        registry = new ClientRegistryImpl(file.getPath());
+        givenASimpleClient(lifetime);
+        registry.registerClient(client);
+        long registrationLength = file.length();
+        Thread.sleep(5);
+
+        registry.updateClient(new ClientUpdate(registrationId, address, port, null, null, null, null));
+        // only the last update time is appended
+        Assert.assertTrue(file.length() - registrationLength < 64);
+        registry.destroy();
+
+        Client restoredClient = new ClientRegistryImpl(file.getPath()).findByRegistrationId(registrationId);
+        Assert.assertEquals(client.getLastUpdate(), restoredClient.getLastUpdate());
+        Assert.assertEquals(client.getExpirationTime(), restoredClient.getExpirationTime());
+    }
+
+    @Test
+    public void registrations_expired_during_restart_are_removed() {
+        String file = new File(folder.getRoot(), "clients.data").getPath();
+        registry = new ClientRegistryImpl(file);
+        givenASimpleClient(0L);
+        registry.registerClient(client);
+        registry.destroy();
+
+        ClientRegistryImpl restored = new ClientRegistryImpl(file);
+        Assert.assertNotNull(restored.get(ep));
+        restored.removeExpiredClients();
+        Assert.assertNull(restored.get(ep));
+        restored.destroy();
+
+        Assert.assertTrue(new ClientRegistryImpl(file).allClients().isEmpty());
+    }
+
+    @Test
+    public void registrations_are_not_restored_from_a_corrupt_file() throws IOException {
+        String file = new File(folder.getRoot(), "clients.data").getPath();
+        registry = new ClientRegistryImpl(file);
+        for (int i = 0; i < 10; i++) {
+            registry.registerClient(new Client("reg" + i, "urn:ep" + i, address, port + i, null, lifetime, null,
+                    binding, objectLinks, new InetSocketAddress(address, 5683)));
+        }
+        registry.destroy();
+
+        // an invalid port in one of the records: the registrations restored before it must be dropped too
+        KeyValueJournal<byte[]> journal = new KeyValueJournal<>(new File(file),
+                new KeyValueJournal.Serializer<byte[]>() {
+                    @Override
+                    public byte[] serialize(byte[] value) {
+                        return value;
+                    }
+
+                    @Override
+                    public byte[] deserialize(byte[] bytes) {
+                        return bytes;
+                    }
+                });
+        Map<String, byte[]> records = new HashMap<>();
+        journal.open(records);
+        byte[] record = records.get("urn:ep5");
+        // version, registration id, end-point and address come before the port
+        int portOffset = 1 + (2 + "reg5".length()) + (2 + "urn:ep5".length()) + (1 + address.getAddress().length);
+        ByteBuffer.wrap(record).putInt(portOffset, 70000);
+        journal.put("urn:ep5", record);
+        journal.close();
+
+        ClientRegistryImpl restored = new ClientRegistryImpl(file);
+        Assert.assertTrue(restored.allClients().isEmpty());
+        Assert.assertEquals(0, restored.expirationQueue.size());
+        Assert.assertTrue(restored.find(new ClientQuery()).isEmpty());
+        Assert.assertTrue(restored.find(new ClientQuery().withObjectId(3)).isEmpty());
+        Assert.assertTrue(restored.clientsByObjectId.isEmpty());
+        Assert.assertTrue(restored.clientsByBindingMode.isEmpty());
+        Assert.assertTrue(restored.clientsByRegistrationPort.isEmpty());
+        for (int i = 0; i < 10; i++) {
+            Assert.assertNull(restored.findByRegistrationId("reg" + i));
+            Assert.assertNull(restored.findByAddress(new InetSocketAddress(address, port + i)));
+        }
+    }
+
     private void givenASimpleClient(Long lifetime) {
         client = new Client(registrationId, ep, address, port, null, lifetime, sms, binding, objectLinks,
                 InetSocketAddress.createUnresolved("localhost", 5683));
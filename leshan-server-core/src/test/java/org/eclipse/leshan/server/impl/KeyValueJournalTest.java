@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.leshan.util.Charsets;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class KeyValueJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    File file;
+    KeyValueJournal<String> journal;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "data/journal.data");
+        journal = newJournal();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        journal.close();
+    }
+
+    @Test
+    public void replay_puts_and_removes() throws IOException {
+        journal.open(new HashMap<String, String>());
+        journal.put("ep1", "v1");
+        journal.put("ep2", "v2");
+        journal.put("ep1", "v1bis");
+        journal.remove("ep2");
+        journal.close();
+
+        Map<String, String> content = reopen();
+        Assert.assertEquals(1, content.size());
+        Assert.assertEquals("v1bis", content.get("ep1"));
+        Assert.assertEquals(4, journal.size());
+    }
+
+    @Test
+    public void truncated_record_is_discarded() throws IOException {
+        journal.open(new HashMap<String, String>());
+        journal.put("ep1", "v1");
+        journal.put("ep2", "v2");
+        journal.close();
+
+        // simulate a crash in the middle of the last write
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        Map<String, String> content = reopen();
+        Assert.assertEquals(1, content.size());
+        Assert.assertEquals("v1", content.get("ep1"));
+
+        // the journal is still usable
+        journal.put("ep3", "v3");
+        journal.close();
+        content = reopen();
+        Assert.assertEquals(2, content.size());
+        Assert.assertEquals("v3", content.get("ep3"));
+    }
+
+    @Test
+    public void compaction_keeps_content() throws IOException {
+        Map<String, String> content = new HashMap<>();
+        journal.open(content);
+        for (int i = 0; i < 10; i++) {
+            content.put("ep" + i, "v" + i);
+            journal.put("ep" + i, "v" + i);
+        }
+        for (int i = 0; i < 8; i++) {
+            content.remove("ep" + i);
+            journal.remove("ep" + i);
+        }
+        Assert.assertTrue(journal.needsCompaction(content.size()));
+
+        journal.compact(content);
+        Assert.assertEquals(2, journal.size());
+        journal.put("ep10", "v10");
+        journal.close();
+
+        Map<String, String> reloaded = reopen();
+        Assert.assertEquals(3, reloaded.size());
+        Assert.assertEquals("v8", reloaded.get("ep8"));
+        Assert.assertEquals("v10", reloaded.get("ep10"));
+    }
+
+    @Test
+    public void changes_done_during_compaction_are_kept() throws IOException {
+        final Map<String, String> content = new HashMap<>();
+        journal.open(content);
+        content.put("ep1", "v1");
+        journal.put("ep1", "v1");
+
+        // modify the content while the snapshot is being written
+        Map<String, String> racingContent = new HashMap<String, String>(content) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public java.util.Set<java.util.Map.Entry<String, String>> entrySet() {
+                try {
+                    journal.put("ep2", "v2");
+                    journal.remove("ep1");
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.entrySet();
+            }
+        };
+        journal.compact(racingContent);
+        journal.close();
+
+        Map<String, String> reloaded = reopen();
+        Assert.assertEquals(1, reloaded.size());
+        Assert.assertEquals("v2", reloaded.get("ep2"));
+    }
+
+    @Test
+    public void replay_applies_updates_of_existing_entries() throws IOException {
+        journal.open(new HashMap<String, String>());
+        journal.put("ep1", "v1");
+        journal.update("ep1", "+u1".getBytes(Charsets.UTF_8));
+        journal.remove("ep2");
+        journal.update("ep2", "+u2".getBytes(Charsets.UTF_8));
+        journal.close();
+
+        Map<String, String> content = reopen();
+        Assert.assertEquals(1, content.size());
+        Assert.assertEquals("v1+u1", content.get("ep1"));
+    }
+
+    private Map<String, String> reopen() throws IOException {
+        journal = newJournal();
+        Map<String, String> content = new HashMap<>();
+        journal.open(content);
+        return content;
+    }
+
+    private KeyValueJournal<String> newJournal() {
+        return new KeyValueJournal<>(file, new KeyValueJournal.Serializer<String>() {
+
+            @Override
+            public byte[] serialize(String value) {
+                return value.getBytes(Charsets.UTF_8);
+            }
+
+            @Override
+            public String deserialize(byte[] bytes) {
+                return new String(bytes, Charsets.UTF_8);
+            }
+        }, new KeyValueJournal.Updater<String>() {
+
+            @Override
+            public String update(String value, byte[] update) {
+                return value + new String(update, Charsets.UTF_8);
+            }
+        }, false, 5);
+    }
+}
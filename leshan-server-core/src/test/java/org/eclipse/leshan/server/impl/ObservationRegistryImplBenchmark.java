@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.impl;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+
+import org.eclipse.leshan.core.node.LwM2mPath;
+import org.eclipse.leshan.core.observation.Observation;
+import org.eclipse.leshan.core.observation.ObservationListener;
+import org.eclipse.leshan.server.client.Client;
+
+/**
+ * Measures the throughput of {@link ObservationRegistryImpl} when many threads add and cancel observations of
+ * unrelated clients, as during a mass re-registration.
+ * 
+ * This is not a unit test: run the <code>main</code> method manually.
+ */
+public class ObservationRegistryImplBenchmark {
+
+    private static final int[] THREADS = { 1, 2, 4, 8, 16 };
+    private static final int CLIENTS_PER_THREAD = 2000;
+    private static final int OBSERVATIONS_PER_CLIENT = 5;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws InterruptedException {
+        // warm up
+        run(4);
+
+        for (int threads : THREADS) {
+            long elapsed = run(threads);
+            long operations = (long) threads * ROUNDS * CLIENTS_PER_THREAD * (OBSERVATIONS_PER_CLIENT + 1);
+            System.out.printf("%2d threads: %,12.0f operations/s%n", threads, operations * 1e9 / elapsed);
+        }
+    }
+
+    private static long run(int threads) throws InterruptedException {
+        final ObservationRegistryImpl registry = new ObservationRegistryImpl();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        InetAddress address = InetAddress.getLoopbackAddress();
+                        InetSocketAddress registrationAddress = InetSocketAddress.createUnresolved("localhost", 5683);
+                        for (int r = 0; r < ROUNDS; r++) {
+                            for (int c = 0; c < CLIENTS_PER_THREAD; c++) {
+                                String registrationId = thread + "-" + c;
+                                for (int o = 0; o < OBSERVATIONS_PER_CLIENT; o++) {
+                                    registry.addObservation(new BenchObservation(registrationId, new LwM2mPath(3, 0,
+                                            o)));
+                                }
+                                registry.cancelObservations(new Client(registrationId, "ep" + registrationId,
+                                        address, 5683, registrationAddress));
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - begin;
+    }
+
+    private static class BenchObservation implements Observation {
+
+        private final String registrationId;
+        private final LwM2mPath path;
+        private volatile ObservationListener listener;
+
+        public BenchObservation(String registrationId, LwM2mPath path) {
+            this.registrationId = registrationId;
+            this.path = path;
+        }
+
+        @Override
+        public String getRegistrationId() {
+            return registrationId;
+        }
+
+        @Override
+        public LwM2mPath getPath() {
+            return path;
+        }
+
+        @Override
+        public void cancel() {
+            ObservationListener l = listener;
+            if (l != null) {
+                l.cancelled(this);
+            }
+        }
+
+        @Override
+        public void addListener(ObservationListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void removeListener(ObservationListener listener) {
+            this.listener = null;
+        }
+    }
+}
@@ -16,6 +16,8 @@
 package org.eclipse.leshan.server.impl;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.leshan.core.node.LwM2mPath;
 import org.eclipse.leshan.core.observation.Observation;
@@ -46,10 +48,46 @@ public class ObservationRegistryImplTest extends BasicTestSupport {
         Assert.assertSame(1, registry.cancelObservations(client));
     }
 
+    @Test
+    public void add_duplicate_observation_cancels_and_replaces_previous_one() throws IOException {
+        givenASimpleClient();
+
+        ObservationImpl obs = new ObservationImpl(client.getRegistrationId(), new LwM2mPath(3, 0, 15));
+        registry.addObservation(obs);
+
+        ObservationImpl duplicate = new ObservationImpl(client.getRegistrationId(), new LwM2mPath(3, 0, 15));
+        registry.addObservation(duplicate);
+
+        Assert.assertTrue(obs.cancelled);
+        Assert.assertFalse(duplicate.cancelled);
+        Assert.assertEquals(1, registry.getObservations(client).size());
+        Assert.assertSame(duplicate, registry.getObservations(client).iterator().next());
+    }
+
+    @Test
+    public void cancel_observation() throws IOException {
+        givenASimpleClient();
+
+        ObservationImpl obs1 = new ObservationImpl(client.getRegistrationId(), new LwM2mPath(3, 0, 15));
+        ObservationImpl obs2 = new ObservationImpl(client.getRegistrationId(), new LwM2mPath(3, 0, 14));
+        registry.addObservation(obs1);
+        registry.addObservation(obs2);
+
+        registry.cancelObservation(client, "/3/0/15");
+        Assert.assertTrue(obs1.cancelled);
+        Assert.assertEquals(1, registry.getObservations(client).size());
+
+        registry.cancelObservation(client, "/3/0/14");
+        Assert.assertTrue(obs2.cancelled);
+        Assert.assertTrue(registry.getObservations(client).isEmpty());
+    }
+
     private class ObservationImpl implements Observation {
 
         private String registrationId;
         private LwM2mPath path;
+        private List<ObservationListener> listeners = new CopyOnWriteArrayList<>();
+        private boolean cancelled;
 
         public ObservationImpl(String registrationId, LwM2mPath path) {
             this.registrationId = registrationId;
@@ -68,14 +106,21 @@ public class ObservationRegistryImplTest extends BasicTestSupport {
 
         @Override
         public void cancel() {
+            // like the Californium observation, notify the listeners synchronously
+            cancelled = true;
+            for (ObservationListener listener : listeners) {
+                listener.cancelled(this);
+            }
         }
 
         @Override
         public void addListener(ObservationListener listener) {
+            listeners.add(listener);
         }
 
         @Override
         public void removeListener(ObservationListener listener) {
+            listeners.remove(listener);
         }
     }
 }
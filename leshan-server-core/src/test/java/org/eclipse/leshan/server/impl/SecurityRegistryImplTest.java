@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import org.eclipse.leshan.server.security.NonUniqueSecurityInfoException;
+import org.eclipse.leshan.server.security.SecurityInfo;
+import org.eclipse.leshan.util.Charsets;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SecurityRegistryImplTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void security_infos_are_reloaded() throws NonUniqueSecurityInfoException {
+        String file = new File(folder.getRoot(), "security.data").getPath();
+        SecurityRegistryImpl registry = new SecurityRegistryImpl(file, null, null);
+        registry.add(pskInfo("ep1", "id1"));
+        registry.add(pskInfo("ep2", "id2"));
+        registry.add(pskInfo("ep1", "id1bis"));
+        registry.remove("ep2");
+
+        SecurityRegistryImpl reloaded = new SecurityRegistryImpl(file, null, null);
+        Assert.assertEquals(1, reloaded.getAll().size());
+        Assert.assertEquals("id1bis", reloaded.getByEndpoint("ep1").getIdentity());
+        Assert.assertNotNull(reloaded.getByIdentity("id1bis"));
+        Assert.assertNull(reloaded.getByIdentity("id1"));
+        Assert.assertNull(reloaded.getByEndpoint("ep2"));
+    }
+
+    @Test
+    public void serialized_file_is_migrated() throws IOException, NonUniqueSecurityInfoException {
+        File file = new File(folder.getRoot(), "security.data");
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(new SecurityInfo[] { pskInfo("ep1", "id1"), pskInfo("ep2", "id2") });
+        }
+
+        SecurityRegistryImpl registry = new SecurityRegistryImpl(file.getPath(), null, null);
+        Assert.assertEquals(2, registry.getAll().size());
+        Assert.assertTrue(KeyValueJournal.isJournal(file));
+        Assert.assertTrue(new File(file.getPath() + ".bak").exists());
+
+        registry.add(pskInfo("ep3", "id3"));
+        SecurityRegistryImpl reloaded = new SecurityRegistryImpl(file.getPath(), null, null);
+        Assert.assertEquals(3, reloaded.getAll().size());
+        Assert.assertEquals("id2", reloaded.getByEndpoint("ep2").getIdentity());
+    }
+
+    @Test
+    public void add_all_reports_non_unique_infos() throws NonUniqueSecurityInfoException {
+        String file = new File(folder.getRoot(), "security.data").getPath();
+        SecurityRegistryImpl registry = new SecurityRegistryImpl(file, null, null);
+        registry.add(pskInfo("ep1", "id1"));
+
+        Map<Integer, NonUniqueSecurityInfoException> failures = registry.addAll(Arrays.asList(pskInfo("ep2", "id1"),
+                pskInfo("ep3", "id3"), pskInfo("ep4", "id3"), pskInfo("ep5", "id5")));
+
+        Assert.assertEquals(2, failures.size());
+        Assert.assertTrue(failures.containsKey(0));
+        Assert.assertTrue(failures.containsKey(2));
+        Assert.assertEquals(3, registry.getAll().size());
+
+        SecurityRegistryImpl reloaded = new SecurityRegistryImpl(file, null, null);
+        Assert.assertEquals(3, reloaded.getAll().size());
+        Assert.assertEquals("ep3", reloaded.getByIdentity("id3").getEndpoint());
+    }
+
+    @Test
+    public void add_all_with_duplicated_endpoint() throws NonUniqueSecurityInfoException {
+        String file = new File(folder.getRoot(), "security.data").getPath();
+        SecurityRegistryImpl registry = new SecurityRegistryImpl(file, null, null);
+
+        Map<Integer, NonUniqueSecurityInfoException> failures = registry.addAll(Arrays.asList(pskInfo("ep1", "id1"),
+                pskInfo("ep2", "id2"), pskInfo("ep1", "id3"), pskInfo("ep1", "id4")));
+
+        // the failures are reported by position, not by end-point
+        Assert.assertEquals(2, failures.size());
+        Assert.assertTrue(failures.containsKey(2));
+        Assert.assertTrue(failures.containsKey(3));
+        Assert.assertEquals(2, registry.getAll().size());
+        Assert.assertEquals("id1", registry.getByEndpoint("ep1").getIdentity());
+        Assert.assertNull(registry.getByIdentity("id3"));
+
+        SecurityRegistryImpl reloaded = new SecurityRegistryImpl(file, null, null);
+        Assert.assertEquals("id1", reloaded.getByEndpoint("ep1").getIdentity());
+    }
+
+    @Test
+    public void remove_all() throws NonUniqueSecurityInfoException {
+        String file = new File(folder.getRoot(), "security.data").getPath();
+        SecurityRegistryImpl registry = new SecurityRegistryImpl(file, null, null);
+        registry.addAll(Arrays.asList(pskInfo("ep1", "id1"), pskInfo("ep2", "id2"), pskInfo("ep3", "id3")));
+
+        Collection<SecurityInfo> removed = registry.removeAll(Arrays.asList("ep1", "ep3", "unknown"));
+        Assert.assertEquals(2, removed.size());
+        Assert.assertNull(registry.getByIdentity("id1"));
+
+        SecurityRegistryImpl reloaded = new SecurityRegistryImpl(file, null, null);
+        Assert.assertEquals(1, reloaded.getAll().size());
+        Assert.assertNotNull(reloaded.getByEndpoint("ep2"));
+    }
+
+    @Test
+    public void file_is_compacted_outside_of_the_changes() throws NonUniqueSecurityInfoException {
+        File file = new File(folder.getRoot(), "security.data");
+        SecurityRegistryImpl registry = new SecurityRegistryImpl(file.getPath(), null, null);
+        for (int i = 0; i < 2000; i++) {
+            registry.add(pskInfo("ep1", "id" + i));
+        }
+        long journalLength = file.length();
+
+        registry.compactIfNeeded();
+        Assert.assertTrue(file.length() < journalLength / 100);
+        registry.destroy();
+
+        SecurityRegistryImpl reloaded = new SecurityRegistryImpl(file.getPath(), null, null);
+        Assert.assertEquals(1, reloaded.getAll().size());
+        Assert.assertEquals("id1999", reloaded.getByEndpoint("ep1").getIdentity());
+    }
+
+    private SecurityInfo pskInfo(String endpoint, String identity) {
+        return SecurityInfo.newPreSharedKeyInfo(endpoint, identity, identity.getBytes(Charsets.UTF_8));
+    }
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.registration;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RegistrationAdmissionControllerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    InetAddress address1;
+    InetAddress address2;
+    long now;
+
+    // the buckets are created full at the current time
+    private RegistrationAdmissionController newController(double rate, int burst, double ratePerAddress,
+            int burstPerAddress) {
+        RegistrationAdmissionController controller = new RegistrationAdmissionController(rate, burst,
+                ratePerAddress, burstPerAddress);
+        now = System.nanoTime();
+        return controller;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        address1 = InetAddress.getByName("10.0.0.1");
+        address2 = InetAddress.getByName("10.0.0.2");
+    }
+
+    @Test
+    public void global_rate_is_limited_after_the_burst() {
+        RegistrationAdmissionController controller = newController(2, 3, 0, 0);
+
+        Assert.assertTrue(controller.admit(address1, now));
+        Assert.assertTrue(controller.admit(address2, now));
+        Assert.assertTrue(controller.admit(address1, now));
+        Assert.assertFalse(controller.admit(address2, now));
+
+        // 2 registrations per second
+        Assert.assertTrue(controller.admit(address2, now + SECOND / 2));
+        Assert.assertFalse(controller.admit(address2, now + SECOND / 2));
+        Assert.assertTrue(controller.admit(address2, now + SECOND));
+
+        Assert.assertEquals(5, controller.getAdmitted());
+        Assert.assertEquals(2, controller.getRejected());
+        Assert.assertEquals(0, controller.getRejectedByAddress());
+    }
+
+    @Test
+    public void rate_is_limited_per_address() {
+        RegistrationAdmissionController controller = newController(0, 0, 1, 2);
+
+        Assert.assertTrue(controller.admit(address1, now));
+        Assert.assertTrue(controller.admit(address1, now));
+        Assert.assertFalse(controller.admit(address1, now));
+        Assert.assertTrue(controller.admit(address2, now));
+        Assert.assertTrue(controller.admit(address1, now + SECOND));
+
+        Assert.assertEquals(4, controller.getAdmitted());
+        Assert.assertEquals(1, controller.getRejected());
+        Assert.assertEquals(1, controller.getRejectedByAddress());
+    }
+
+    @Test
+    public void rejected_registration_does_not_consume_address_tokens() {
+        RegistrationAdmissionController controller = newController(1, 1, 1, 1);
+
+        Assert.assertTrue(controller.admit(address1, now));
+        Assert.assertFalse(controller.admit(address2, now));
+        Assert.assertTrue(controller.admit(address2, now + SECOND));
+    }
+
+    @Test
+    public void tracked_addresses_are_bounded() throws Exception {
+        RegistrationAdmissionController controller = newController(0, 0, 1, 1);
+        Assert.assertTrue(controller.admit(address1, now));
+        Assert.assertTrue(controller.admit(address2, now));
+
+        int max = RegistrationAdmissionController.MAX_TRACKED_ADDRESSES;
+        int count = max + 100;
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = { 10, 1, (byte) (i >> 8), (byte) i };
+            Assert.assertTrue(controller.admit(InetAddress.getByAddress(bytes), now));
+            // the recently seen addresses are kept
+            Assert.assertFalse(controller.admit(address2, now + i));
+            Assert.assertTrue(controller.addressBuckets.size() <= max);
+        }
+        Assert.assertEquals(max, controller.addressBuckets.size());
+
+        // the least recently seen addresses are forgotten
+        Assert.assertFalse(controller.addressBuckets.containsKey(address1));
+        Assert.assertTrue(controller.addressBuckets.containsKey(address2));
+    }
+
+    @Test
+    public void retry_delay_is_randomized() {
+        RegistrationAdmissionController controller = new RegistrationAdmissionController(1, 1, 0, 0, 30);
+        Assert.assertTrue(controller.isRejectionAnswered());
+        for (int i = 0; i < 100; i++) {
+            int retryAfter = controller.nextRetryAfter();
+            Assert.assertTrue(retryAfter >= 30 && retryAfter <= 60);
+        }
+
+        Assert.assertFalse(new RegistrationAdmissionController(1, 1, 0, 0, 0).isRejectionAnswered());
+    }
+}
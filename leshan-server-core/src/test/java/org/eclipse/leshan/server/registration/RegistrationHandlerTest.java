@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.registration;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.eclipse.leshan.LinkObject;
+import org.eclipse.leshan.core.request.BindingMode;
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.core.request.RegisterRequest;
+import org.eclipse.leshan.core.response.RegisterResponse;
+import org.eclipse.leshan.server.client.Client;
+import org.eclipse.leshan.server.client.ClientRegistryListener;
+import org.eclipse.leshan.server.impl.ClientRegistryImpl;
+import org.eclipse.leshan.server.security.SecurityInfo;
+import org.eclipse.leshan.server.security.SecurityStore;
+import org.eclipse.leshan.util.Charsets;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RegistrationHandlerTest {
+
+    private static final SecurityStore NO_SECURITY = new SecurityStore() {
+        @Override
+        public SecurityInfo getByEndpoint(String endpoint) {
+            return null;
+        }
+
+        @Override
+        public SecurityInfo getByIdentity(String identity) {
+            return null;
+        }
+    };
+
+    ClientRegistryImpl registry;
+    Identity sender;
+    InetSocketAddress serverEndpoint = InetSocketAddress.createUnresolved("localhost", 5683);
+    int unregistered;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new ClientRegistryImpl();
+        registry.addListener(new ClientRegistryListener() {
+            @Override
+            public void updated(Client clientUpdated) {
+            }
+
+            @Override
+            public void unregistered(Client client) {
+                unregistered++;
+            }
+
+            @Override
+            public void registered(Client client) {
+            }
+        });
+        sender = Identity.unsecure(new InetSocketAddress(InetAddress.getLocalHost(), 23452));
+    }
+
+    @Test
+    public void equivalent_registration_renews_the_current_registration() {
+        RegistrationHandler handler = new RegistrationHandler(registry, NO_SECURITY, true);
+
+        RegisterResponse first = handler.register(sender, registerRequest("</3>"), serverEndpoint);
+        RegisterResponse second = handler.register(sender, registerRequest("</3>"), serverEndpoint);
+
+        Assert.assertEquals(first.getRegistrationID(), second.getRegistrationID());
+        Assert.assertEquals(0, unregistered);
+    }
+
+    @Test
+    public void different_registration_replaces_the_current_registration() {
+        RegistrationHandler handler = new RegistrationHandler(registry, NO_SECURITY, true);
+
+        RegisterResponse first = handler.register(sender, registerRequest("</3>"), serverEndpoint);
+        RegisterResponse second = handler.register(sender, registerRequest("</3>,</5>"), serverEndpoint);
+
+        Assert.assertNotEquals(first.getRegistrationID(), second.getRegistrationID());
+        Assert.assertEquals(second.getRegistrationID(), registry.get("urn:endpoint").getRegistrationId());
+        Assert.assertEquals(1, unregistered);
+    }
+
+    @Test
+    public void equivalent_registration_is_replaced_by_default() {
+        RegistrationHandler handler = new RegistrationHandler(registry, NO_SECURITY);
+
+        RegisterResponse first = handler.register(sender, registerRequest("</3>"), serverEndpoint);
+        RegisterResponse second = handler.register(sender, registerRequest("</3>"), serverEndpoint);
+
+        Assert.assertNotEquals(first.getRegistrationID(), second.getRegistrationID());
+        Assert.assertEquals(1, unregistered);
+    }
+
+    private RegisterRequest registerRequest(String links) {
+        return new RegisterRequest("urn:endpoint", 10000L, null, BindingMode.U, null, LinkObject.parse(links
+                .getBytes(Charsets.UTF_8)));
+    }
+}
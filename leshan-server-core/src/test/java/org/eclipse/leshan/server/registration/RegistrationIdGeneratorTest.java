@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.registration;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RegistrationIdGeneratorTest {
+
+    @Test
+    public void random_ids_are_base62() {
+        RandomRegistrationIdGenerator generator = new RandomRegistrationIdGenerator();
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            String id = generator.generate();
+            Assert.assertTrue(id, id.matches("[0-9A-Za-z]{10}"));
+            ids.add(id);
+        }
+        Assert.assertEquals(1000, ids.size());
+    }
+
+    @Test
+    public void time_ordered_ids_are_increasing() {
+        TimeOrderedRegistrationIdGenerator generator = new TimeOrderedRegistrationIdGenerator();
+        String previous = generator.generate();
+        for (int i = 0; i < 10000; i++) {
+            String id = generator.generate();
+            Assert.assertTrue(id, id.matches("[0-9A-Za-z]{14}"));
+            Assert.assertTrue(previous + " < " + id, previous.compareTo(id) < 0);
+            previous = id;
+        }
+    }
+
+    @Test
+    public void time_ordered_sequence_does_not_go_backward_with_the_clock() {
+        TimeOrderedRegistrationIdGenerator generator = new TimeOrderedRegistrationIdGenerator();
+        long first = generator.nextSequence(1000);
+        long second = generator.nextSequence(1000);
+        long third = generator.nextSequence(999);
+        long fourth = generator.nextSequence(1001);
+
+        Assert.assertTrue(first < second);
+        Assert.assertTrue(second < third);
+        Assert.assertTrue(third < fourth);
+    }
+}
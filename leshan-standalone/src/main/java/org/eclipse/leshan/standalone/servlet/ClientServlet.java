@@ -15,14 +15,23 @@
  *******************************************************************************/
 package org.eclipse.leshan.standalone.servlet;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 import javax.servlet.MultipartConfigElement;
 import javax.servlet.ServletException;
@@ -40,6 +49,7 @@ import org.eclipse.jetty.util.MultiPartInputStreamParser;
 import org.eclipse.leshan.core.node.LwM2mNode;
 import org.eclipse.leshan.core.node.LwM2mObjectInstance;
 import org.eclipse.leshan.core.node.LwM2mSingleResource;
+import org.eclipse.leshan.core.request.BindingMode;
 import org.eclipse.leshan.core.request.ContentFormat;
 import org.eclipse.leshan.core.request.CreateRequest;
 import org.eclipse.leshan.core.request.DeleteRequest;
@@ -59,16 +69,21 @@ import org.eclipse.leshan.core.response.ReadResponse;
 import org.eclipse.leshan.core.response.WriteResponse;
 import org.eclipse.leshan.server.LwM2mServer;
 import org.eclipse.leshan.server.client.Client;
+import org.eclipse.leshan.server.client.ClientQuery;
 import org.eclipse.leshan.standalone.servlet.json.ClientSerializer;
 import org.eclipse.leshan.standalone.servlet.json.LwM2mNodeDeserializer;
 import org.eclipse.leshan.standalone.servlet.json.LwM2mNodeSerializer;
 import org.eclipse.leshan.standalone.servlet.json.ResponseSerializer;
+import org.eclipse.leshan.util.Charsets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Service HTTP REST API calls.
@@ -82,16 +97,46 @@ public class ClientServlet extends HttpServlet {
 
     private static final long serialVersionUID = 1L;
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+    private static final int MAX_PAGE_SIZE = 10000;
+
+    private static final Comparator<Client> ENDPOINT_ORDER = new Comparator<Client>() {
+        @Override
+        public int compare(Client c1, Client c2) {
+            return c1.getEndpoint().compareTo(c2.getEndpoint());
+        }
+    };
+
     //private static final MultipartConfigElement MULTI_PART_CONFIG = new MultipartConfigElement(System.getProperty("java.io.tmpdir"));
     private final LwM2mServer server;
 
     private final Gson gson;
 
+    private final ClientSerializer clientSerializer;
+
+    // serializes the field values of the clients with the servlet configuration
+    private final JsonSerializationContext serializationContext = new JsonSerializationContext() {
+        @Override
+        public JsonElement serialize(Object src) {
+            return gson.toJsonTree(src);
+        }
+
+        @Override
+        public JsonElement serialize(Object src, Type typeOfSrc) {
+            return gson.toJsonTree(src, typeOfSrc);
+        }
+    };
+
+    private final int securePort;
+
     public ClientServlet(LwM2mServer server, int securePort) {
         this.server = server;
+        this.securePort = securePort;
 
+        this.clientSerializer = new ClientSerializer(securePort);
         GsonBuilder gsonBuilder = new GsonBuilder();
-        gsonBuilder.registerTypeHierarchyAdapter(Client.class, new ClientSerializer(securePort));
+        gsonBuilder.registerTypeHierarchyAdapter(Client.class, clientSerializer);
         gsonBuilder.registerTypeHierarchyAdapter(LwM2mResponse.class, new ResponseSerializer());
         gsonBuilder.registerTypeHierarchyAdapter(LwM2mNode.class, new LwM2mNodeSerializer());
         gsonBuilder.registerTypeHierarchyAdapter(LwM2mNode.class, new LwM2mNodeDeserializer());
@@ -99,6 +144,121 @@ public class ClientServlet extends HttpServlet {
         this.gson = gsonBuilder.create();
     }
 
+    /**
+     * Finds the registered clients matching the filter parameters of the request:
+     * <ul>
+     * <li><code>object</code>: id of an object exposed by the client, may be repeated</li>
+     * <li><code>binding</code>: the binding mode (U, UQ, S, SQ, US, UQS)</li>
+     * <li><code>secure</code>: <code>true</code> for the clients registered on the secure endpoint, <code>false</code>
+     * for the others</li>
+     * <li><code>idle</code>: minimum number of seconds since the last registration update</li>
+     * </ul>
+     * 
+     * @throws IllegalArgumentException if a parameter is invalid
+     */
+    private Collection<Client> findClients(HttpServletRequest req) {
+        String[] objectIds = req.getParameterValues("object");
+        String binding = req.getParameter("binding");
+        String secure = req.getParameter("secure");
+        String idle = req.getParameter("idle");
+        if (objectIds == null && binding == null && secure == null && idle == null) {
+            return server.getClientRegistry().allClients();
+        }
+
+        ClientQuery query = new ClientQuery();
+        if (objectIds != null) {
+            for (String objectId : objectIds) {
+                query.withObjectId(parseInt("object", objectId));
+            }
+        }
+        if (binding != null) {
+            try {
+                query.withBindingMode(BindingMode.valueOf(binding));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid binding mode: " + binding);
+            }
+        }
+        if (idle != null) {
+            query.withLastUpdateBefore(System.currentTimeMillis() - parseInt("idle", idle) * 1000L);
+        }
+        if (secure == null) {
+            return server.getClientRegistry().find(query);
+        }
+        if ("true".equals(secure)) {
+            return server.getClientRegistry().find(query.withRegistrationPort(securePort));
+        }
+        if (!"false".equals(secure)) {
+            throw new IllegalArgumentException("Invalid secure value: " + secure);
+        }
+        // non secure clients may have registered on any other port
+        Collection<Client> clients = new ArrayList<>();
+        for (Client client : server.getClientRegistry().find(query)) {
+            if (client.getRegistrationEndpointAddress().getPort() != securePort) {
+                clients.add(client);
+            }
+        }
+        return clients;
+    }
+
+    private static Set<String> parseFields(String fields) {
+        if (fields == null) {
+            return null;
+        }
+        Set<String> result = new HashSet<>();
+        for (String field : StringUtils.split(fields, ',')) {
+            if (!ClientSerializer.FIELDS.contains(field)) {
+                throw new IllegalArgumentException("Unknown field: " + field);
+            }
+            result.add(field);
+        }
+        return result;
+    }
+
+    /**
+     * Selects the clients following the cursor in the end-point order, without sorting all the clients.
+     */
+    private static List<Client> page(Collection<Client> clients, String cursor, int size) {
+        // a max-heap of the first end-points
+        PriorityQueue<Client> first = new PriorityQueue<>(size, Collections.reverseOrder(ENDPOINT_ORDER));
+        for (Client client : clients) {
+            if (cursor != null && client.getEndpoint().compareTo(cursor) <= 0) {
+                continue;
+            }
+            if (first.size() < size) {
+                first.add(client);
+            } else if (ENDPOINT_ORDER.compare(client, first.peek()) < 0) {
+                first.poll();
+                first.add(client);
+            }
+        }
+        List<Client> page = new ArrayList<>(first);
+        Collections.sort(page, ENDPOINT_ORDER);
+        return page;
+    }
+
+    // the clients are serialized one by one directly to the response
+    private void writeClients(JsonWriter out, Collection<Client> clients, Set<String> fields) throws IOException {
+        out.beginArray();
+        for (Client client : clients) {
+            // only the requested fields are computed
+            gson.toJson(clientSerializer.serializeFields(client, fields, serializationContext), out);
+        }
+        out.endArray();
+    }
+
+    private static int parseInt(String name, String value) {
+        int i;
+        try {
+            i = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            i = -1;
+        }
+        if (i < 0) {
+            throw new IllegalArgumentException("Invalid " + name + " value: " + value);
+        }
+        return i;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -107,12 +267,50 @@ public class ClientServlet extends HttpServlet {
 
         // all registered clients
         if (req.getPathInfo() == null) {
-            Collection<Client> clients = server.getClientRegistry().allClients();
+            Collection<Client> clients;
+            Set<String> fields;
+            Integer limit;
+            String cursor = req.getParameter("cursor");
+            try {
+                clients = findClients(req);
+                fields = parseFields(req.getParameter("fields"));
+                String limitParam = req.getParameter("limit");
+                if (limitParam != null) {
+                    limit = Math.min(parseInt("limit", limitParam), MAX_PAGE_SIZE);
+                    if (limit == 0) {
+                        throw new IllegalArgumentException("Invalid limit value: " + limitParam);
+                    }
+                } else {
+                    limit = cursor != null ? DEFAULT_PAGE_SIZE : null;
+                }
+            } catch (IllegalArgumentException e) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+                return;
+            }
 
-            String json = this.gson.toJson(clients.toArray(new Client[] {}));
             resp.setContentType("application/json");
-            resp.getOutputStream().write(json.getBytes("UTF-8"));
+            resp.setCharacterEncoding("UTF-8");
             resp.setStatus(HttpServletResponse.SC_OK);
+            JsonWriter out = new JsonWriter(new BufferedWriter(new OutputStreamWriter(resp.getOutputStream(),
+                    Charsets.UTF_8)));
+            if (limit == null) {
+                writeClients(out, clients, fields);
+            } else {
+                // a page of clients sorted by end-point, the cursor is the last end-point of the previous page
+                List<Client> page = page(clients, cursor, limit + 1);
+                boolean more = page.size() > limit;
+                if (more) {
+                    page = page.subList(0, limit);
+                }
+                out.beginObject();
+                out.name("clients");
+                writeClients(out, page, fields);
+                if (more) {
+                    out.name("next").value(page.get(limit - 1).getEndpoint());
+                }
+                out.endObject();
+            }
+            out.flush();
             return;
         }
 
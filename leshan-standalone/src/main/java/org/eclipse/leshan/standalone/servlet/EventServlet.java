@@ -27,6 +27,7 @@ import org.eclipse.leshan.core.observation.Observation;
 import org.eclipse.leshan.server.californium.impl.LeshanServer;
 import org.eclipse.leshan.server.client.Client;
 import org.eclipse.leshan.server.client.ClientRegistryListener;
+import org.eclipse.leshan.server.impl.AsyncClientRegistryListener;
 import org.eclipse.leshan.server.observation.ObservationRegistryListener;
 import org.eclipse.leshan.standalone.servlet.json.ClientSerializer;
 import org.eclipse.leshan.standalone.servlet.json.LwM2mNodeSerializer;
@@ -88,6 +89,10 @@ public class EventServlet extends EventSourceServlet {
         }
     };
 
+    // the JSON serialization and the writes to the event streams are done out of the registration threads
+    private final AsyncClientRegistryListener asyncClientRegistryListener = new AsyncClientRegistryListener(
+            clientRegistryListener);
+
     private final ObservationRegistryListener observationRegistryListener = new ObservationRegistryListener() {
 
         @Override
@@ -118,7 +123,7 @@ public class EventServlet extends EventSourceServlet {
 
     public EventServlet(LeshanServer server, int securePort) {
         this.server = server;
-        server.getClientRegistry().addListener(this.clientRegistryListener);
+        server.getClientRegistry().addListener(this.asyncClientRegistryListener);
         server.getObservationRegistry().addListener(this.observationRegistryListener);
 
         // add an interceptor to each endpoint to trace all CoAP messages
@@ -134,6 +139,13 @@ public class EventServlet extends EventSourceServlet {
         this.gson = gsonBuilder.create();
     }
 
+    @Override
+    public void destroy() {
+        server.getClientRegistry().removeListener(this.asyncClientRegistryListener);
+        asyncClientRegistryListener.stop();
+        super.destroy();
+    }
+
     private synchronized void sendEvent(String event, String data, String endpoint) {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Dispatching {} event from endpoint {}", event, endpoint);
@@ -18,7 +18,11 @@ package org.eclipse.leshan.standalone.servlet;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.security.PublicKey;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -36,7 +40,12 @@ import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
 /**
  * Service HTTP REST API calls for security information.
@@ -98,6 +107,81 @@ public class SecurityServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Bulk provisioning: <code>POST /clients</code> with a JSON array of security infos.
+     * <p>
+     * The array is read as a stream and the infos are added to the registry in a single batch. The invalid entries are
+     * reported in the response without preventing the others from being added.
+     * </p>
+     */
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        String[] path = StringUtils.split(req.getPathInfo(), '/');
+
+        if (path.length != 1 || !"clients".equals(path[0])) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        try {
+            JsonArray failures = new JsonArray();
+            List<SecurityInfo> infos = new ArrayList<>();
+            // the position in the request of each info of the batch
+            List<Integer> requestIndexes = new ArrayList<>();
+
+            JsonReader reader = new JsonReader(new InputStreamReader(req.getInputStream(), "UTF-8"));
+            JsonParser parser = new JsonParser();
+            reader.beginArray();
+            for (int index = 0; reader.hasNext(); index++) {
+                JsonElement element = parser.parse(reader);
+                try {
+                    SecurityInfo info = gsonDes.fromJson(element, SecurityInfo.class);
+                    if (info == null) {
+                        throw new JsonParseException("Invalid security info content");
+                    }
+                    infos.add(info);
+                    requestIndexes.add(index);
+                } catch (JsonParseException e) {
+                    failures.add(failure(index, null, e.getMessage()));
+                }
+            }
+            reader.endArray();
+
+            Map<Integer, NonUniqueSecurityInfoException> rejected = registry.addAll(infos);
+            for (Entry<Integer, NonUniqueSecurityInfoException> entry : rejected.entrySet()) {
+                int position = entry.getKey();
+                failures.add(failure(requestIndexes.get(position), infos.get(position).getEndpoint(), entry
+                        .getValue().getMessage()));
+            }
+            LOG.debug("{} security infos added, {} rejected", infos.size() - rejected.size(), failures.size());
+
+            JsonObject result = new JsonObject();
+            result.addProperty("added", infos.size() - rejected.size());
+            result.add("failures", failures);
+            resp.setContentType("application/json");
+            resp.getOutputStream().write(result.toString().getBytes("UTF-8"));
+            resp.setStatus(HttpServletResponse.SC_OK);
+
+        } catch (JsonParseException | IOException | IllegalStateException e) {
+            LOG.warn("Could not parse request body", e);
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().append("Invalid request body").flush();
+        } catch (RuntimeException e) {
+            LOG.warn("unexpected error for request " + req.getPathInfo(), e);
+            resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private JsonObject failure(int index, String endpoint, String message) {
+        JsonObject failure = new JsonObject();
+        failure.addProperty("index", index);
+        if (endpoint != null) {
+            failure.addProperty("endpoint", endpoint);
+        }
+        failure.addProperty("message", message);
+        return failure;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -139,6 +223,11 @@ public class SecurityServlet extends HttpServlet {
     protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         String[] path = StringUtils.split(req.getPathInfo(), '/');
 
+        if (path.length == 1 && "clients".equals(path[0])) {
+            deleteAll(req, resp);
+            return;
+        }
+
         if (path.length != 2 && !"clients".equals(path[0])) {
             resp.sendError(HttpServletResponse.SC_BAD_REQUEST);
             return;
@@ -152,4 +241,33 @@ public class SecurityServlet extends HttpServlet {
             resp.sendError(HttpServletResponse.SC_NOT_FOUND);
         }
     }
+
+    /**
+     * Bulk removal: <code>DELETE /clients</code> with a JSON array of end-points.
+     */
+    private void deleteAll(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        List<String> endpoints = new ArrayList<>();
+        try {
+            JsonReader reader = new JsonReader(new InputStreamReader(req.getInputStream(), "UTF-8"));
+            reader.beginArray();
+            while (reader.hasNext()) {
+                endpoints.add(reader.nextString());
+            }
+            reader.endArray();
+        } catch (IOException | IllegalStateException e) {
+            LOG.warn("Could not parse request body", e);
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().append("Invalid request body").flush();
+            return;
+        }
+
+        LOG.debug("Removing security info for {} end-points", endpoints.size());
+        Collection<SecurityInfo> removed = this.registry.removeAll(endpoints);
+
+        JsonObject result = new JsonObject();
+        result.addProperty("removed", removed.size());
+        resp.setContentType("application/json");
+        resp.getOutputStream().write(result.toString().getBytes("UTF-8"));
+        resp.setStatus(HttpServletResponse.SC_OK);
+    }
 }
@@ -16,16 +16,114 @@
 package org.eclipse.leshan.standalone.servlet.json;
 
 import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import org.eclipse.leshan.server.client.Client;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 
 public class ClientSerializer implements JsonSerializer<Client> {
 
+    // the serialized fields, in order
+    private enum Field {
+        ENDPOINT("endpoint") {
+            @Override
+            JsonElement serialize(Client src, int securePort, JsonSerializationContext context) {
+                return new JsonPrimitive(src.getEndpoint());
+            }
+        },
+        REGISTRATION_ID("registrationId") {
+            @Override
+            JsonElement serialize(Client src, int securePort, JsonSerializationContext context) {
+                return new JsonPrimitive(src.getRegistrationId());
+            }
+        },
+        REGISTRATION_DATE("registrationDate") {
+            @Override
+            JsonElement serialize(Client src, int securePort, JsonSerializationContext context) {
+                return context.serialize(src.getRegistrationDate());
+            }
+        },
+        LAST_UPDATE("lastUpdate") {
+            @Override
+            JsonElement serialize(Client src, int securePort, JsonSerializationContext context) {
+                return context.serialize(src.getLastUpdate());
+            }
+        },
+        ADDRESS("address") {
+            @Override
+            JsonElement serialize(Client src, int securePort, JsonSerializationContext context) {
+                return new JsonPrimitive(src.getAddress().toString() + ":" + src.getPort());
+            }
+        },
+        SMS_NUMBER("smsNumber") {
+            @Override
+            JsonElement serialize(Client src, int securePort, JsonSerializationContext context) {
+                return context.serialize(src.getSmsNumber());
+            }
+        },
+        LWM2M_VERSION("lwM2MmVersion") {
+            @Override
+            JsonElement serialize(Client src, int securePort, JsonSerializationContext context) {
+                return context.serialize(src.getLwM2mVersion());
+            }
+        },
+        LIFETIME("lifetime") {
+            @Override
+            JsonElement serialize(Client src, int securePort, JsonSerializationContext context) {
+                return context.serialize(src.getLifeTimeInSec());
+            }
+        },
+        BINDING_MODE("bindingMode") {
+            @Override
+            JsonElement serialize(Client src, int securePort, JsonSerializationContext context) {
+                return new JsonPrimitive(src.getBindingMode().toString());
+            }
+        },
+        ROOT_PATH("rootPath") {
+            @Override
+            JsonElement serialize(Client src, int securePort, JsonSerializationContext context) {
+                return context.serialize(src.getRootPath());
+            }
+        },
+        OBJECT_LINKS("objectLinks") {
+            @Override
+            JsonElement serialize(Client src, int securePort, JsonSerializationContext context) {
+                return context.serialize(src.getSortedObjectLinks());
+            }
+        },
+        SECURE("secure") {
+            @Override
+            JsonElement serialize(Client src, int securePort, JsonSerializationContext context) {
+                return new JsonPrimitive(src.getRegistrationEndpointAddress().getPort() == securePort);
+            }
+        };
+
+        private final String name;
+
+        private Field(String name) {
+            this.name = name;
+        }
+
+        abstract JsonElement serialize(Client src, int securePort, JsonSerializationContext context);
+    }
+
+    /** The names of the client fields */
+    public static final Set<String> FIELDS;
+    static {
+        Set<String> fields = new LinkedHashSet<>();
+        for (Field field : Field.values()) {
+            fields.add(field.name);
+        }
+        FIELDS = Collections.unmodifiableSet(fields);
+    }
+
     private final int securePort;
 
     public ClientSerializer(int securePort) {
@@ -34,20 +132,24 @@ public class ClientSerializer implements JsonSerializer<Client> {
 
     @Override
     public JsonElement serialize(Client src, Type typeOfSrc, JsonSerializationContext context) {
-        JsonObject element = new JsonObject();
-
-        element.addProperty("endpoint", src.getEndpoint());
-        element.addProperty("registrationId", src.getRegistrationId());
-        element.add("registrationDate", context.serialize(src.getRegistrationDate()));
-        element.addProperty("address", src.getAddress().toString() + ":" + src.getPort());
-        element.addProperty("smsNumber", src.getSmsNumber());
-        element.addProperty("lwM2MmVersion", src.getLwM2mVersion());
-        element.addProperty("lifetime", src.getLifeTimeInSec());
-        element.addProperty("bindingMode", src.getBindingMode().toString());
-        element.add("rootPath", context.serialize(src.getRootPath()));
-        element.add("objectLinks", context.serialize(src.getSortedObjectLinks()));
-        element.add("secure", context.serialize(src.getRegistrationEndpointAddress().getPort() == securePort));
+        return serializeFields(src, null, context);
+    }
 
+    /**
+     * Serializes only some fields of a client, the other fields are not computed.
+     * 
+     * @param src the client
+     * @param fields the names of the fields to serialize (see {@link #FIELDS}), <code>null</code> for all the fields
+     * @param context the context to serialize the field values
+     * @return the JSON object
+     */
+    public JsonObject serializeFields(Client src, Set<String> fields, JsonSerializationContext context) {
+        JsonObject element = new JsonObject();
+        for (Field field : Field.values()) {
+            if (fields == null || fields.contains(field.name)) {
+                element.add(field.name, field.serialize(src, securePort, context));
+            }
+        }
         return element;
     }
 }
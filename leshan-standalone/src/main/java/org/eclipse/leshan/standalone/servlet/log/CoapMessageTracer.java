@@ -16,6 +16,7 @@
 package org.eclipse.leshan.standalone.servlet.log;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -28,26 +29,28 @@ import org.eclipse.leshan.server.client.ClientRegistry;
 
 public class CoapMessageTracer implements MessageInterceptor {
 
-    private final Map<String, CoapMessageListener> listeners = new ConcurrentHashMap<>();
+    private final Map<String /* endpoint */, CoapMessageListener> listeners = new ConcurrentHashMap<>();
 
     private final ClientRegistry registry;
 
     public void addListener(String endpoint, CoapMessageListener listener) {
-        Client client = registry.get(endpoint);
-        if (client != null) {
-            listeners.put(toStringAddress(client.getAddress(), client.getPort()), listener);
-        }
+        listeners.put(endpoint, listener);
     }
 
     public void removeListener(String endpoint) {
-        Client client = registry.get(endpoint);
-        if (client != null) {
-            listeners.remove(toStringAddress(client.getAddress(), client.getPort()));
-        }
+        listeners.remove(endpoint);
     }
 
-    private String toStringAddress(InetAddress clientAddress, int clientPort) {
-        return clientAddress.toString() + ":" + clientPort;
+    private CoapMessageListener getListener(InetAddress address, int port) {
+        // most of the time nobody is tracing
+        if (listeners.isEmpty()) {
+            return null;
+        }
+        Client client = registry.findByAddress(new InetSocketAddress(address, port));
+        if (client == null) {
+            return null;
+        }
+        return listeners.get(client.getEndpoint());
     }
 
     public CoapMessageTracer(ClientRegistry registry) {
@@ -56,8 +59,7 @@ public class CoapMessageTracer implements MessageInterceptor {
 
     @Override
     public void sendRequest(Request request) {
-        CoapMessageListener listener = listeners.get(toStringAddress(request.getDestination(),
-                request.getDestinationPort()));
+        CoapMessageListener listener = getListener(request.getDestination(), request.getDestinationPort());
         if (listener != null) {
             listener.trace(new CoapMessage(request, false));
         }
@@ -65,8 +67,7 @@ public class CoapMessageTracer implements MessageInterceptor {
 
     @Override
     public void sendResponse(Response response) {
-        CoapMessageListener listener = listeners.get(toStringAddress(response.getDestination(),
-                response.getDestinationPort()));
+        CoapMessageListener listener = getListener(response.getDestination(), response.getDestinationPort());
         if (listener != null) {
             listener.trace(new CoapMessage(response, false));
         }
@@ -74,8 +75,7 @@ public class CoapMessageTracer implements MessageInterceptor {
 
     @Override
     public void sendEmptyMessage(EmptyMessage message) {
-        CoapMessageListener listener = listeners.get(toStringAddress(message.getDestination(),
-                message.getDestinationPort()));
+        CoapMessageListener listener = getListener(message.getDestination(), message.getDestinationPort());
         if (listener != null) {
             listener.trace(new CoapMessage(message, false));
         }
@@ -83,7 +83,7 @@ public class CoapMessageTracer implements MessageInterceptor {
 
     @Override
     public void receiveRequest(Request request) {
-        CoapMessageListener listener = listeners.get(toStringAddress(request.getSource(), request.getSourcePort()));
+        CoapMessageListener listener = getListener(request.getSource(), request.getSourcePort());
         if (listener != null) {
             listener.trace(new CoapMessage(request, true));
         }
@@ -92,7 +92,7 @@ public class CoapMessageTracer implements MessageInterceptor {
 
     @Override
     public void receiveResponse(Response response) {
-        CoapMessageListener listener = listeners.get(toStringAddress(response.getSource(), response.getSourcePort()));
+        CoapMessageListener listener = getListener(response.getSource(), response.getSourcePort());
         if (listener != null) {
             listener.trace(new CoapMessage(response, true));
         }
@@ -101,7 +101,7 @@ public class CoapMessageTracer implements MessageInterceptor {
 
     @Override
     public void receiveEmptyMessage(EmptyMessage message) {
-        CoapMessageListener listener = listeners.get(toStringAddress(message.getSource(), message.getSourcePort()));
+        CoapMessageListener listener = getListener(message.getSource(), message.getSourcePort());
         if (listener != null) {
             listener.trace(new CoapMessage(message, true));
         }